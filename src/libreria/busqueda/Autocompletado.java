@@ -0,0 +1,214 @@
+package libreria.busqueda;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import libreria.utilidades.Normalizador;
+
+/**
+ * Sugerencias para completar nombres a medida que se escriben: un árbol ordenado por nombre normalizado (sin mayúsculas ni acentos) donde los nombres que empiezan con un texto quedan todos seguidos, así completar es ubicar el primero y leer los siguientes, sin ir a la base.
+ * <p>
+ * Hay uno para los títulos de los Libros, otro para los Autores y otro para las Editoriales, dados de alta. Se arman al iniciar la aplicación (o en el primer uso) recorriendo la tabla, y después los mantienen al día las escrituras de los DAOs. Igual que {@link IndiceTitulos}, lo que se modifica por fuera de los DAOs obliga a invalidarlos. Es seguro para usar desde varios hilos.
+ *
+ * @author Matias Luca Soto
+ */
+public final class Autocompletado {
+
+    //ATRIBUTOS
+    /**
+     * Títulos de los Libros dados de alta
+     */
+    public static final Autocompletado TITULOS = new Autocompletado();
+    /**
+     * Nombres de los Autores dados de alta
+     */
+    public static final Autocompletado AUTORES = new Autocompletado();
+    /**
+     * Nombres de las Editoriales dadas de alta
+     */
+    public static final Autocompletado EDITORIALES = new Autocompletado();
+    private static final char SEPARADOR = '\u0000'; // Separa el nombre normalizado del id en las claves del árbol
+
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private TreeMap<String, String> nombres; // Nombre normalizado + id -> nombre original. null mientras no esté armado
+    private Map<String, String> clavePorId;
+    private List<String[]> pendientes; // Cambios recibidos mientras se arma, para aplicarlos al terminar
+
+    /**
+     * Recorrido de todos los nombres con el que se arma el árbol
+     */
+    @FunctionalInterface
+    public interface Fuente {
+
+        /**
+         * @param receptor Recibe el id y el nombre de cada elemento
+         */
+        void recorrer(BiConsumer<String, String> receptor);
+    }
+
+    //CONSTRUCTOR
+    private Autocompletado() {
+    }
+
+    //MÉTODOS
+    /**
+     * Arma el árbol si todavía no está armado (o si fue invalidado). El recorrido se hace sin bloquear las consultas ni las escrituras; los cambios que llegan mientras tanto se aplican al terminar.
+     *
+     * @param fuente Recorrido de todos los elementos dados de alta
+     */
+    public void cargarSiHaceFalta(Fuente fuente) {
+        List<String[]> propios; // Si se invalida durante el armado, la lista cambia y lo armado se descarta
+        candado.writeLock().lock();
+        try {
+            if (nombres != null || pendientes != null) {
+                return;
+            }
+            pendientes = new ArrayList<>();
+            propios = pendientes;
+        } finally {
+            candado.writeLock().unlock();
+        }
+        TreeMap<String, String> nuevos = new TreeMap<>();
+        Map<String, String> nuevasClaves = new HashMap<>();
+        boolean cargado = false;
+        try {
+            fuente.recorrer((id, nombre) -> poner(nuevos, nuevasClaves, id, nombre));
+            cargado = true;
+        } finally {
+            candado.writeLock().lock();
+            try {
+                if (cargado && pendientes == propios) {
+                    for (String[] cambio : propios) {
+                        if (cambio[1] == null) {
+                            sacar(nuevos, nuevasClaves, cambio[0]);
+                        } else {
+                            poner(nuevos, nuevasClaves, cambio[0], cambio[1]);
+                        }
+                    }
+                    nombres = nuevos;
+                    clavePorId = nuevasClaves;
+                }
+                if (pendientes == propios) {
+                    pendientes = null;
+                }
+            } finally {
+                candado.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Agrega un nombre, o reemplaza el que tenía ese id
+     *
+     * @param id ID del elemento
+     * @param nombre Nombre a sugerir
+     */
+    public void agregar(String id, String nombre) {
+        candado.writeLock().lock();
+        try {
+            if (pendientes != null) {
+                pendientes.add(new String[]{id, nombre});
+            }
+            if (nombres != null) {
+                poner(nombres, clavePorId, id, nombre);
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param id ID del elemento a dejar de sugerir
+     */
+    public void quitar(String id) {
+        candado.writeLock().lock();
+        try {
+            if (pendientes != null) {
+                pendientes.add(new String[]{id, null});
+            }
+            if (nombres != null) {
+                sacar(nombres, clavePorId, id);
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Descarta el árbol. Se vuelve a armar en la próxima carga
+     */
+    public void invalidar() {
+        candado.writeLock().lock();
+        try {
+            nombres = null;
+            clavePorId = null;
+            pendientes = null; // Si había un armado en curso, pudo leer datos viejos: se descarta al terminar
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve los nombres que empiezan con el texto recibido, sin distinguir mayúsculas ni acentos, en orden alfabético. Los nombres que solo difieren en mayúsculas o acentos aparecen una sola vez.
+     *
+     * @param prefijo Comienzo del nombre
+     * @param cantidad Cantidad máxima de sugerencias
+     * @return Las sugerencias, o una lista vacía si el árbol no está armado
+     */
+    public List<String> completar(String prefijo, int cantidad) {
+        List<String> sugerencias = new ArrayList<>();
+        String inicio = Normalizador.normalizar(prefijo);
+        candado.readLock().lock();
+        try {
+            if (nombres == null || inicio == null) {
+                return sugerencias;
+            }
+            String anterior = null;
+            for (Map.Entry<String, String> entrada : nombres.tailMap(inicio, true).entrySet()) {
+                String clave = entrada.getKey();
+                if (!clave.startsWith(inicio) || sugerencias.size() >= cantidad) {
+                    break;
+                }
+                String normalizado = clave.substring(0, clave.indexOf(SEPARADOR));
+                if (!normalizado.equals(anterior)) {
+                    sugerencias.add(entrada.getValue());
+                    anterior = normalizado;
+                }
+            }
+            return sugerencias;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true si el árbol está armado
+     */
+    public boolean isCargado() {
+        candado.readLock().lock();
+        try {
+            return nombres != null;
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    private static void poner(TreeMap<String, String> nombres, Map<String, String> clavePorId, String id, String nombre) {
+        sacar(nombres, clavePorId, id);
+        String clave = Normalizador.normalizar(nombre) + SEPARADOR + id;
+        nombres.put(clave, nombre.trim());
+        clavePorId.put(id, clave);
+    }
+
+    private static void sacar(TreeMap<String, String> nombres, Map<String, String> clavePorId, String id) {
+        String clave = clavePorId.remove(id);
+        if (clave != null) {
+            nombres.remove(clave);
+        }
+    }
+
+}
@@ -0,0 +1,314 @@
+package libreria.busqueda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import libreria.utilidades.Configuracion;
+import libreria.utilidades.Normalizador;
+
+/**
+ * Búsqueda de nombres parecidos, para no crear un Autor o una Editorial que ya existe escrito con un error de tipeo ("Garcia Marques" por "García Márquez"). Dos nombres son parecidos si su distancia de edición (letras agregadas, quitadas o cambiadas, sobre los nombres normalizados) no supera un máximo que crece con el largo del nombre: ninguna hasta 4 letras, 1 hasta 9 y libreria.similares.distancia (por defecto 2) desde ahí.
+ * <p>
+ * Calcular la distancia contra todos los nombres sería lento, así que se indexan los trigramas (grupos de 3 letras) de cada nombre: cada edición cambia como mucho 3 trigramas, por lo que solo se calcula la distancia contra los nombres que comparten suficientes trigramas con el buscado y tienen un largo parecido.
+ * <p>
+ * Las instancias compartidas {@link #AUTORES} y {@link #EDITORIALES} se arman en el primer uso y las mantienen al día las escrituras de los DAOs, igual que {@link Autocompletado}; también se pueden crear instancias propias (la importación masiva arma las suyas). Los nombres quitados quedan marcados en el índice hasta que se vuelve a armar. Es seguro para usar desde varios hilos.
+ *
+ * @author Matias Luca Soto
+ */
+public final class BuscadorSimilares {
+
+    //ATRIBUTOS
+    /**
+     * Nombres de los Autores dados de alta
+     */
+    public static final BuscadorSimilares AUTORES = new BuscadorSimilares(false);
+    /**
+     * Nombres de las Editoriales dadas de alta
+     */
+    public static final BuscadorSimilares EDITORIALES = new BuscadorSimilares(false);
+    private static final int DISTANCIA_MAXIMA = Math.max(0, Configuracion.getInt("libreria.similares.distancia", 2));
+    private static final int LARGO_GRAMA = 3;
+    private static final ThreadLocal<int[]> CONTEO = ThreadLocal.withInitial(() -> new int[0]); // Trigramas compartidos por documento, reutilizado entre búsquedas
+
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private Nombres nombres; // null mientras no esté armado
+    private List<String[]> pendientes; // Cambios recibidos mientras se arma, para aplicarlos al terminar
+
+    //CONSTRUCTOR
+    /**
+     * Crea un buscador vacío y ya armado, para cargarlo con {@link #agregar(String, String)}
+     */
+    public BuscadorSimilares() {
+        this(true);
+    }
+
+    private BuscadorSimilares(boolean armado) {
+        this.nombres = armado ? new Nombres() : null;
+    }
+
+    //MÉTODOS
+    /**
+     * Vuelve a armar el buscador si fue invalidado (las instancias compartidas empiezan invalidadas). El recorrido se hace sin bloquear las búsquedas ni las escrituras; los cambios que llegan mientras tanto se aplican al terminar.
+     *
+     * @param fuente Recorrido de todos los nombres
+     */
+    public void cargarSiHaceFalta(Autocompletado.Fuente fuente) {
+        List<String[]> propios; // Si se invalida durante el armado, la lista cambia y lo armado se descarta
+        candado.writeLock().lock();
+        try {
+            if (nombres != null || pendientes != null) {
+                return;
+            }
+            pendientes = new ArrayList<>();
+            propios = pendientes;
+        } finally {
+            candado.writeLock().unlock();
+        }
+        Nombres nuevos = new Nombres();
+        boolean cargado = false;
+        try {
+            fuente.recorrer(nuevos::agregar);
+            cargado = true;
+        } finally {
+            candado.writeLock().lock();
+            try {
+                if (cargado && pendientes == propios) {
+                    for (String[] cambio : propios) {
+                        if (cambio[1] == null) {
+                            nuevos.quitar(cambio[0]);
+                        } else {
+                            nuevos.agregar(cambio[0], cambio[1]);
+                        }
+                    }
+                    nombres = nuevos;
+                }
+                if (pendientes == propios) {
+                    pendientes = null;
+                }
+            } finally {
+                candado.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Agrega un nombre, o reemplaza el que tenía ese id
+     *
+     * @param id ID del elemento
+     * @param nombre Nombre
+     */
+    public void agregar(String id, String nombre) {
+        candado.writeLock().lock();
+        try {
+            if (pendientes != null) {
+                pendientes.add(new String[]{id, nombre});
+            }
+            if (nombres != null) {
+                nombres.agregar(id, nombre);
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param id ID del elemento a quitar
+     */
+    public void quitar(String id) {
+        candado.writeLock().lock();
+        try {
+            if (pendientes != null) {
+                pendientes.add(new String[]{id, null});
+            }
+            if (nombres != null) {
+                nombres.quitar(id);
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Descarta el índice. Se vuelve a armar en la próxima carga
+     */
+    public void invalidar() {
+        candado.writeLock().lock();
+        try {
+            nombres = null;
+            pendientes = null; // Si había un armado en curso, pudo leer datos viejos: se descarta al terminar
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca el nombre guardado más parecido al recibido. Un nombre igual (normalizado) también cuenta como parecido, con distancia 0.
+     *
+     * @param nombre Nombre a buscar
+     * @return El nombre guardado más parecido, tal como se guardó, o null si ninguno está dentro de la distancia permitida (o si el índice no está armado)
+     */
+    public String buscarParecido(String nombre) {
+        String clave = Normalizador.normalizar(nombre);
+        if (clave == null || clave.isEmpty()) {
+            return null;
+        }
+        candado.readLock().lock();
+        try {
+            return nombres == null ? null : nombres.buscarParecido(clave);
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param largo Largo del nombre normalizado
+     * @return Cantidad de ediciones permitidas para un nombre de ese largo
+     */
+    static int distanciaPermitida(int largo) {
+        return Math.min(DISTANCIA_MAXIMA, largo / 5);
+    }
+
+    /**
+     * Distancia de Levenshtein entre dos textos, cortando apenas se sabe que supera el máximo
+     *
+     * @return La distancia, o maximo + 1 si es mayor que el máximo
+     */
+    static int distancia(String a, String b, int maximo) {
+        if (Math.abs(a.length() - b.length()) > maximo) {
+            return maximo + 1;
+        }
+        int[] anterior = new int[b.length() + 1];
+        int[] actual = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            actual[0] = i;
+            int minimoFila = actual[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cambio = anterior[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                actual[j] = Math.min(cambio, Math.min(anterior[j], actual[j - 1]) + 1);
+                minimoFila = Math.min(minimoFila, actual[j]);
+            }
+            if (minimoFila > maximo) {
+                return maximo + 1;
+            }
+            int[] auxiliar = anterior;
+            anterior = actual;
+            actual = auxiliar;
+        }
+        return Math.min(anterior[b.length()], maximo + 1);
+    }
+
+    /**
+     * Trigramas de un nombre normalizado, con un espacio en cada extremo para que el principio y el final también cuenten
+     */
+    private static Set<String> gramas(String clave) {
+        String texto = " " + clave + " ";
+        Set<String> gramas = new LinkedHashSet<>();
+        for (int i = 0; i + LARGO_GRAMA <= texto.length(); i++) {
+            gramas.add(texto.substring(i, i + LARGO_GRAMA));
+        }
+        return gramas;
+    }
+
+    /**
+     * Datos del índice: cada nombre es un documento con un número interno, y cada trigrama tiene la lista de documentos en los que aparece
+     */
+    private static final class Nombres {
+
+        private final Map<String, Integer> docPorId = new HashMap<>();
+        private final Map<String, int[]> listas = new HashMap<>(); // Trigrama -> documentos; la posición 0 guarda cuántos hay
+        private String[] claves = new String[256];
+        private String[] originales = new String[256];
+        private int cantidad;
+
+        private void agregar(String id, String nombre) {
+            quitar(id);
+            if (cantidad == claves.length) {
+                claves = Arrays.copyOf(claves, cantidad * 2);
+                originales = Arrays.copyOf(originales, cantidad * 2);
+            }
+            int doc = cantidad++;
+            claves[doc] = Normalizador.normalizar(nombre);
+            originales[doc] = nombre.trim();
+            docPorId.put(id, doc);
+            for (String grama : gramas(claves[doc])) {
+                int[] lista = listas.get(grama);
+                if (lista == null) {
+                    lista = new int[4];
+                } else if (lista[0] + 1 == lista.length) {
+                    lista = Arrays.copyOf(lista, lista.length * 2);
+                }
+                lista[++lista[0]] = doc;
+                listas.put(grama, lista);
+            }
+        }
+
+        private void quitar(String id) {
+            Integer doc = docPorId.remove(id);
+            if (doc != null) {
+                claves[doc] = null;
+                originales[doc] = null;
+            }
+        }
+
+        private String buscarParecido(String clave) {
+
+            //CUÁNTOS TRIGRAMAS TIENE QUE COMPARTIR UN CANDIDATO: CADA EDICIÓN PERMITIDA PUEDE ROMPER HASTA 3
+            int permitida = distanciaPermitida(clave.length());
+            Set<String> gramas = gramas(clave);
+            int necesarios = Math.max(1, gramas.size() - LARGO_GRAMA * permitida);
+
+            //CONTEO DE TRIGRAMAS COMPARTIDOS POR CADA DOCUMENTO (EL ARREGLO QUEDA EN CERO AL TERMINAR)
+            int[] conteo = CONTEO.get();
+            if (conteo.length < cantidad) {
+                conteo = new int[Math.max(cantidad, conteo.length * 2)];
+                CONTEO.set(conteo);
+            }
+            int[] tocados = new int[16];
+            int cantidadTocados = 0;
+            for (String grama : gramas) {
+                int[] lista = listas.get(grama);
+                if (lista != null) {
+                    for (int i = 1; i <= lista[0]; i++) {
+                        if (conteo[lista[i]]++ == 0) {
+                            if (cantidadTocados == tocados.length) {
+                                tocados = Arrays.copyOf(tocados, cantidadTocados * 2);
+                            }
+                            tocados[cantidadTocados++] = lista[i];
+                        }
+                    }
+                }
+            }
+
+            //DISTANCIA SOLO CONTRA LOS CANDIDATOS. A IGUAL DISTANCIA, EL NOMBRE MÁS CORTO Y DESPUÉS EL PRIMERO ALFABÉTICAMENTE
+            int mejor = -1;
+            int mejorDistancia = permitida + 1;
+            for (int i = 0; i < cantidadTocados; i++) {
+                int doc = tocados[i];
+                int compartidos = conteo[doc];
+                conteo[doc] = 0;
+                if (claves[doc] == null || compartidos < necesarios || Math.abs(claves[doc].length() - clave.length()) > permitida) {
+                    continue;
+                }
+                int d = distancia(clave, claves[doc], permitida);
+                if (d < mejorDistancia || (d == mejorDistancia && mejor >= 0 && esPreferible(claves[doc], claves[mejor]))) {
+                    mejor = doc;
+                    mejorDistancia = d;
+                }
+            }
+            return mejor < 0 ? null : originales[mejor];
+        }
+
+        private static boolean esPreferible(String una, String otra) {
+            return una.length() != otra.length() ? una.length() < otra.length() : una.compareTo(otra) < 0;
+        }
+    }
+
+}
@@ -0,0 +1,420 @@
+package libreria.busqueda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import libreria.persistencia.Pagina;
+import libreria.utilidades.Configuracion;
+import libreria.utilidades.Normalizador;
+
+/**
+ * Índice en memoria de los títulos de los Libros, por trigramas (grupos de 3 caracteres consecutivos del título normalizado). Permite buscar por prefijo o por cualquier parte del título sin recorrer la tabla: de los trigramas de la consulta se toma el que aparece en menos títulos, y solo esos títulos se verifican y se ordenan.
+ * <p>
+ * Se arma la primera vez que se usa, recorriendo la tabla una vez, y después lo mantienen al día las escrituras de LibroDAO. Lo que se modifica por fuera del DAO (UPDATE masivos, otra aplicación) obliga a invalidarlo con {@link #invalidar()}: se vuelve a armar en la próxima búsqueda. Es seguro para usar desde varios hilos.
+ *
+ * @author Matias Luca Soto
+ */
+public final class IndiceTitulos {
+
+    //ATRIBUTOS
+    private static final IndiceTitulos INSTANCIA = new IndiceTitulos();
+    private static final int LARGO_GRAMA = 3;
+    private static final int MAXIMO_CANDIDATOS = Math.max(1, Configuracion.getInt("libreria.busqueda.candidatos", 20000)); // Coincidencias que se ordenan como máximo por búsqueda
+
+    private final ReentrantReadWriteLock candado = new ReentrantReadWriteLock();
+    private Estructura estructura; // null mientras no esté armado
+    private List<Object[]> pendientes; // Cambios recibidos mientras se arma, para aplicarlos al terminar
+
+    /**
+     * Recorrido de todos los Libros con el que se arma el índice
+     */
+    @FunctionalInterface
+    public interface Fuente {
+
+        void recorrer(Receptor receptor);
+    }
+
+    /**
+     * Recibe cada Libro del recorrido
+     */
+    @FunctionalInterface
+    public interface Receptor {
+
+        void recibir(String id, Long isbn, String titulo, boolean alta);
+    }
+
+    //CONSTRUCTOR
+    private IndiceTitulos() {
+    }
+
+    //MÉTODOS
+    /**
+     * @return El índice compartido por toda la aplicación
+     */
+    public static IndiceTitulos getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Arma el índice si todavía no está armado (o si fue invalidado). El recorrido se hace sin bloquear las búsquedas ni las escrituras; los cambios que llegan mientras tanto se aplican al terminar.
+     *
+     * @param fuente Recorrido de todos los Libros de la base
+     */
+    public void cargarSiHaceFalta(Fuente fuente) {
+        List<Object[]> propios; // Si se invalida durante el armado, la lista cambia y lo armado se descarta
+        candado.writeLock().lock();
+        try {
+            if (estructura != null || pendientes != null) {
+                return;
+            }
+            pendientes = new ArrayList<>();
+            propios = pendientes;
+        } finally {
+            candado.writeLock().unlock();
+        }
+        Estructura nueva = new Estructura();
+        boolean cargado = false;
+        try {
+            fuente.recorrer(nueva::agregar);
+            cargado = true;
+        } finally {
+            candado.writeLock().lock();
+            try {
+                if (cargado && pendientes == propios) {
+                    for (Object[] cambio : propios) {
+                        if (cambio.length == 1) {
+                            nueva.quitar((String) cambio[0]);
+                        } else {
+                            nueva.agregar((String) cambio[0], (Long) cambio[1], (String) cambio[2], (Boolean) cambio[3]);
+                        }
+                    }
+                    estructura = nueva;
+                }
+                if (pendientes == propios) {
+                    pendientes = null;
+                }
+            } finally {
+                candado.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Agrega un Libro al índice, o lo reemplaza si ya estaba (mismo id)
+     *
+     * @param id ID del Libro
+     * @param isbn ISBN del Libro
+     * @param titulo Título del Libro
+     * @param alta false si está dado de baja (no aparece en las búsquedas)
+     */
+    public void agregar(String id, Long isbn, String titulo, boolean alta) {
+        candado.writeLock().lock();
+        try {
+            if (pendientes != null) {
+                pendientes.add(new Object[]{id, isbn, titulo, alta});
+            }
+            if (estructura != null) {
+                estructura.agregar(id, isbn, titulo, alta);
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param id ID del Libro a quitar del índice
+     */
+    public void quitar(String id) {
+        candado.writeLock().lock();
+        try {
+            if (pendientes != null) {
+                pendientes.add(new Object[]{id});
+            }
+            if (estructura != null) {
+                estructura.quitar(id);
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Descarta el índice. Se vuelve a armar en la próxima búsqueda
+     */
+    public void invalidar() {
+        candado.writeLock().lock();
+        try {
+            estructura = null;
+            if (pendientes != null) {
+                // Hay un armado en curso que pudo leer datos viejos: se descarta al terminar
+                pendientes = null;
+            }
+        } finally {
+            candado.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los Libros dados de alta cuyo título contiene todas las palabras de la consulta (en cualquier parte, sin distinguir mayúsculas ni acentos). Los resultados se ordenan por relevancia: primero el título igual a la consulta, después los que empiezan con ella, los que tienen una palabra que empieza con ella, los que la contienen entera y por último los que tienen sus palabras separadas; a igual relevancia, los títulos más cortos primero.
+     * <p>
+     * Para que una consulta muy común (una palabra que está en casi todos los títulos) no tenga que ordenar el catálogo entero, solo se ordenan las primeras libreria.busqueda.candidatos coincidencias (por defecto 20000); pasado ese número conviene refinar la búsqueda.
+     * <p>
+     * Las palabras de menos de 3 caracteres solo coinciden con el inicio de una palabra del título (en "el prin", "el" no encuentra "papel").
+     *
+     * @param texto Texto a buscar
+     * @param pagina Número de página, empezando en 0
+     * @param tamanio Cantidad de resultados por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página con los ISBN encontrados, en orden de relevancia. Vacía si el índice no está armado o si la consulta no tiene al menos 2 caracteres
+     */
+    public Pagina<Long> buscar(String texto, int pagina, int tamanio) {
+        int limite = Pagina.limitar(tamanio);
+        int numero = Math.max(0, pagina);
+        String consulta = Normalizador.normalizar(texto);
+        candado.readLock().lock();
+        try {
+            if (estructura == null || consulta == null || consulta.length() < 2) {
+                return new Pagina<>(new ArrayList<>(), numero, false);
+            }
+            return estructura.buscar(consulta, numero, limite);
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Cantidad de Libros en el índice, o -1 si no está armado
+     */
+    public int getCantidad() {
+        candado.readLock().lock();
+        try {
+            return estructura == null ? -1 : estructura.docPorId.size();
+        } finally {
+            candado.readLock().unlock();
+        }
+    }
+
+    /**
+     * Trigramas de un texto normalizado, con un espacio adelante para que el inicio del título cuente como inicio de palabra
+     */
+    private static Set<String> gramas(String normalizado) {
+        String texto = " " + normalizado;
+        Set<String> gramas = new LinkedHashSet<>();
+        for (int i = 0; i + LARGO_GRAMA <= texto.length(); i++) {
+            gramas.add(texto.substring(i, i + LARGO_GRAMA));
+        }
+        return gramas;
+    }
+
+    /**
+     * Datos del índice. Cada Libro es un documento con un número interno, y cada trigrama tiene la lista de documentos en los que aparece. Los documentos quitados quedan marcados y se compactan cuando son muchos.
+     */
+    private static final class Estructura {
+
+        private final Map<String, Integer> docPorId = new HashMap<>();
+        private final Map<String, ListaDocs> listas = new HashMap<>();
+        private final BitSet activos = new BitSet();
+        private String[] ids = new String[1024];
+        private String[] titulos = new String[1024];
+        private long[] isbns = new long[1024];
+        private int cantidad;
+
+        private void agregar(String id, Long isbn, String titulo, boolean alta) {
+            quitar(id);
+            if (cantidad == titulos.length) {
+                ids = Arrays.copyOf(ids, cantidad * 2);
+                titulos = Arrays.copyOf(titulos, cantidad * 2);
+                isbns = Arrays.copyOf(isbns, cantidad * 2);
+            }
+            int doc = cantidad++;
+            String normalizado = Normalizador.normalizar(titulo);
+            ids[doc] = id;
+            titulos[doc] = normalizado;
+            isbns[doc] = isbn;
+            activos.set(doc, alta);
+            docPorId.put(id, doc);
+            for (String grama : gramas(normalizado)) {
+                listas.computeIfAbsent(grama, g -> new ListaDocs()).agregar(doc);
+            }
+        }
+
+        private void quitar(String id) {
+            Integer doc = docPorId.remove(id);
+            if (doc != null) {
+                titulos[doc] = null;
+                ids[doc] = null;
+                activos.clear(doc);
+                if (cantidad > 1024 && docPorId.size() < cantidad / 2) {
+                    compactar();
+                }
+            }
+        }
+
+        /**
+         * Vuelve a numerar los documentos vigentes, descartando los quitados y sus entradas en las listas
+         */
+        private void compactar() {
+            String[] viejosIds = ids;
+            String[] viejosTitulos = titulos;
+            long[] viejosIsbns = isbns;
+            BitSet viejosActivos = (BitSet) activos.clone();
+            int viejaCantidad = cantidad;
+            docPorId.clear();
+            listas.clear();
+            activos.clear();
+            ids = new String[Math.max(1024, viejaCantidad)];
+            titulos = new String[ids.length];
+            isbns = new long[ids.length];
+            cantidad = 0;
+            for (int doc = 0; doc < viejaCantidad; doc++) {
+                if (viejosTitulos[doc] != null) {
+                    agregar(viejosIds[doc], viejosIsbns[doc], viejosTitulos[doc], viejosActivos.get(doc));
+                }
+            }
+        }
+
+        private Pagina<Long> buscar(String consulta, int numero, int limite) {
+
+            /*TRIGRAMAS A CRUZAR: LOS DE CADA PALABRA DE 3 O MÁS CARACTERES. SI NO HAY NINGUNA, EL INICIO DE PALABRA (ESPACIO Y DOS
+            LETRAS) DE LA MÁS LARGA. LAS PALABRAS DE UNA LETRA NO TIENEN TRIGRAMA PROPIO: SI SOLO HAY DE ESAS, SE RECORREN TODOS LOS TÍTULOS*/
+            String[] palabras = consulta.split(" ");
+            Set<String> gramas = new LinkedHashSet<>();
+            String masLarga = "";
+            for (String palabra : palabras) {
+                if (palabra.length() >= LARGO_GRAMA) {
+                    for (int i = 0; i + LARGO_GRAMA <= palabra.length(); i++) {
+                        gramas.add(palabra.substring(i, i + LARGO_GRAMA));
+                    }
+                }
+                if (palabra.length() > masLarga.length()) {
+                    masLarga = palabra;
+                }
+            }
+            if (gramas.isEmpty() && masLarga.length() == LARGO_GRAMA - 1) {
+                gramas.add(" " + masLarga);
+            }
+
+            //LA LISTA DE DOCUMENTOS MÁS CORTA (NULL: TODOS). SI FALTA ALGÚN TRIGRAMA, NINGÚN TÍTULO PUEDE CONTENER LA CONSULTA
+            ListaDocs primera = null;
+            for (String grama : gramas) {
+                ListaDocs lista = listas.get(grama);
+                if (lista == null) {
+                    return new Pagina<>(new ArrayList<>(), numero, false);
+                }
+                if (primera == null || lista.tamanio < primera.tamanio) {
+                    primera = lista;
+                }
+            }
+
+            //SE VERIFICA CADA DOCUMENTO DE ESA LISTA CONTRA EL TEXTO (MÁS BARATO QUE CRUZAR LAS DEMÁS LISTAS) Y SE GUARDAN SOLO LOS MEJORES HASTA ESTA PÁGINA
+            int conservar = (numero + 1) * limite + 1;
+            Comparator<Candidato> orden = Comparator.<Candidato>comparingInt(c -> c.puntaje)
+                    .thenComparingInt(c -> titulos[c.doc].length())
+                    .thenComparing(c -> titulos[c.doc])
+                    .thenComparingLong(c -> isbns[c.doc]);
+            PriorityQueue<Candidato> mejores = new PriorityQueue<>(orden.reversed());
+            int coincidencias = 0;
+            int recorrer = primera == null ? cantidad : primera.tamanio;
+            for (int i = 0; i < recorrer && coincidencias < MAXIMO_CANDIDATOS; i++) {
+                int doc = primera == null ? i : primera.docs[i];
+                if (!activos.get(doc)) {
+                    continue;
+                }
+                int puntaje = puntuar(titulos[doc], consulta, palabras);
+                if (puntaje < 0) {
+                    continue;
+                }
+                coincidencias++;
+                if (mejores.size() < conservar) {
+                    mejores.add(new Candidato(doc, puntaje));
+                } else if (orden.compare(new Candidato(doc, puntaje), mejores.peek()) < 0) {
+                    mejores.poll();
+                    mejores.add(new Candidato(doc, puntaje));
+                }
+            }
+
+            //ORDEN FINAL Y RECORTE DE LA PÁGINA PEDIDA
+            List<Candidato> ordenados = new ArrayList<>(mejores);
+            ordenados.sort(orden);
+            List<Long> resultado = new ArrayList<>();
+            for (int i = numero * limite; i < ordenados.size(); i++) {
+                resultado.add(isbns[ordenados.get(i).doc]);
+            }
+            return Pagina.de(resultado, numero, limite);
+        }
+
+        /**
+         * @return La relevancia del título para la consulta (menor es mejor), o -1 si no contiene todas sus palabras
+         */
+        private static int puntuar(String titulo, String consulta, String[] palabras) {
+            for (String palabra : palabras) {
+                if (palabra.length() < LARGO_GRAMA ? !empiezaPalabra(titulo, palabra) : !titulo.contains(palabra)) {
+                    return -1;
+                }
+            }
+            if (titulo.equals(consulta)) {
+                return 0;
+            }
+            if (titulo.startsWith(consulta)) {
+                return 1;
+            }
+            if (empiezaPalabra(titulo, consulta)) {
+                return 2;
+            }
+            if (titulo.contains(consulta)) {
+                return 3;
+            }
+            return 4;
+        }
+
+        /**
+         * @return true si alguna palabra del título empieza con el texto
+         */
+        private static boolean empiezaPalabra(String titulo, String texto) {
+            for (int i = titulo.indexOf(texto); i >= 0; i = titulo.indexOf(texto, i + 1)) {
+                if (i == 0 || titulo.charAt(i - 1) == ' ') {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Lista de números de documento que crece de a bloques
+     */
+    private static final class ListaDocs {
+
+        private int[] docs = new int[4];
+        private int tamanio;
+
+        private void agregar(int doc) {
+            if (tamanio == docs.length) {
+                docs = Arrays.copyOf(docs, tamanio * 2);
+            }
+            docs[tamanio++] = doc;
+        }
+    }
+
+    /**
+     * Documento que cumple la consulta, con su relevancia
+     */
+    private static final class Candidato {
+
+        private final int doc;
+        private final int puntaje;
+
+        private Candidato(int doc, int puntaje) {
+            this.doc = doc;
+            this.puntaje = puntaje;
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package libreria.dto;
+
+/**
+ * Fila de solo lectura con las columnas de un Libro que muestran los listados: ISBN, título, nombres del Autor y la Editorial y ejemplares restantes. Se arma directamente desde la consulta, sin entidades administradas por el EntityManager.
+ *
+ * @author Matias Luca Soto
+ */
+public final class LibroResumenDTO {
+
+    //ATRIBUTOS
+    private final Long isbn;
+    private final String titulo;
+    private final String autor;
+    private final String editorial;
+    private final Integer ejemplaresRestantes;
+
+    //CONSTRUCTOR
+    /**
+     * Constructor usado por las consultas "SELECT NEW"
+     *
+     * @param isbn ISBN del Libro
+     * @param titulo Título del Libro
+     * @param autor Nombre del Autor
+     * @param editorial Nombre de la Editorial
+     * @param ejemplaresRestantes Ejemplares disponibles
+     */
+    public LibroResumenDTO(Long isbn, String titulo, String autor, String editorial, Integer ejemplaresRestantes) {
+        this.isbn = isbn;
+        this.titulo = titulo;
+        this.autor = autor;
+        this.editorial = editorial;
+        this.ejemplaresRestantes = ejemplaresRestantes;
+    }
+
+    //GETTERS
+    public Long getIsbn() {
+        return isbn;
+    }
+
+    public String getTitulo() {
+        return titulo;
+    }
+
+    public String getAutor() {
+        return autor;
+    }
+
+    public String getEditorial() {
+        return editorial;
+    }
+
+    public Integer getEjemplaresRestantes() {
+        return ejemplaresRestantes;
+    }
+
+    //toString
+    @Override
+    public String toString() {
+        return "Titulo: " + titulo + " / ISBN: " + isbn + " / Autor: " + autor + " / Editorial: " + editorial + " / Restantes: " + ejemplaresRestantes;
+    }
+
+}
@@ -0,0 +1,41 @@
+package libreria.dto;
+
+/**
+ * Fila de solo lectura con el ID y el nombre de un Autor o una Editorial. Es lo único que necesitan los listados y selectores del menú, así que se consulta en lugar de la entidad completa.
+ *
+ * @author Matias Luca Soto
+ */
+public final class ReferenciaDTO {
+
+    //ATRIBUTOS
+    private final String id;
+    private final String nombre;
+
+    //CONSTRUCTOR
+    /**
+     * Constructor usado por las consultas "SELECT NEW"
+     *
+     * @param id Primary Key del Autor o la Editorial
+     * @param nombre Nombre del Autor o la Editorial
+     */
+    public ReferenciaDTO(String id, String nombre) {
+        this.id = id;
+        this.nombre = nombre;
+    }
+
+    //GETTERS
+    public String getId() {
+        return id;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    //toString
+    @Override
+    public String toString() {
+        return nombre;
+    }
+
+}
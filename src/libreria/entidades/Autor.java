@@ -1,27 +1,72 @@
 package libreria.entidades;
 
 import com.sun.istack.internal.NotNull;
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
+import libreria.persistencia.AsignadorId;
+import libreria.persistencia.GeneradorId;
+import libreria.persistencia.PersonalizadorCache;
+import libreria.utilidades.Normalizador;
+import org.eclipse.persistence.annotations.Customizer;
 
 /**
  *
  * @author Matias Luca Soto
  */
 @Entity
-public class Autor {
+@Cacheable
+@Customizer(PersonalizadorCache.class)
+@EntityListeners(AsignadorId.class)
+@Table(uniqueConstraints = @UniqueConstraint(name = Autor.UK_NOMBRE, columnNames = "NOMBRECLAVE"),
+        indexes = @Index(name = "IDX_AUTOR_ALTA", columnList = "ALTA"))
+@NamedQueries({
+    @NamedQuery(name = "Autor.buscarPorNombre", query = "SELECT a FROM Autor a WHERE a.nombreClave = :clave"),
+    @NamedQuery(name = "Autor.listarTodos", query = "SELECT a FROM Autor a"),
+    @NamedQuery(name = "Autor.listar", query = "SELECT a FROM Autor a WHERE " + Filtros.AUTOR_ALTA + "ORDER BY a.nombre, a.id"),
+    @NamedQuery(name = "Autor.listarDesde", query = "SELECT a FROM Autor a "
+            + "WHERE " + Filtros.AUTOR_ALTA + "AND (a.nombre > :nombre OR (a.nombre = :nombre AND a.id > :id)) "
+            + "ORDER BY a.nombre, a.id"),
+    @NamedQuery(name = "Autor.listarReferencias", query = "SELECT NEW libreria.dto.ReferenciaDTO(a.id, a.nombre) FROM Autor a WHERE " + Filtros.AUTOR_ALTA + "ORDER BY a.nombre, a.id"),
+    @NamedQuery(name = "Autor.listarReferenciasDesde", query = "SELECT NEW libreria.dto.ReferenciaDTO(a.id, a.nombre) FROM Autor a "
+            + "WHERE " + Filtros.AUTOR_ALTA + "AND (a.nombre > :nombre OR (a.nombre = :nombre AND a.id > :id)) "
+            + "ORDER BY a.nombre, a.id")})
+public class Autor implements Identificable {
+
+    //RESTRICCIONES
+    /**
+     * Nombre de la restricción única sobre el nombre normalizado (NOMBRECLAVE): dos nombres que solo difieren en mayúsculas, tildes o espacios cuentan como el mismo, igual que en las búsquedas por nombre. Sirve para reconocerla en los errores de la base (ver libreria.persistencia.ErroresPersistencia) y también de índice para esas búsquedas
+     */
+    public static final String UK_NOMBRE = "UK_AUTOR_NOMBRE";
 
     //ATRIBUTOS
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @Column(length = GeneradorId.LONGITUD)
     private String id; // PRIMARY KEY
     
     @NotNull
+    @Column(nullable = false)
     private String nombre;
     private Boolean alta;
 
+    //Nombre normalizado (ver libreria.utilidades.Normalizador), único: las búsquedas por nombre comparan contra esta columna
+    private String nombreClave;
+
+    //Versión para el bloqueo optimista: dos modificaciones simultáneas no se pisan, la segunda falla y se reintenta
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     //CONSTRUCTORES
     /**
      * Constructor con todos los parámetros
@@ -39,6 +84,19 @@ public class Autor {
     public Autor() {
     }
 
+    /**
+     * Constructor de copia: copia todos los atributos, incluido el ID y la versión
+     *
+     * @param original Autor a copiar
+     */
+    public Autor(Autor original) {
+        this.id = original.id;
+        this.nombre = original.nombre;
+        this.alta = original.alta;
+        this.nombreClave = original.nombreClave;
+        this.version = original.version;
+    }
+
     //GETTERS & SETTERS
     public String getId() {
         return id;
@@ -54,6 +112,11 @@ public class Autor {
 
     public void setNombre(String nombre) {
         this.nombre = nombre;
+        this.nombreClave = Normalizador.normalizar(nombre);
+    }
+
+    public String getNombreClave() {
+        return nombreClave;
     }
 
     public Boolean getAlta() {
@@ -64,6 +127,19 @@ public class Autor {
         this.alta = alta;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Recalcula la clave normalizada antes de cada INSERT y UPDATE, también cuando el nombre se asignó sin pasar por el setter
+     */
+    @PrePersist
+    @PreUpdate
+    private void actualizarClave() {
+        nombreClave = Normalizador.normalizar(nombre);
+    }
+
     //toString
     @Override
     public String toString() {
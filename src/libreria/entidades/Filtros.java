@@ -0,0 +1,19 @@
+package libreria.entidades;
+
+/**
+ * Condiciones JPQL compartidas por las consultas con nombre de las entidades. Las consultas de todos los días (listados y búsquedas por Autor o Editorial) filtran las filas dadas de baja, así el catálogo archivado no pesa en ellas. Las búsquedas por clave (id, ISBN, título, nombre), los chequeos de duplicados y los recorridos completos no filtran: tienen que ver también las filas dadas de baja.
+ *
+ * @author Matias Luca Soto
+ */
+final class Filtros {
+
+    //ATRIBUTOS
+    static final String LIBRO_ALTA = "l.alta = TRUE ";
+    static final String AUTOR_ALTA = "a.alta = TRUE ";
+    static final String EDITORIAL_ALTA = "e.alta = TRUE ";
+
+    //CONSTRUCTOR
+    private Filtros() {
+    }
+
+}
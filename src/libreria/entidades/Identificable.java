@@ -0,0 +1,13 @@
+package libreria.entidades;
+
+/**
+ * Entidad con clave primaria de tipo String asignada por la aplicación (ver libreria.persistencia.AsignadorId)
+ *
+ * @author Matias Luca Soto
+ */
+public interface Identificable {
+
+    String getId();
+
+    void setId(String id);
+}
@@ -2,10 +2,27 @@ package libreria.entidades;
 
 import com.sun.istack.internal.NotNull;
 import javax.persistence.CascadeType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
+import javax.persistence.EntityListeners;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.QueryHint;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
+import libreria.persistencia.AsignadorId;
+import libreria.persistencia.GeneradorId;
+import libreria.utilidades.Normalizador;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
 //import javax.persistence.OneToOne;
 //import javax.persistence.Temporal;
 //import javax.persistence.TemporalType;
@@ -16,19 +33,81 @@ import javax.persistence.ManyToOne;
  * @author Matias Luca Soto
  */
 @Entity
-public class Libro {
+@EntityListeners(AsignadorId.class)
+@Table(uniqueConstraints = {
+    @UniqueConstraint(name = Libro.UK_ISBN, columnNames = "ISBN"),
+    @UniqueConstraint(name = Libro.UK_TITULO, columnNames = "TITULOCLAVE")},
+        indexes = {
+            @Index(name = "IDX_LIBRO_AUTOR", columnList = "AUTOR_ID"),
+            @Index(name = "IDX_LIBRO_EDITORIAL", columnList = "EDITORIAL_ID"),
+            @Index(name = "IDX_LIBRO_ALTA", columnList = "ALTA")})
+@NamedQueries({
+    @NamedQuery(name = "Libro.buscarPorIsbn", query = Libro.SELECT_LIBRO + "WHERE l.isbn = :isbn"),
+    @NamedQuery(name = "Libro.buscarPorTitulo", query = Libro.SELECT_LIBRO + "WHERE l.tituloClave = :clave"),
+    @NamedQuery(name = "Libro.buscarDuplicados", query = "SELECT l FROM Libro l WHERE l.isbn = :isbn OR l.tituloClave = :clave"),
+    @NamedQuery(name = "Libro.buscarPorAutor", query = Libro.SELECT_LIBRO + "WHERE " + Filtros.LIBRO_ALTA + "AND l.autor.nombreClave = :clave",
+            hints = @QueryHint(name = QueryHints.READ_ONLY, value = HintValues.TRUE)),
+    @NamedQuery(name = "Libro.buscarPorEditorial", query = Libro.SELECT_LIBRO + "WHERE " + Filtros.LIBRO_ALTA + "AND l.editorial.nombreClave = :clave",
+            hints = @QueryHint(name = QueryHints.READ_ONLY, value = HintValues.TRUE)),
+    @NamedQuery(name = "Libro.listar", query = Libro.SELECT_LIBRO + "WHERE " + Filtros.LIBRO_ALTA),
+    @NamedQuery(name = "Libro.listarActivosPorIsbn", query = Libro.SELECT_LIBRO + "WHERE " + Filtros.LIBRO_ALTA + "ORDER BY l.isbn"),
+    @NamedQuery(name = "Libro.listarPorIsbn", query = Libro.SELECT_LIBRO + "ORDER BY l.isbn"),
+    @NamedQuery(name = "Libro.listarDesde", query = Libro.SELECT_LIBRO + "WHERE " + Filtros.LIBRO_ALTA + "AND l.isbn > :isbn ORDER BY l.isbn"),
+    @NamedQuery(name = "Libro.listarResumenesDesde", query = Libro.SELECT_RESUMEN + "WHERE " + Filtros.LIBRO_ALTA + "AND l.isbn > :isbn ORDER BY l.isbn"),
+    @NamedQuery(name = "Libro.prestar", query = "UPDATE Libro l SET l.ejemplaresPrestados = l.ejemplaresPrestados + :cantidad, "
+            + "l.ejemplaresRestantes = l.ejemplaresRestantes - :cantidad, l.version = l.version + 1 "
+            + "WHERE l.isbn = :isbn AND l.alta = TRUE AND l.ejemplaresRestantes >= :cantidad"),
+    @NamedQuery(name = "Libro.devolver", query = "UPDATE Libro l SET l.ejemplaresPrestados = l.ejemplaresPrestados - :cantidad, "
+            + "l.ejemplaresRestantes = l.ejemplaresRestantes + :cantidad, l.version = l.version + 1 "
+            + "WHERE l.isbn = :isbn AND l.ejemplaresPrestados >= :cantidad"),
+    @NamedQuery(name = "Libro.cambiarAltaPorAutor", query = "UPDATE Libro l SET l.alta = :alta, l.version = l.version + 1 "
+            + "WHERE l.autor.id = :id AND l.alta <> :alta"),
+    @NamedQuery(name = "Libro.cambiarAltaPorEditorial", query = "UPDATE Libro l SET l.alta = :alta, l.version = l.version + 1 "
+            + "WHERE l.editorial.id = :id AND l.alta <> :alta"),
+    @NamedQuery(name = "Libro.cambiarAltaPorAnios", query = "UPDATE Libro l SET l.alta = :alta, l.version = l.version + 1 "
+            + "WHERE l.anio BETWEEN :desde AND :hasta AND l.alta <> :alta"),
+    @NamedQuery(name = "Libro.contar", query = "SELECT COUNT(l) FROM Libro l"),
+    @NamedQuery(name = "Libro.listarIsbnsYTitulosDesde", query = "SELECT l.isbn, l.titulo FROM Libro l WHERE l.isbn > :isbn ORDER BY l.isbn"),
+    @NamedQuery(name = "Libro.listarParaIndiceDesde", query = "SELECT l.id, l.isbn, l.titulo, l.alta FROM Libro l WHERE l.isbn > :isbn ORDER BY l.isbn"),
+    @NamedQuery(name = "Libro.buscarPorIsbns", query = Libro.SELECT_LIBRO + "WHERE " + Filtros.LIBRO_ALTA + "AND l.isbn IN :isbns",
+            hints = @QueryHint(name = QueryHints.READ_ONLY, value = HintValues.TRUE))})
+public class Libro implements Identificable {
+
+    //CONSULTAS Y RESTRICCIONES
+    /**
+     * Nombre de la restricción única sobre el ISBN, para reconocerla en los errores de la base (ver libreria.persistencia.ErroresPersistencia)
+     */
+    public static final String UK_ISBN = "UK_LIBRO_ISBN";
+    /**
+     * Nombre de la restricción única sobre el título normalizado (TITULOCLAVE): dos títulos que solo difieren en mayúsculas, tildes o espacios cuentan como el mismo, igual que en las búsquedas por título. También sirve de índice para esas búsquedas
+     */
+    public static final String UK_TITULO = "UK_LIBRO_TITULO";
+    /**
+     * Inicio de todas las consultas que devuelven Libros: trae el Autor y la Editorial en el mismo SELECT (fetch join), así mostrar un listado cuesta una sola consulta y no una más por cada Libro
+     */
+    static final String SELECT_LIBRO = "SELECT l FROM Libro l JOIN FETCH l.autor JOIN FETCH l.editorial ";
+    /**
+     * Inicio de las consultas de listados: solo las columnas que se muestran, armadas como LibroResumenDTO
+     */
+    static final String SELECT_RESUMEN = "SELECT NEW libreria.dto.LibroResumenDTO(l.isbn, l.titulo, a.nombre, e.nombre, l.ejemplaresRestantes) "
+            + "FROM Libro l JOIN l.autor a JOIN l.editorial e ";
 
     //ATRIBUTOS
     @Id
-    @GeneratedValue
+    @Column(length = GeneradorId.LONGITUD)
     private String id; // PRIMARY KEY
 
     @NotNull
+    @Column(nullable = false)
     private Long isbn; // NO NULO
 
     @NotNull
+    @Column(nullable = false)
     private String titulo; // NO NULO
 
+    //Título normalizado (ver libreria.utilidades.Normalizador), único: las búsquedas por título comparan contra esta columna
+    private String tituloClave;
+
     //@Temporal(TemporalType.DATE)
     private Integer anio;
 
@@ -37,10 +116,20 @@ public class Libro {
     private Integer ejemplaresRestantes;
     private Boolean alta;
 
+    /* Versión para el bloqueo optimista: cada UPDATE la incrementa, así un merge hecho con datos viejos (por ejemplo
+    después de un préstamo registrado por otro puesto) falla en lugar de pisar los contadores de ejemplares */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    /* Las consultas de LibroDAO traen Autor y Editorial con JOIN FETCH. Si algún Libro se lee sin ese join,
+    sus relaciones se cargan en lote (un SELECT ... IN para todos) y no con un SELECT por Libro */
     @ManyToOne(cascade = CascadeType.REFRESH, optional = false)
+    @BatchFetch(BatchFetchType.IN)
     private Autor autor; // RELACIÓN MUCHOS A 1
 
     @ManyToOne(cascade = CascadeType.REFRESH, optional = false)
+    @BatchFetch(BatchFetchType.IN)
     private Editorial editorial; // RELACIÓN MUCHOS A 1
 
     //CONSTRUCTORES
@@ -93,6 +182,26 @@ public class Libro {
     public Libro() {
     }
 
+    /**
+     * Constructor de copia: copia todos los atributos, incluido el ID. El Autor y la Editorial se comparten con el original.
+     *
+     * @param original Libro a copiar
+     */
+    public Libro(Libro original) {
+        this.id = original.id;
+        this.isbn = original.isbn;
+        this.titulo = original.titulo;
+        this.tituloClave = original.tituloClave;
+        this.anio = original.anio;
+        this.ejemplares = original.ejemplares;
+        this.ejemplaresPrestados = original.ejemplaresPrestados;
+        this.ejemplaresRestantes = original.ejemplaresRestantes;
+        this.alta = original.alta;
+        this.version = original.version;
+        this.autor = original.autor;
+        this.editorial = original.editorial;
+    }
+
     //GETTERS & SETTERS
     public String getId() {
         return id;
@@ -116,6 +225,11 @@ public class Libro {
 
     public void setTitulo(String titulo) {
         this.titulo = titulo;
+        this.tituloClave = Normalizador.normalizar(titulo);
+    }
+
+    public String getTituloClave() {
+        return tituloClave;
     }
 
     public Integer getAnio() {
@@ -158,6 +272,10 @@ public class Libro {
         this.alta = alta;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public Autor getAutor() {
         return autor;
     }
@@ -174,6 +292,15 @@ public class Libro {
         this.editorial = editorial;
     }
 
+    /**
+     * Recalcula la clave normalizada antes de cada INSERT y UPDATE, también cuando el título se asignó sin pasar por el setter
+     */
+    @PrePersist
+    @PreUpdate
+    private void actualizarClave() {
+        tituloClave = Normalizador.normalizar(titulo);
+    }
+
     //toString
     @Override
     public String toString() {
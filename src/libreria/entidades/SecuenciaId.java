@@ -0,0 +1,58 @@
+package libreria.entidades;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Fila de la tabla de secuencias que usa la estrategia de claves "secuencia": guarda, por entidad, el próximo valor que todavía no fue reservado por ningún proceso
+ *
+ * @author Matias Luca Soto
+ */
+@Entity
+public class SecuenciaId {
+
+    //ATRIBUTOS
+    @Id
+    @Column(length = 64)
+    private String nombre; // PRIMARY KEY: nombre de la entidad
+
+    @Column(nullable = false)
+    private Long siguiente;
+
+    //CONSTRUCTORES
+    /**
+     * Constructor con todos los atributos como parámetros
+     *
+     * @param nombre
+     * @param siguiente
+     */
+    public SecuenciaId(String nombre, Long siguiente) {
+        this.nombre = nombre;
+        this.siguiente = siguiente;
+    }
+
+    /**
+     * Constructor vacio
+     */
+    public SecuenciaId() {
+    }
+
+    //GETTERS & SETTERS
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public Long getSiguiente() {
+        return siguiente;
+    }
+
+    public void setSiguiente(Long siguiente) {
+        this.siguiente = siguiente;
+    }
+
+}
@@ -0,0 +1,497 @@
+package libreria.importacion;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.persistence.PersistenceException;
+import libreria.busqueda.BuscadorSimilares;
+import libreria.entidades.Autor;
+import libreria.entidades.Editorial;
+import libreria.entidades.Libro;
+import libreria.exceptions.LibroException;
+import libreria.persistencia.AutorDAO;
+import libreria.persistencia.EditorialDAO;
+import libreria.persistencia.ErroresPersistencia;
+import libreria.persistencia.LibroDAO;
+import libreria.persistencia.UnidadDeTrabajo;
+import libreria.utilidades.Configuracion;
+import libreria.utilidades.FiltroBloom;
+import libreria.utilidades.Normalizador;
+
+/**
+ * Importación masiva del catálogo desde un archivo CSV. El archivo se lee en streaming línea por línea, los Autores y Editoriales se resuelven contra mapas en memoria por nombre (sin una consulta por fila) y los Libros se guardan en lotes, cada uno en su propia transacción.
+ * <p>
+ * Formato de cada fila (la primera puede ser un encabezado que empiece con "isbn"):
+ * <pre>isbn,titulo,anio,ejemplares,ejemplaresPrestados,autor,editorial</pre>
+ * Los campos pueden ir entre comillas dobles. Las filas inválidas o duplicadas se escriben, junto con el motivo, en un archivo "&lt;archivo&gt;.rechazados.csv" al lado del original.
+ * <p>
+ * Para detectar los Libros que ya están en la base se usa un filtro en memoria con los ISBN y títulos guardados (libreria.importacion.filtro, por defecto true; libreria.importacion.filtro.falsos, falsos positivos por mil, por defecto 10): solo las filas que el filtro marca como posibles duplicados se confirman con una consulta. Con el filtro desactivado se consulta la base en cada fila.
+ * <p>
+ * Un Autor o una Editorial que no está con el mismo nombre pero sí con uno parecido (un error de tipeo, ver {@link BuscadorSimilares}) usa el existente en lugar de crear un duplicado, salvo con libreria.similares.unificar=false. La búsqueda es en memoria y solo se hace para los nombres que no están en los mapas.
+ *
+ * @author Matias Luca Soto
+ */
+public class ImportadorCatalogo {
+
+    //ATRIBUTOS
+    private static final int COLUMNAS = 7;
+    private static final int LOTES_POR_INFORME = 10;
+
+    private final LibroDAO libroDAO;
+    private final AutorDAO autorDAO;
+    private final EditorialDAO editorialDAO;
+    private final char separador;
+    private final int tamanioLote;
+    private final boolean usarFiltro;
+    private final double probabilidadFalsos;
+    private final boolean unificarParecidos;
+
+    //CONSTRUCTORES
+    /**
+     * Usa el separador configurado en libreria.importacion.separador (por defecto ',') y el tamaño de lote general
+     */
+    public ImportadorCatalogo() {
+        this(Configuracion.get("libreria.importacion.separador", ",").charAt(0), UnidadDeTrabajo.TAMANIO_LOTE);
+    }
+
+    /**
+     * @param separador Caracter que separa las columnas del CSV
+     * @param tamanioLote Cantidad de Libros por transacción
+     */
+    public ImportadorCatalogo(char separador, int tamanioLote) {
+        this.libroDAO = new LibroDAO();
+        this.autorDAO = new AutorDAO();
+        this.editorialDAO = new EditorialDAO();
+        this.separador = separador;
+        this.tamanioLote = Math.max(1, tamanioLote);
+        this.usarFiltro = Configuracion.getBoolean("libreria.importacion.filtro", true);
+        this.probabilidadFalsos = Math.min(500, Math.max(1, Configuracion.getInt("libreria.importacion.filtro.falsos", 10))) / 1000.0;
+        this.unificarParecidos = Configuracion.getBoolean("libreria.similares.unificar", true);
+    }
+
+    //MÉTODOS
+    /**
+     * Importa todos los Libros del archivo CSV recibido, creando los Autores y Editoriales que todavía no existan
+     *
+     * @param archivo Ruta del archivo CSV (UTF-8)
+     * @return Resumen de la importación
+     * @throws IOException Si el archivo no se puede leer o no se puede escribir el archivo de rechazos
+     */
+    public ResultadoImportacion importar(Path archivo) throws IOException {
+
+        long inicio = System.currentTimeMillis();
+        ResultadoImportacion resultado = new ResultadoImportacion();
+
+        //ESTADO EN MEMORIA: REFERENCIAS POR NOMBRE (Y SUS NOMBRES PARA BUSCAR PARECIDOS, CON LA CLAVE COMO ID) Y CLAVES YA USADAS
+        Map<String, Autor> autores = new HashMap<>();
+        Parecidos parecidos = new Parecidos();
+        for (Autor autor : autorDAO.listarTodosLosAutores()) {
+            autores.put(clave(autor.getNombre()), autor);
+            parecidos.autores.agregar(clave(autor.getNombre()), autor.getNombre());
+        }
+        Map<String, Editorial> editoriales = new HashMap<>();
+        for (Editorial editorial : editorialDAO.listarTodasLasEditoriales()) {
+            editoriales.put(clave(editorial.getNombre()), editorial);
+            parecidos.editoriales.agregar(clave(editorial.getNombre()), editorial.getNombre());
+        }
+        Set<Long> isbns = new HashSet<>();
+        Set<String> titulos = new HashSet<>();
+        ClavesGuardadas guardadas = usarFiltro ? ClavesGuardadas.cargar(libroDAO, probabilidadFalsos) : null;
+
+        Lote lote = new Lote();
+        int lotesGuardados = 0;
+        try (BufferedReader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8);
+                ArchivoRechazos rechazos = new ArchivoRechazos(archivo.resolveSibling(archivo.getFileName() + ".rechazados.csv"))) {
+
+            String linea;
+            boolean primera = true;
+            while ((linea = lector.readLine()) != null) {
+
+                //SE SALTEAN LÍNEAS VACÍAS Y EL ENCABEZADO
+                if (linea.trim().isEmpty()) {
+                    continue;
+                }
+                if (primera) {
+                    primera = false;
+                    if (linea.trim().toLowerCase().startsWith("isbn")) {
+                        continue;
+                    }
+                }
+
+                resultado.sumarFilaLeida();
+                try {
+                    lote.agregar(convertir(linea, autores, editoriales, parecidos, isbns, titulos, guardadas, lote), linea);
+                } catch (LibroException e) {
+                    rechazos.escribir(linea, e.getMessage());
+                    resultado.sumarFilaRechazada();
+                }
+
+                //CUANDO EL LOTE ESTÁ COMPLETO SE GUARDA EN UNA TRANSACCIÓN
+                if (lote.libros.size() >= tamanioLote) {
+                    guardar(lote, autores, editoriales, parecidos, isbns, titulos, rechazos, resultado);
+                    lotesGuardados++;
+                    if (lotesGuardados % LOTES_POR_INFORME == 0) {
+                        resultado.setMilisegundos(System.currentTimeMillis() - inicio);
+                        System.out.println(resultado.getFilasLeidas() + " filas procesadas (" + String.format("%.0f", resultado.getFilasPorSegundo()) + " filas/s)");
+                    }
+                }
+            }
+            guardar(lote, autores, editoriales, parecidos, isbns, titulos, rechazos, resultado);
+            resultado.setArchivoRechazos(rechazos.getRuta());
+
+        } finally {
+            resultado.setMilisegundos(System.currentTimeMillis() - inicio);
+        }
+        return resultado;
+    }
+
+    /**
+     * Convierte una fila del CSV en un Libro nuevo, validándola con las mismas reglas que el alta manual. Si el Autor o la Editorial no existen (ni con un nombre parecido), se crean y se registran en el lote para guardarlos antes que el Libro.
+     */
+    private Libro convertir(String linea, Map<String, Autor> autores, Map<String, Editorial> editoriales, Parecidos parecidos, Set<Long> isbns, Set<String> titulos, ClavesGuardadas guardadas, Lote lote) throws LibroException {
+
+        List<String> campos = separar(linea);
+        if (campos.size() < COLUMNAS) {
+            throw new LibroException("La fila tiene " + campos.size() + " columnas y se esperaban " + COLUMNAS);
+        }
+
+        Long isbn;
+        Integer anio;
+        Integer ejemplares;
+        Integer ejemplaresPrestados;
+        try {
+            isbn = Long.valueOf(campos.get(0).trim());
+            anio = Integer.valueOf(campos.get(2).trim());
+            ejemplares = Integer.valueOf(campos.get(3).trim());
+            ejemplaresPrestados = Integer.valueOf(campos.get(4).trim());
+        } catch (NumberFormatException e) {
+            throw new LibroException("Valor numérico inválido: " + e.getMessage());
+        }
+        String titulo = campos.get(1).trim();
+        String nombreAutor = campos.get(5).trim();
+        String nombreEditorial = campos.get(6).trim();
+
+        //VALIDACIONES
+        if (isbn < 0) {
+            throw new LibroException("El ISBN ingresado no es válido");
+        }
+        if (titulo.isEmpty()) {
+            throw new LibroException("Debe indicar el título del libro");
+        }
+        if (anio < 0) {
+            throw new LibroException("Debe ingresar un año válido.");
+        }
+        if (ejemplares < 0) {
+            throw new LibroException("No puede ingresar un valor negativo en ejemplares totales.");
+        }
+        if (ejemplaresPrestados < 0 || ejemplaresPrestados > ejemplares) {
+            throw new LibroException("Los ejemplares prestados deben estar entre 0 y el total de ejemplares.");
+        }
+        if (nombreAutor.isEmpty()) {
+            throw new LibroException("El autor no puede estar vacio.");
+        }
+        if (nombreEditorial.isEmpty()) {
+            throw new LibroException("La editorial no puede estar vacia.");
+        }
+        if (isbns.contains(isbn)) {
+            throw new LibroException("El ISBN ingresado ya existe.");
+        }
+        if (titulos.contains(clave(titulo))) {
+            throw new LibroException("El titulo ingresado ya existe.");
+        }
+        /* Contra la base solo se consulta si el filtro dice que el ISBN o el título pueden estar guardados (sin filtro, en
+        cada fila). La restricción única de la tabla sigue siendo la garantía final */
+        if (guardadas == null || guardadas.puedeContener(isbn, titulo)) {
+            Libro duplicado = libroDAO.buscarDuplicado(isbn, titulo);
+            if (duplicado != null && duplicado.getIsbn().equals(isbn)) {
+                throw new LibroException("El ISBN ingresado ya existe.");
+            }
+            if (duplicado != null) {
+                throw new LibroException("El titulo ingresado ya existe.");
+            }
+        }
+
+        /* RESOLUCIÓN DEL AUTOR Y LA EDITORIAL CONTRA LOS MAPAS EN MEMORIA. Un nombre que no está pero se parece a uno que sí
+        queda en el mapa como otro nombre del existente, y se anota en el lote para poder deshacerlo si el lote falla */
+        Autor autor = autores.get(clave(nombreAutor));
+        if (autor == null && unificarParecidos) {
+            String parecido = parecidos.autores.buscarParecido(nombreAutor);
+            autor = parecido == null ? null : autores.get(clave(parecido));
+            if (autor != null) {
+                autores.put(clave(nombreAutor), autor);
+                lote.aliasAutores.add(clave(nombreAutor));
+            }
+        }
+        if (autor == null) {
+            autor = new Autor(nombreAutor);
+            autores.put(clave(nombreAutor), autor);
+            parecidos.autores.agregar(clave(nombreAutor), nombreAutor);
+            lote.autores.add(autor);
+        }
+        Editorial editorial = editoriales.get(clave(nombreEditorial));
+        if (editorial == null && unificarParecidos) {
+            String parecido = parecidos.editoriales.buscarParecido(nombreEditorial);
+            editorial = parecido == null ? null : editoriales.get(clave(parecido));
+            if (editorial != null) {
+                editoriales.put(clave(nombreEditorial), editorial);
+                lote.aliasEditoriales.add(clave(nombreEditorial));
+            }
+        }
+        if (editorial == null) {
+            editorial = new Editorial(nombreEditorial);
+            editoriales.put(clave(nombreEditorial), editorial);
+            parecidos.editoriales.agregar(clave(nombreEditorial), nombreEditorial);
+            lote.editoriales.add(editorial);
+        }
+
+        //ARMADO DEL LIBRO
+        Libro libro = new Libro(isbn, titulo, anio, ejemplares, ejemplaresPrestados, ejemplares - ejemplaresPrestados, autor, editorial);
+        isbns.add(isbn);
+        titulos.add(clave(titulo));
+        return libro;
+    }
+
+    /**
+     * Guarda el lote completo (Autores y Editoriales nuevos primero, después los Libros) en una única transacción. Si falla, todas sus filas se rechazan y se deshacen los cambios hechos en los mapas y en los nombres para buscar parecidos.
+     */
+    private void guardar(Lote lote, Map<String, Autor> autores, Map<String, Editorial> editoriales, Parecidos parecidos, Set<Long> isbns, Set<String> titulos, ArchivoRechazos rechazos, ResultadoImportacion resultado) throws IOException {
+
+        if (lote.libros.isEmpty() && lote.autores.isEmpty() && lote.editoriales.isEmpty()) {
+            return;
+        }
+        try {
+            try {
+                guardarEnTransaccion(lote);
+            } catch (PersistenceException e) {
+                /* Otro proceso que importa en paralelo guardó alguno de los Autores o Editoriales nuevos del lote: se toman
+                los que ya están en la base y se reintenta el lote una vez */
+                if (!ErroresPersistencia.violaRestriccion(e, Autor.UK_NOMBRE, Editorial.UK_NOMBRE)) {
+                    throw e;
+                }
+                usarReferenciasGuardadas(lote, autores, editoriales);
+                guardarEnTransaccion(lote);
+            }
+            resultado.sumarAutoresCreados(lote.autores.size());
+            resultado.sumarEditorialesCreadas(lote.editoriales.size());
+            resultado.sumarNombresUnificados(lote.aliasAutores.size() + lote.aliasEditoriales.size());
+            resultado.sumarLibrosImportados(lote.libros.size());
+        } catch (RuntimeException e) {
+            for (Autor autor : lote.autores) {
+                autores.remove(clave(autor.getNombre()));
+                parecidos.autores.quitar(clave(autor.getNombre()));
+            }
+            for (Editorial editorial : lote.editoriales) {
+                editoriales.remove(clave(editorial.getNombre()));
+                parecidos.editoriales.quitar(clave(editorial.getNombre()));
+            }
+            autores.keySet().removeAll(lote.aliasAutores); // Se vuelven a resolver si aparecen en otro lote
+            editoriales.keySet().removeAll(lote.aliasEditoriales);
+            for (int i = 0; i < lote.libros.size(); i++) {
+                isbns.remove(lote.libros.get(i).getIsbn());
+                titulos.remove(clave(lote.libros.get(i).getTitulo()));
+                rechazos.escribir(lote.lineas.get(i), "Error guardando el lote: " + e.getMessage());
+                resultado.sumarFilaRechazada();
+            }
+        }
+        lote.vaciar();
+    }
+
+    /**
+     * Guarda Autores y Editoriales nuevos y después los Libros del lote, todo en una transacción
+     */
+    private void guardarEnTransaccion(Lote lote) {
+        UnidadDeTrabajo.enTransaccion(em -> {
+            autorDAO.guardarAutores(lote.autores, tamanioLote);
+            editorialDAO.guardarEditoriales(lote.editoriales, tamanioLote);
+            libroDAO.guardarLibros(lote.libros, tamanioLote);
+            return null;
+        });
+    }
+
+    /**
+     * Reemplaza los Autores y Editoriales nuevos del lote que, mientras tanto, otro proceso ya guardó con el mismo nombre: en los mapas en memoria (también en los nombres parecidos que apuntaban a ellos), en los Libros del lote y en las listas de altas pendientes
+     */
+    private void usarReferenciasGuardadas(Lote lote, Map<String, Autor> autores, Map<String, Editorial> editoriales) {
+        Map<Autor, Autor> autoresGuardados = new HashMap<>();
+        for (Iterator<Autor> it = lote.autores.iterator(); it.hasNext();) {
+            Autor nuevo = it.next();
+            Autor guardado = autorDAO.buscarAutorPorNombre(nuevo.getNombre());
+            if (guardado != null) {
+                autoresGuardados.put(nuevo, guardado);
+                autores.put(clave(nuevo.getNombre()), guardado);
+                it.remove();
+            }
+        }
+        Map<Editorial, Editorial> editorialesGuardadas = new HashMap<>();
+        for (Iterator<Editorial> it = lote.editoriales.iterator(); it.hasNext();) {
+            Editorial nueva = it.next();
+            Editorial guardada = editorialDAO.buscarEditorialPorNombre(nueva.getNombre());
+            if (guardada != null) {
+                editorialesGuardadas.put(nueva, guardada);
+                editoriales.put(clave(nueva.getNombre()), guardada);
+                it.remove();
+            }
+        }
+        for (String alias : lote.aliasAutores) {
+            autores.put(alias, autoresGuardados.getOrDefault(autores.get(alias), autores.get(alias)));
+        }
+        for (String alias : lote.aliasEditoriales) {
+            editoriales.put(alias, editorialesGuardadas.getOrDefault(editoriales.get(alias), editoriales.get(alias)));
+        }
+        for (Libro libro : lote.libros) {
+            libro.setAutor(autoresGuardados.getOrDefault(libro.getAutor(), libro.getAutor()));
+            libro.setEditorial(editorialesGuardadas.getOrDefault(libro.getEditorial(), libro.getEditorial()));
+        }
+    }
+
+    /**
+     * Separa una línea del CSV en sus campos, respetando los campos entre comillas dobles (y las comillas escapadas como "")
+     */
+    private List<String> separar(String linea) {
+        List<String> campos = new ArrayList<>(COLUMNAS);
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    /**
+     * Clave con la que se comparan nombres y títulos en memoria: la misma normalización que guardan las columnas de clave de la base
+     */
+    private static String clave(String texto) {
+        return Normalizador.normalizar(texto);
+    }
+
+    /**
+     * ISBN y títulos de los Libros que ya estaban guardados al empezar la importación, en dos filtros de Bloom: si el filtro dice que una clave no está, la fila no es un duplicado y no hace falta consultar la base. Ocupan unos 10 bits por Libro, en lugar de la tabla completa en memoria
+     */
+    private static class ClavesGuardadas {
+
+        private final FiltroBloom isbns;
+        private final FiltroBloom titulos;
+
+        private ClavesGuardadas(long cantidad, double probabilidadFalsos) {
+            this.isbns = new FiltroBloom(cantidad, probabilidadFalsos);
+            this.titulos = new FiltroBloom(cantidad, probabilidadFalsos);
+        }
+
+        /**
+         * Arma los filtros recorriendo los ISBN y títulos de la base. Los títulos se cargan normalizados (sin acentos ni espacios repetidos), una comparación más amplia que la de MySQL: así lo que la base considera igual nunca queda afuera del filtro
+         */
+        private static ClavesGuardadas cargar(LibroDAO libroDAO, double probabilidadFalsos) {
+            ClavesGuardadas guardadas = new ClavesGuardadas(libroDAO.contarLibros(), probabilidadFalsos);
+            libroDAO.recorrerIsbnsYTitulos((isbn, titulo) -> {
+                guardadas.isbns.agregar(isbn);
+                guardadas.titulos.agregar(Normalizador.normalizar(titulo));
+            });
+            return guardadas;
+        }
+
+        private boolean puedeContener(Long isbn, String titulo) {
+            return isbns.puedeContener(isbn) || titulos.puedeContener(Normalizador.normalizar(titulo));
+        }
+    }
+
+    /**
+     * Nombres de los Autores y Editoriales conocidos durante la importación (los de la base más los creados), para resolver los nombres con errores de tipeo. Se indexan por su clave normalizada
+     */
+    private static class Parecidos {
+
+        private final BuscadorSimilares autores = new BuscadorSimilares();
+        private final BuscadorSimilares editoriales = new BuscadorSimilares();
+    }
+
+    /**
+     * Filas pendientes de guardar en el próximo commit
+     */
+    private static class Lote {
+
+        private final List<Libro> libros = new ArrayList<>();
+        private final List<String> lineas = new ArrayList<>();
+        private final List<Autor> autores = new ArrayList<>();
+        private final List<Editorial> editoriales = new ArrayList<>();
+        private final List<String> aliasAutores = new ArrayList<>(); // Nombres parecidos resueltos a un Autor ya conocido
+        private final List<String> aliasEditoriales = new ArrayList<>();
+
+        private void agregar(Libro libro, String linea) {
+            libros.add(libro);
+            lineas.add(linea);
+        }
+
+        private void vaciar() {
+            libros.clear();
+            lineas.clear();
+            autores.clear();
+            editoriales.clear();
+            aliasAutores.clear();
+            aliasEditoriales.clear();
+        }
+    }
+
+    /**
+     * Archivo de filas rechazadas. Se crea recién con el primer rechazo
+     */
+    private class ArchivoRechazos implements Closeable {
+
+        private final Path ruta;
+        private BufferedWriter escritor;
+
+        private ArchivoRechazos(Path ruta) {
+            this.ruta = ruta;
+        }
+
+        private void escribir(String linea, String motivo) throws IOException {
+            if (escritor == null) {
+                escritor = Files.newBufferedWriter(ruta, StandardCharsets.UTF_8);
+            }
+            escritor.write(linea + separador + "\"" + String.valueOf(motivo).replace("\"", "\"\"") + "\"");
+            escritor.newLine();
+        }
+
+        /**
+         * @return La ruta del archivo, o null si no hubo rechazos
+         */
+        private Path getRuta() {
+            return escritor == null ? null : ruta;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (escritor != null) {
+                escritor.close();
+            }
+        }
+    }
+
+}
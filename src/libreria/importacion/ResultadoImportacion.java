@@ -0,0 +1,120 @@
+package libreria.importacion;
+
+import java.nio.file.Path;
+
+/**
+ * Resumen de una importación de catálogo: filas leídas, importadas y rechazadas, entidades de referencia creadas o unificadas con una parecida y velocidad alcanzada.
+ *
+ * @author Matias Luca Soto
+ */
+public class ResultadoImportacion {
+
+    //ATRIBUTOS
+    private long filasLeidas;
+    private long librosImportados;
+    private long filasRechazadas;
+    private long autoresCreados;
+    private long editorialesCreadas;
+    private long nombresUnificados;
+    private long milisegundos;
+    private Path archivoRechazos;
+
+    //CONSTRUCTOR
+    /**
+     * Constructor vacio
+     */
+    public ResultadoImportacion() {
+    }
+
+    //MÉTODOS
+    void sumarFilaLeida() {
+        filasLeidas++;
+    }
+
+    void sumarLibrosImportados(long cantidad) {
+        librosImportados += cantidad;
+    }
+
+    void sumarFilaRechazada() {
+        filasRechazadas++;
+    }
+
+    void sumarAutoresCreados(long cantidad) {
+        autoresCreados += cantidad;
+    }
+
+    void sumarEditorialesCreadas(long cantidad) {
+        editorialesCreadas += cantidad;
+    }
+
+    void sumarNombresUnificados(long cantidad) {
+        nombresUnificados += cantidad;
+    }
+
+    void setMilisegundos(long milisegundos) {
+        this.milisegundos = milisegundos;
+    }
+
+    void setArchivoRechazos(Path archivoRechazos) {
+        this.archivoRechazos = archivoRechazos;
+    }
+
+    /**
+     * @return Filas procesadas por segundo desde el inicio de la importación
+     */
+    public double getFilasPorSegundo() {
+        return milisegundos == 0 ? filasLeidas : filasLeidas * 1000.0 / milisegundos;
+    }
+
+    //GETTERS
+    public long getFilasLeidas() {
+        return filasLeidas;
+    }
+
+    public long getLibrosImportados() {
+        return librosImportados;
+    }
+
+    public long getFilasRechazadas() {
+        return filasRechazadas;
+    }
+
+    public long getAutoresCreados() {
+        return autoresCreados;
+    }
+
+    public long getEditorialesCreadas() {
+        return editorialesCreadas;
+    }
+
+    /**
+     * @return Nombres de Autores y Editoriales que no estaban pero se resolvieron a uno parecido ya existente
+     */
+    public long getNombresUnificados() {
+        return nombresUnificados;
+    }
+
+    public long getMilisegundos() {
+        return milisegundos;
+    }
+
+    /**
+     * @return Archivo donde se escribieron las filas rechazadas, o null si no hubo rechazos
+     */
+    public Path getArchivoRechazos() {
+        return archivoRechazos;
+    }
+
+    //toString
+    @Override
+    public String toString() {
+        String output = "Filas leídas: " + filasLeidas + " / Libros importados: " + librosImportados + " / Rechazadas: " + filasRechazadas
+                + " / Autores nuevos: " + autoresCreados + " / Editoriales nuevas: " + editorialesCreadas + " / Nombres unificados: " + nombresUnificados
+                + " / Tiempo: " + milisegundos + " ms (" + String.format("%.0f", getFilasPorSegundo()) + " filas/s)";
+        if (archivoRechazos != null) {
+            output = output.concat(" / Rechazos en: " + archivoRechazos);
+        }
+        return output;
+    }
+
+}
@@ -1,6 +1,11 @@
 package libreria.menu;
 
 import java.util.Scanner;
+import libreria.persistencia.ConexionPersistencia;
+import libreria.persistencia.UnidadDeTrabajo;
+import libreria.servicios.AutorService;
+import libreria.servicios.EditorialService;
+import libreria.utilidades.Configuracion;
 
 /**
  *
@@ -13,13 +18,29 @@ public class Menu {
     private final MenuLibro menuLibro;
     private final MenuAutor menuAutor;
     private final MenuEditorial menuEditorial;
+    private final boolean modoSesion; // Si es true, cada submenú trabaja con un único EntityManager
 
     //CONSTRUCTOR
     public Menu() {
         this.sc = new Scanner(System.in).useDelimiter("\n");
-        this.menuLibro = new MenuLibro();
-        this.menuAutor = new MenuAutor();
-        this.menuEditorial = new MenuEditorial();
+
+        //Services compartidos por todos los submenús
+        AutorService autorService = new AutorService();
+        EditorialService editorialService = new EditorialService();
+
+        this.menuLibro = new MenuLibro(autorService, editorialService);
+        this.menuAutor = new MenuAutor(autorService);
+        this.menuEditorial = new MenuEditorial(editorialService);
+
+        //Modo sesión opcional: libreria.menu.sesion=true
+        this.modoSesion = Configuracion.getBoolean("libreria.menu.sesion", false);
+
+        //Las sugerencias de nombres se arman en segundo plano (libreria.sugerencias.precarga=false las arma recién en el primer uso)
+        if (Configuracion.getBoolean("libreria.sugerencias.precarga", true)) {
+            Thread precarga = new Thread(menuLibro::cargarSugerencias, "Precarga de sugerencias");
+            precarga.setDaemon(true);
+            precarga.start();
+        }
     }
 
     //MÉTODOS
@@ -35,6 +56,9 @@ public class Menu {
             ejecucion = menuPrincipal();
         } while (ejecucion != 4); //Condición de salida
 
+        //Cierre de la fábrica compartida de EntityManagers
+        ConexionPersistencia.cerrar();
+
     }
 
     /**
@@ -54,18 +78,27 @@ public class Menu {
 
         //CONDICIONAL MÚLTIPLE PARA MOSTRAR EL SUBMENÚ CORRESPONDIENTE
         int opc = elegirOpcion(4);
-        switch (opc) {
-            case 1:
-                menuLibro();
-                break;
-            case 2:
-                menuAutor();
-                break;
-            case 3:
-                menuEditorial();
-                break;
-            case 4:
-                System.out.println("\n¡Adios!");
+
+        //EN MODO SESIÓN, TODO EL SUBMENÚ COMPARTE UN MISMO ENTITYMANAGER QUE SE CIERRA AL VOLVER
+        if (modoSesion && opc != 4) {
+            UnidadDeTrabajo.abrirSesion();
+        }
+        try {
+            switch (opc) {
+                case 1:
+                    menuLibro();
+                    break;
+                case 2:
+                    menuAutor();
+                    break;
+                case 3:
+                    menuEditorial();
+                    break;
+                case 4:
+                    System.out.println("\n¡Adios!");
+            }
+        } finally {
+            UnidadDeTrabajo.cerrarSesion();
         }
         //SELECCIÓN DEL USUARIO PARA AVISAR CUANDO TERMINE
         return opc;
@@ -82,14 +115,19 @@ public class Menu {
                 + "\n2. Modificar un libro existente"
                 + "\n3. Eliminar un libro"
                 + "\n4. Buscar libro por ISBN"
-                + "\n5. Buscar libro por título"
+                + "\n5. Buscar libros por título"
                 + "\n6. Buscar libro/s por autor"
                 + "\n7. Buscar libro/s por editorial"
-                + "\n8. Listar todos los libros"
-                + "\n9. Salir");
+                + "\n8. Buscar libros por varios criterios"
+                + "\n9. Listar todos los libros"
+                + "\n10. Prestar ejemplares"
+                + "\n11. Devolver ejemplares"
+                + "\n12. Dar de baja o reactivar libros en bloque"
+                + "\n13. Importar catálogo desde CSV"
+                + "\n14. Salir");
 
         //CONDICIONAL MÚLTIPLE PARA EJECUTAR EL MÉTODO CORRESPONDIENTE
-        switch (elegirOpcion(9)) {
+        switch (elegirOpcion(14)) {
             case 1:
                 menuLibro.ingresarLibro(); //OK
                 break;
@@ -112,9 +150,24 @@ public class Menu {
                 menuLibro.buscarLibrosPorEditorial(); //OK
                 break;
             case 8:
-                menuLibro.imprimirLibros(); //OK 
+                menuLibro.buscarLibrosPorCriterios();
                 break;
             case 9:
+                menuLibro.imprimirLibros(); //OK 
+                break;
+            case 10:
+                menuLibro.prestarLibro();
+                break;
+            case 11:
+                menuLibro.devolverLibro();
+                break;
+            case 12:
+                menuLibro.cambiarAltaEnBloque();
+                break;
+            case 13:
+                menuLibro.importarCatalogo();
+                break;
+            case 14:
                 System.out.println("Volviendo al menú anterior...");
         }
     }
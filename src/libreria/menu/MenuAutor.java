@@ -5,6 +5,7 @@ import java.util.Scanner;
 import libreria.entidades.Autor;
 import libreria.exceptions.AutorException;
 import libreria.servicios.AutorService;
+import libreria.utilidades.Normalizador;
 
 /**
  *
@@ -16,10 +17,19 @@ public class MenuAutor {
     private final Scanner sc;
     private final AutorService autorService;
 
-    //CONSTRUCTOR
+    //CONSTRUCTORES
     public MenuAutor() {
+        this(new AutorService());
+    }
+
+    /**
+     * Constructor que recibe el AutorService compartido con el resto de los menús
+     *
+     * @param autorService AutorService compartido
+     */
+    public MenuAutor(AutorService autorService) {
         this.sc = new Scanner(System.in).useDelimiter("\n");
-        this.autorService = new AutorService();
+        this.autorService = autorService;
     }
 
     //MÉTODOS
@@ -34,8 +44,22 @@ public class MenuAutor {
             System.out.println("Ingrese el nombre del nuevo Autor:");
             String nombre = sc.next();
 
+            //SI YA HAY UN AUTOR CON UN NOMBRE PARECIDO, PUEDE SER UN ERROR DE TIPEO: SE PIDE CONFIRMACIÓN (SI ES EL MISMO NOMBRE, EL SERVICE LO RECHAZA)
+            String parecido = autorService.buscarNombreParecido(nombre);
+            if (parecido != null && !Normalizador.normalizar(parecido).equals(Normalizador.normalizar(nombre))) {
+                System.out.println("Ya existe un autor con un nombre parecido: \"" + parecido + "\"."
+                        + "\n1. Crear igual / 2. Cancelar");
+                int opc;
+                do {
+                    opc = sc.nextInt();
+                } while (opc < 1 || opc > 2);
+                if (opc == 2) {
+                    return;
+                }
+            }
+
             //LLAMADA AL MÉTODO SERVICE
-            autorService.crearAutor(nombre);
+            autorService.crearAutor(nombre, true);
 
             System.out.println("¡Autor ingresado con éxito!");
 
@@ -154,9 +178,9 @@ public class MenuAutor {
         try {
 
             //INPUT DEL NOMBRE DEL AUTOR
-            System.out.print("Ingrese el nombre del autor a buscar:"
+            System.out.print("Ingrese el nombre del autor a buscar" + Sugerencias.AYUDA + ":"
                     + "\nNOMBRE: ");
-            String nombre = sc.next();
+            String nombre = Sugerencias.completar(sc, sc.next(), autorService::sugerirNombres);
 
             //SE BUSCA EL AUTOR EN LA BASE DE DATOS
             Autor autor = autorService.buscarAutorPorNombre(nombre);
@@ -5,6 +5,7 @@ import java.util.Scanner;
 import libreria.entidades.Editorial;
 import libreria.exceptions.EditorialException;
 import libreria.servicios.EditorialService;
+import libreria.utilidades.Normalizador;
 
 /**
  *
@@ -16,10 +17,19 @@ public class MenuEditorial {
     private final Scanner sc;
     private final EditorialService editorialService;
 
-    //CONSTRUCTOR
+    //CONSTRUCTORES
     public MenuEditorial() {
+        this(new EditorialService());
+    }
+
+    /**
+     * Constructor que recibe el EditorialService compartido con el resto de los menús
+     *
+     * @param editorialService EditorialService compartido
+     */
+    public MenuEditorial(EditorialService editorialService) {
         this.sc = new Scanner(System.in).useDelimiter("\n");
-        this.editorialService = new EditorialService();
+        this.editorialService = editorialService;
     }
 
     /**
@@ -33,8 +43,22 @@ public class MenuEditorial {
             System.out.println("Ingrese el nombre de la nueva Editorial:");
             String nombre = sc.next();
 
+            //SI YA HAY UNA EDITORIAL CON UN NOMBRE PARECIDO, PUEDE SER UN ERROR DE TIPEO: SE PIDE CONFIRMACIÓN (SI ES EL MISMO NOMBRE, EL SERVICE LO RECHAZA)
+            String parecido = editorialService.buscarNombreParecido(nombre);
+            if (parecido != null && !Normalizador.normalizar(parecido).equals(Normalizador.normalizar(nombre))) {
+                System.out.println("Ya existe una editorial con un nombre parecido: \"" + parecido + "\"."
+                        + "\n1. Crear igual / 2. Cancelar");
+                int opc;
+                do {
+                    opc = sc.nextInt();
+                } while (opc < 1 || opc > 2);
+                if (opc == 2) {
+                    return;
+                }
+            }
+
             //MÉTODO SERVICE
-            editorialService.crearEditorial(nombre);
+            editorialService.crearEditorial(nombre, true);
 
             //OUTPUT DE CONFIRMACIÓN
             System.out.println("¡Editorial ingresada con éxito!");
@@ -154,9 +178,9 @@ public class MenuEditorial {
         try {
 
             //INPUT DEL NOMBRE A BUSCAR
-            System.out.print("Ingrese el nombre de la editorial a buscar:"
+            System.out.print("Ingrese el nombre de la editorial a buscar" + Sugerencias.AYUDA + ":"
                     + "\nNOMBRE: ");
-            String nombre = sc.next();
+            String nombre = Sugerencias.completar(sc, sc.next(), editorialService::sugerirNombres);
 
             //BÚSQUEDA EN LA BASE DE DATOS
             Editorial editorial = editorialService.buscarEditorialPorNombre(nombre);
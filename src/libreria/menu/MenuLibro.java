@@ -1,14 +1,27 @@
 package libreria.menu;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Scanner;
+import java.util.function.Function;
+import libreria.dto.LibroResumenDTO;
+import libreria.dto.ReferenciaDTO;
 import libreria.entidades.Libro;
 import libreria.exceptions.AutorException;
 import libreria.exceptions.EditorialException;
 import libreria.exceptions.LibroException;
+import libreria.importacion.ImportadorCatalogo;
+import libreria.importacion.ResultadoImportacion;
+import libreria.persistencia.FiltroLibros;
+import libreria.persistencia.Pagina;
 import libreria.servicios.AutorService;
 import libreria.servicios.EditorialService;
 import libreria.servicios.LibroService;
+import libreria.utilidades.Configuracion;
+import libreria.utilidades.Normalizador;
 
 /**
  *
@@ -17,17 +30,30 @@ import libreria.servicios.LibroService;
 public class MenuLibro {
 
     //ATRIBUTOS
+    private static final int TAMANIO_PAGINA = Pagina.limitar(Configuracion.getInt("libreria.pagina.tamanio", 20)); // Elementos por página en los listados
     private final Scanner sc;
     private final LibroService libroService;
     private final AutorService autorService;
     private final EditorialService editorialService;
+    private final ImportadorCatalogo importador;
 
-    //CONSTRUCTOR
+    //CONSTRUCTORES
     public MenuLibro() {
+        this(new AutorService(), new EditorialService());
+    }
+
+    /**
+     * Constructor que recibe los Services de Autor y Editorial compartidos con el resto de los menús
+     *
+     * @param autorService Service de Autor compartido
+     * @param editorialService Service de Editorial compartido
+     */
+    public MenuLibro(AutorService autorService, EditorialService editorialService) {
         this.sc = new Scanner(System.in).useDelimiter("\n");
-        this.libroService = new LibroService();
-        this.autorService = new AutorService();
-        this.editorialService = new EditorialService();
+        this.autorService = autorService;
+        this.editorialService = editorialService;
+        this.libroService = new LibroService(autorService, editorialService);
+        this.importador = new ImportadorCatalogo();
     }
 
     //MÉTODOS
@@ -55,7 +81,7 @@ public class MenuLibro {
             /* Si no hay autores, se pide que se ingrese el primero,
             sino se imprime una lista para seleccionar de los ya existentes o ingresar uno nuevo*/
             String nombreAutor;
-            if (autorService.listarAutores().isEmpty()) {
+            if (autorService.listarReferenciasAutoresDesde(null, 1).isEmpty()) {
                 System.out.println("Ingrese el nombre del autor:");
                 nombreAutor = sc.next();
             } else {
@@ -65,7 +91,7 @@ public class MenuLibro {
             //INGRESAR EDITORIAL
             //Same logic as Autor applies here
             String nombreEditorial;
-            if (editorialService.listarEditoriales().isEmpty()) {
+            if (editorialService.listarReferenciasEditorialesDesde(null, 1).isEmpty()) {
                 System.out.println("Ingrese la editorial:");
                 nombreEditorial = sc.next();
             } else {
@@ -96,30 +122,20 @@ public class MenuLibro {
 
         try {
 
-            //LISTADO DE LOS LIBROS EXISTENTES
-            List<Libro> libros = libroService.listarLibros();
-
             //SI NO HAY LIBROS, SE MUESTRA UN MENSAJE. SI HAY LIBROS, SE INICIA EL MÉTODO
-            if (libros.isEmpty()) {
+            if (libroService.listarResumenesLibrosDesde(null, 1).isEmpty()) {
                 System.out.println("No hay libros guardados para modificar."
                         + "\n¡Empieza agregando uno!");
             } else {
 
-                //Output de todos los libros guardados
-                int counter = 1;
+                //Selección del Libro a modificar, de a una página por vez
                 System.out.println("LIBROS GUARDADOS:");
-                for (Libro libro : libros) {
-                    System.out.println(counter + ". " + libro.toString());
-                    counter++;
-                }
+                LibroResumenDTO seleccionado = seleccionarPaginado(
+                        ultimo -> libroService.listarResumenesLibrosDesde(ultimo == null ? null : ultimo.getIsbn(), TAMANIO_PAGINA),
+                        LibroResumenDTO::toString, null);
 
-                //Input del Libro a modificar
-                int opc;
-                do {
-                    System.out.println("Ingrese el número del Libro que desea modificar:");
-                    opc = sc.nextInt();
-                } while (opc < 1 || opc > libros.size());
-                Libro libro = libros.get(opc - 1);
+                //Solo se trae la entidad completa del Libro elegido
+                Libro libro = libroService.buscarLibroPorIsbn(seleccionado.getIsbn());
 
                 //Input de los nuevos atributos para ese Libro
                 System.out.println("A continuación, ingrese los nuevos valores para el libro elegido");
@@ -166,33 +182,26 @@ public class MenuLibro {
     }
 
     /**
-     * Método para seleccionar un Libro entre todos los de la BS y eliminarlo
+     * Método para seleccionar un Libro entre todos los de la BS (mostrados de a una página por vez) y eliminarlo
      */
     protected void eliminarLibroIsbn() {
 
         try {
 
-            //LISTADO DE TODOS LOS LIBROS
-            List<Libro> libros = libroService.listarLibros();
-
             //SI NO HAY LIBROS, SE MUESTRA UN MENSAJE. SINO, SE INICIA EL MÉTODO
-            if (libros.isEmpty()) {
+            if (libroService.listarResumenesLibrosDesde(null, 1).isEmpty()) {
                 System.out.println("No hay libros guardados para eliminar."
                         + "\n¡Empieza agregando uno!");
             } else {
 
-                //OUTPUT DE TODOS LOS LIBROS CON SU ISBN Y NOMBRE
+                //OUTPUT DE LOS LIBROS CON SU ISBN Y NOMBRE E INPUT DEL LIBRO A ELIMINAR
                 System.out.println("LISTADO DE LIBROS:");
-                for (Libro libro : libros) {
-                    System.out.println("ISBN: " + libro.getIsbn() + " / '" + libro.getTitulo() + "'");
-                }
-                
-                //INPUT DEL LIBRO A ELIMINAR SEGUN ISBN
-                System.out.println("\nIngrese el código ISBN del libro a eliminar:");
-                Long opc = sc.nextLong();
+                LibroResumenDTO libro = seleccionarPaginado(
+                        ultimo -> libroService.listarResumenesLibrosDesde(ultimo == null ? null : ultimo.getIsbn(), TAMANIO_PAGINA),
+                        l -> "ISBN: " + l.getIsbn() + " / '" + l.getTitulo() + "'", null);
 
                 //METODO SERVICE PARA ELIMINAR EL LIBRO
-                libroService.eliminarLibroIsbn(opc);
+                libroService.eliminarLibroIsbn(libro.getIsbn());
 
                 //OUTPUT DE CONFIRMACIÓN
                 System.out.println("\n¡Libro eliminado con éxito!");
@@ -242,25 +251,43 @@ public class MenuLibro {
     }
 
     /**
-     * Busca un Libro según el título ingresado por el usuario y muestra sus atributos en caso de encontrarlo.
+     * Busca los Libros cuyo título contiene el texto ingresado por el usuario (el comienzo o cualquier parte del título) y los muestra por páginas, los más parecidos primero.
      */
     protected void buscarLibroPorTitulo() {
 
         try {
 
-            //INPUT DEL TITULO DEL LIBRO A BUSCAR
-            System.out.print("Ingrese el título del libro a buscar:"
+            //INPUT DEL TEXTO A BUSCAR
+            System.out.print("Ingrese el título o parte del título del libro a buscar" + Sugerencias.AYUDA + ":"
                     + "\nTITULO: ");
-            String titulo = sc.next();
+            String titulo = Sugerencias.completar(sc, sc.next(), libroService::sugerirTitulos);
 
-            //LLAMADO AL SERIVCE PARA QUE BUSQUE EL LIBRO
-            Libro libro = libroService.buscarLibroPorTitulo(titulo);
+            //LLAMADO AL SERIVCE PARA QUE BUSQUE LA PRIMERA PÁGINA DE LIBROS
+            Pagina<Libro> pagina = libroService.buscarLibrosPorTitulo(titulo, 0, TAMANIO_PAGINA);
 
-            //OUTPUT DEL RESULTADO FINAL
-            System.out.println("\nDATOS DEL LIBRO ENCONTRADO:"
-                    + "\n" + libro.toString());
+            //OUTPUT DE CADA PÁGINA. MIENTRAS HAYA MÁS Y EL USUARIO QUIERA, SE BUSCA LA SIGUIENTE
+            int counter = 1;
+            System.out.println("\nLIBRO/S ENCONTRADO/S:");
+            while (true) {
+                for (Libro libro : pagina.getElementos()) {
+                    System.out.println(counter + ". " + libro.toString());
+                    counter++;
+                }
+                if (!pagina.isHayMas()) {
+                    break;
+                }
+                System.out.println("1. Ver más / 2. Salir");
+                int opc;
+                do {
+                    opc = sc.nextInt();
+                } while (opc < 1 || opc > 2);
+                if (opc == 2) {
+                    break;
+                }
+                pagina = libroService.buscarLibrosPorTitulo(titulo, pagina.getNumero() + 1, TAMANIO_PAGINA);
+            }
 
-            //USO DEL LibroException PARA VERIFICAR EN EL SERVICE SI ESTA NULO Y MOSTRAR EN ESTA CAPA EL MENSAJE
+            //USO DEL LibroException PARA VERIFICAR EN EL SERVICE SI NO HAY RESULTADOS Y MOSTRAR EN ESTA CAPA EL MENSAJE
         } catch (LibroException e) {
             System.out.println("Ups! Algo salio mal..."
                     + "\n" + e.getMessage());
@@ -280,9 +307,9 @@ public class MenuLibro {
         try {
 
             //INPUT DEL NOMBRE DEL AUTOR
-            System.out.print("Ingrese el nombre del Autor a buscar:"
+            System.out.print("Ingrese el nombre del Autor a buscar" + Sugerencias.AYUDA + ":"
                     + "\nAUTOR: ");
-            String nombre = sc.next();
+            String nombre = Sugerencias.completar(sc, sc.next(), autorService::sugerirNombres);
 
             //LLAMADA AL SERVICE QUE TRAERÁ 1 O MÁS LIBROS
             List<Libro> libros = libroService.buscarLibrosPorAutor(nombre);
@@ -314,9 +341,9 @@ public class MenuLibro {
         try {
 
             //INPUT DE LA EDITORIAL 
-            System.out.print("Ingrese el nombre de la Editorial a buscar:"
+            System.out.print("Ingrese el nombre de la Editorial a buscar" + Sugerencias.AYUDA + ":"
                     + "\nEDITORIAL: ");
-            String nombre = sc.next();
+            String nombre = Sugerencias.completar(sc, sc.next(), editorialService::sugerirNombres);
 
             //LLAMADO A LA EDITORIAL PARA GUARDAR TODOS LOS LIBROS QUE CUMPLAN LA CONDICIÓN
             List<Libro> libros = libroService.buscarLibrosPorEditorial(nombre);
@@ -341,14 +368,98 @@ public class MenuLibro {
     }
 
     /**
-     * Muestra por consola todos los Libros dentro de la BD. Si no hay elementos, se avisa con un mensaje
+     * Pide los criterios de búsqueda (autor, editorial, rango de años, disponibilidad y alta, todos opcionales) y el orden, y muestra los Libros que los cumplen de a una página por vez junto con el total encontrado.
+     */
+    protected void buscarLibrosPorCriterios() {
+
+        try {
+
+            //INPUT DE LOS CRITERIOS. UN TEXTO VACÍO NO FILTRA
+            FiltroLibros filtro = new FiltroLibros();
+            System.out.println("Complete los criterios de búsqueda (deje vacío para no filtrar por ese dato)");
+            System.out.print("AUTOR: ");
+            filtro.setNombreAutor(leerOpcional());
+            System.out.print("EDITORIAL: ");
+            filtro.setNombreEditorial(leerOpcional());
+            System.out.print("DESDE EL AÑO: ");
+            filtro.setAnioDesde(leerAnioOpcional());
+            System.out.print("HASTA EL AÑO: ");
+            filtro.setAnioHasta(leerAnioOpcional());
+            System.out.println("Disponibilidad:"
+                    + "\n1. Todos"
+                    + "\n2. Solo con ejemplares disponibles"
+                    + "\n3. Solo sin ejemplares disponibles");
+            int disponibilidad = elegir(3);
+            filtro.setDisponible(disponibilidad == 1 ? null : disponibilidad == 2);
+            System.out.println("Estado:"
+                    + "\n1. Dados de alta"
+                    + "\n2. Dados de baja"
+                    + "\n3. Todos");
+            int estado = elegir(3);
+            filtro.setAlta(estado == 3 ? null : estado == 1);
+            System.out.println("Ordenar por:"
+                    + "\n1. ISBN"
+                    + "\n2. Título"
+                    + "\n3. Año"
+                    + "\n4. Ejemplares restantes");
+            filtro.setOrden(FiltroLibros.Orden.values()[elegir(4) - 1]);
+            System.out.println("1. Ascendente / 2. Descendente");
+            filtro.setDescendente(elegir(2) == 2);
+
+            //LLAMADO AL SERVICE PARA QUE BUSQUE LA PRIMERA PÁGINA
+            Pagina<Libro> pagina = libroService.buscarLibros(filtro, 0, TAMANIO_PAGINA);
+
+            //OUTPUT DE CADA PÁGINA. MIENTRAS HAYA MÁS Y EL USUARIO QUIERA, SE BUSCA LA SIGUIENTE
+            int counter = 1;
+            System.out.println("\nLIBRO/S ENCONTRADO/S: " + pagina.getTotal());
+            while (true) {
+                for (Libro libro : pagina.getElementos()) {
+                    System.out.println(counter + ". " + libro.toString());
+                    counter++;
+                }
+                if (!pagina.isHayMas()) {
+                    break;
+                }
+                System.out.println("1. Ver más / 2. Salir");
+                if (elegir(2) == 2) {
+                    break;
+                }
+                pagina = libroService.buscarLibros(filtro, pagina.getNumero() + 1, TAMANIO_PAGINA);
+            }
+
+        } catch (LibroException e) {
+            System.out.println("Ups! Algo salio mal..."
+                    + "\n" + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Error desconocido buscando Libros por criterios");
+            e.printStackTrace();
+            System.out.println("Información del mensaje: " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Muestra por consola los Libros de la BD de a una página por vez, preguntando si se quiere ver la siguiente. Si no hay elementos, se avisa con un mensaje
      */
     protected void imprimirLibros() {
 
         try {
 
-            //MÉTODO SERVICE QUE DEVUELVE UNA LISTA CON TODOS LOS LIBROS
-            libroService.imprimirLibros();
+            //MÉTODO SERVICE QUE MUESTRA UNA PÁGINA DE LIBROS
+            Pagina<LibroResumenDTO> pagina = libroService.imprimirLibros(null, TAMANIO_PAGINA);
+
+            //MIENTRAS HAYA MÁS LIBROS Y EL USUARIO QUIERA, SE MUESTRA LA PÁGINA SIGUIENTE
+            while (pagina.isHayMas()) {
+                System.out.println("1. Ver más / 2. Salir");
+                int opc;
+                do {
+                    opc = sc.nextInt();
+                } while (opc < 1 || opc > 2);
+                if (opc == 2) {
+                    break;
+                }
+                pagina = libroService.imprimirLibros(pagina.getUltimo().getIsbn(), TAMANIO_PAGINA);
+            }
 
         } catch (Exception e) {
             System.out.println("Error desconocido listando todos los Libros");
@@ -359,39 +470,199 @@ public class MenuLibro {
     }
 
     /**
-     * Método para seleccionar un Autor ya existente en la BD o ingresar uno nuevo y devuelver su nombre. Se imprime por consola un listado con todos los Autores existentes y una opción extra para ingresar uno nuevo. Dependiendo lo que ingrese el usuario, el nombre del Autor seleccionado será devuelto por el método.
+     * Pide el ISBN de un Libro y la cantidad de ejemplares a prestar, y registra el préstamo
+     */
+    protected void prestarLibro() {
+
+        try {
+
+            //INPUT DEL ISBN Y LA CANTIDAD
+            System.out.print("Ingrese el código ISBN del libro a prestar:"
+                    + "\nISBN: ");
+            Long isbn = sc.nextLong();
+            System.out.print("Ingrese la cantidad de ejemplares a prestar:"
+                    + "\nCANTIDAD: ");
+            Integer cantidad = sc.nextInt();
+
+            //LLAMADA AL SERVICE
+            libroService.prestarLibro(isbn, cantidad);
+
+            //OUTPUT DE CONFIRMACIÓN
+            System.out.println("\n¡Préstamo registrado con éxito!");
+
+        } catch (LibroException e) {
+            System.out.println("Ups! Algo salio mal..."
+                    + "\n" + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Error desconocido prestando el Libro");
+            e.printStackTrace();
+            System.out.println("Información del mensaje: " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Pide el ISBN de un Libro y la cantidad de ejemplares devueltos, y registra la devolución
+     */
+    protected void devolverLibro() {
+
+        try {
+
+            //INPUT DEL ISBN Y LA CANTIDAD
+            System.out.print("Ingrese el código ISBN del libro a devolver:"
+                    + "\nISBN: ");
+            Long isbn = sc.nextLong();
+            System.out.print("Ingrese la cantidad de ejemplares devueltos:"
+                    + "\nCANTIDAD: ");
+            Integer cantidad = sc.nextInt();
+
+            //LLAMADA AL SERVICE
+            libroService.devolverLibro(isbn, cantidad);
+
+            //OUTPUT DE CONFIRMACIÓN
+            System.out.println("\n¡Devolución registrada con éxito!");
+
+        } catch (LibroException e) {
+            System.out.println("Ups! Algo salio mal..."
+                    + "\n" + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Error desconocido devolviendo el Libro");
+            e.printStackTrace();
+            System.out.println("Información del mensaje: " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Da de baja o reactiva, en una sola operación, todos los Libros de un autor, de una editorial o de un rango de años
+     */
+    protected void cambiarAltaEnBloque() {
+
+        try {
+
+            //INPUT DE LA ACCIÓN Y EL CRITERIO
+            System.out.println("¿Qué desea hacer?"
+                    + "\n1. Dar de baja"
+                    + "\n2. Reactivar");
+            boolean alta = elegir(2) == 2;
+            System.out.println("¿Sobre qué libros?"
+                    + "\n1. Todos los de un autor"
+                    + "\n2. Todos los de una editorial"
+                    + "\n3. Todos los de un rango de años");
+            int criterio = elegir(3);
+
+            //LLAMADA AL SERVICE SEGÚN EL CRITERIO ELEGIDO
+            int cantidad;
+            switch (criterio) {
+                case 1:
+                    System.out.print("Ingrese el nombre del autor:"
+                            + "\nAUTOR: ");
+                    cantidad = libroService.cambiarAltaLibrosPorAutor(sc.next(), alta);
+                    break;
+                case 2:
+                    System.out.print("Ingrese el nombre de la editorial:"
+                            + "\nEDITORIAL: ");
+                    cantidad = libroService.cambiarAltaLibrosPorEditorial(sc.next(), alta);
+                    break;
+                default:
+                    System.out.print("Ingrese el año inicial:"
+                            + "\nDESDE: ");
+                    Integer desde = sc.nextInt();
+                    System.out.print("Ingrese el año final:"
+                            + "\nHASTA: ");
+                    Integer hasta = sc.nextInt();
+                    cantidad = libroService.cambiarAltaLibrosPorAnios(desde, hasta, alta);
+                    break;
+            }
+
+            //OUTPUT DE CONFIRMACIÓN
+            System.out.println("\n¡Listo! " + cantidad + (alta ? " libro/s reactivado/s." : " libro/s dado/s de baja."));
+
+        } catch (AutorException | EditorialException | LibroException e) {
+            System.out.println("Ups! Algo salio mal..."
+                    + "\n" + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Error desconocido cambiando el alta de los Libros");
+            e.printStackTrace();
+            System.out.println("Información del mensaje: " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Pide la ruta de un archivo CSV y carga en la BD todos los Libros que contenga, mostrando al final un resumen con las filas importadas, las rechazadas y la velocidad alcanzada
+     */
+    protected void importarCatalogo() {
+
+        try {
+
+            //INPUT DE LA RUTA DEL ARCHIVO
+            System.out.println("Formato esperado por fila: isbn,titulo,anio,ejemplares,ejemplaresPrestados,autor,editorial");
+            System.out.print("Ingrese la ruta del archivo CSV a importar:"
+                    + "\nARCHIVO: ");
+            Path archivo = Paths.get(sc.next().trim());
+
+            //VERIFICACIÓN
+            if (!Files.isReadable(archivo)) {
+                System.out.println("Ups! No se puede leer el archivo " + archivo);
+                return;
+            }
+
+            //IMPORTACIÓN
+            ResultadoImportacion resultado = importador.importar(archivo);
+
+            //OUTPUT DEL RESUMEN
+            System.out.println("\n¡Importación terminada!"
+                    + "\n" + resultado.toString());
+
+        } catch (IOException e) {
+            System.out.println("Ups! No se pudo leer el archivo..."
+                    + "\n" + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Error desconocido importando el catálogo");
+            e.printStackTrace();
+            System.out.println("Información del mensaje: " + e.getMessage());
+        }
+
+    }
+
+    /**
+     * Arma las sugerencias de títulos, autores y editoriales que usan los pedidos de texto de los menús. Pensado para correr en segundo plano al iniciar la aplicación; si falla, las sugerencias se arman en el primer uso
+     */
+    void cargarSugerencias() {
+        try {
+            libroService.cargarSugerencias();
+            autorService.cargarSugerencias();
+            editorialService.cargarSugerencias();
+        } catch (Exception e) {
+            System.out.println("No se pudieron precargar las sugerencias: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Método para seleccionar un Autor ya existente en la BD o ingresar uno nuevo y devuelver su nombre. Se imprime por consola un listado de a una página de Autores existentes, con una opción extra para ingresar uno nuevo y otra para ver la página siguiente. Dependiendo lo que ingrese el usuario, el nombre del Autor seleccionado será devuelto por el método.
      *
      * @return Nombre de un Autor ya existente o uno nuevo, a elección del Usuario
      */
     private String seleccionarAutor() {
 
         try {
-            //Si ya hay autores, guardo la cantidad de estos, los imprimo y doy la opción de que se ingrese uno nuevo
-            String nombreAutor;
-            int cantAutores = autorService.listarAutores().size();
-            autorService.imprimirAutores();
-            System.out.println((cantAutores + 1) + ". Ingresar un nuevo autor");
 
-            //Tomo lo que el usuario desea seleccionar
-            int opc;
-            do {
-                opc = sc.nextInt();
-            } while (opc < 1 || opc > (cantAutores + 1));
+            //Imprimo los autores de a una página y doy la opción de que se ingrese uno nuevo
+            System.out.println("\nLISTA DE AUTORES:");
+            ReferenciaDTO autor = seleccionarPaginado(
+                    ultimo -> autorService.listarReferenciasAutoresDesde(ultimo, TAMANIO_PAGINA),
+                    ReferenciaDTO::getNombre, "Ingresar un nuevo autor");
 
             /*Si quiere crear un nuevo autor, le pido que lo ingrese.
-            Si selecciona uno ya existente, seteo su nombre en el String*/
-            if (opc == cantAutores + 1) {
+            Si selecciona uno ya existente, devuelvo su nombre*/
+            if (autor == null) {
                 System.out.println("Ingrese el nombre del nuevo autor:");
-                nombreAutor = sc.next();
-            } else {
-                nombreAutor = autorService.listarAutores().get(opc - 1).getNombre();
+                String nombre = sc.next();
+                return confirmarParecido(nombre, autorService.buscarNombreParecido(nombre), "un autor");
             }
-            return nombreAutor;
+            return autor.getNombre();
 
-        } catch (AutorException e) {
-            System.out.println("Ups! Algo salio mal..."
-                    + "\n" + e.getMessage());
-            return "Autor no cargado.";
         } catch (Exception e) {
             System.out.println("Error desconocido seleccionando un Autor");
             e.printStackTrace();
@@ -402,7 +673,7 @@ public class MenuLibro {
 
     //MÉTODOS
     /**
-     * Método para seleccionar una Editorial ya existente en la BD o ingresar uno nuevo y devuelver su nombre. Se imprime por consola un listado con todos los Autores existentes y una opción extra para ingresar uno nuevo. Dependiendo lo que ingrese el usuario, el nombre de la Editorial seleccionado será devuelto por el método.
+     * Método para seleccionar una Editorial ya existente en la BD o ingresar uno nuevo y devuelver su nombre. Se imprime por consola un listado de a una página de Editoriales existentes, con una opción extra para ingresar una nueva y otra para ver la página siguiente. Dependiendo lo que ingrese el usuario, el nombre de la Editorial seleccionado será devuelto por el método.
      *
      * @return Nombre de una Editorial ya existente o una nueva, a elección del usuario
      */
@@ -410,32 +681,20 @@ public class MenuLibro {
 
         try {
 
-            String nombreEditorial;
-            int cantEditoriales = editorialService.listarEditoriales().size(); // CANTIDAD DE EDITORIALES
+            //OUTPUT DE LAS EDITORIALES DE A UNA PÁGINA E INPUT DEL USUARIO
+            System.out.println("\nLISTA DE EDITORIALES");
+            ReferenciaDTO editorial = seleccionarPaginado(
+                    ultimo -> editorialService.listarReferenciasEditorialesDesde(ultimo, TAMANIO_PAGINA),
+                    ReferenciaDTO::getNombre, "Ingresar una nueva editorial");
 
-            //OUTPUT DE UN LISTADO CON TODAS LAS EDITORIALES
-            editorialService.imprimirEditoriales();
-            System.out.println((cantEditoriales + 1) + ". Ingresar una nueva editorial");
-
-            //INPUT DEL USUARIO
-            int opc;
-            do {
-                opc = sc.nextInt();
-            } while (opc < 1 || opc > (cantEditoriales + 1));
-
-            //SI ELEGIÓ INGRESAR UNA NUEVA EDITORIAL, PIDO SU NOMBRE. SINO, SETEO EL QUE SELECCIONÓ DE LA LISTA
-            if (opc == cantEditoriales + 1) {
+            //SI ELIGIÓ INGRESAR UNA NUEVA EDITORIAL, PIDO SU NOMBRE. SINO, DEVUELVO EL QUE SELECCIONÓ DE LA LISTA
+            if (editorial == null) {
                 System.out.println("Ingrese la nueva editorial:");
-                nombreEditorial = sc.next();
-            } else {
-                nombreEditorial = editorialService.listarEditoriales().get(opc - 1).getNombre(); // GUARDO EL NOMBRE DE LA EDITORIAL SELECCIONADA
+                String nombre = sc.next();
+                return confirmarParecido(nombre, editorialService.buscarNombreParecido(nombre), "una editorial");
             }
-            return nombreEditorial;
+            return editorial.getNombre();
 
-        } catch (EditorialException e) {
-            System.out.println("Ups! Algo salió mal..."
-                    + "\n" + e.getMessage());
-            return "Editorial no cargada.";
         } catch (Exception e) {
             System.out.println("Error desconocido creando la Editorial");
             e.printStackTrace();
@@ -445,4 +704,103 @@ public class MenuLibro {
 
     }
 
+    /**
+     * Si el nombre nuevo se parece a uno existente (puede ser un error de tipeo), pregunta cuál usar. Si es el mismo nombre escrito distinto, usa el existente sin preguntar
+     *
+     * @param nombre Nombre ingresado
+     * @param parecido Nombre existente más parecido, o null si no hay ninguno
+     * @param descripcion "un autor" o "una editorial", para el mensaje
+     * @return El nombre elegido por el usuario
+     */
+    private String confirmarParecido(String nombre, String parecido, String descripcion) {
+        if (parecido == null || Normalizador.normalizar(parecido).equals(Normalizador.normalizar(nombre))) {
+            return nombre;
+        }
+        System.out.println("Ya existe " + descripcion + " con un nombre parecido: \"" + parecido + "\"."
+                + "\n1. Usar \"" + parecido + "\" / 2. Crear \"" + nombre + "\"");
+        int opc;
+        do {
+            opc = sc.nextInt();
+        } while (opc < 1 || opc > 2);
+        return opc == 1 ? parecido : nombre;
+    }
+
+    /**
+     * @return El texto ingresado, o null si se dejó vacío
+     */
+    private String leerOpcional() {
+        String texto = sc.next().trim();
+        return texto.isEmpty() ? null : texto;
+    }
+
+    /**
+     * @return El año ingresado, o null si se dejó vacío
+     * @throws LibroException Si lo ingresado no es un número
+     */
+    private Integer leerAnioOpcional() throws LibroException {
+        String texto = leerOpcional();
+        try {
+            return texto == null ? null : Integer.valueOf(texto);
+        } catch (NumberFormatException e) {
+            throw new LibroException("Debe ingresar años válidos.");
+        }
+    }
+
+    /**
+     * Pide una opción hasta que esté entre 1 y el máximo
+     */
+    private int elegir(int maximo) {
+        int opc;
+        do {
+            opc = sc.nextInt();
+        } while (opc < 1 || opc > maximo);
+        return opc;
+    }
+
+    /**
+     * Muestra un listado numerado de a una página por vez y devuelve el elemento que elija el usuario. Después de los elementos de la página se ofrece, si corresponde, una opción para ver la página siguiente y otra opción extra (por ejemplo, ingresar uno nuevo).
+     *
+     * @param <T> Tipo de los elementos a elegir
+     * @param siguiente Función que, a partir del último elemento mostrado (null al principio), devuelve la página siguiente
+     * @param descripcion Función que arma el texto de cada elemento
+     * @param opcionExtra Texto de la opción extra, o null si no se ofrece
+     * @return El elemento elegido, o null si se eligió la opción extra
+     */
+    private <T> T seleccionarPaginado(Function<T, Pagina<T>> siguiente, Function<T, String> descripcion, String opcionExtra) {
+
+        Pagina<T> pagina = siguiente.apply(null);
+        while (true) {
+
+            //OUTPUT DE LA PÁGINA Y DE LAS OPCIONES EXTRA
+            List<T> elementos = pagina.getElementos();
+            int counter = 1;
+            for (T elemento : elementos) {
+                System.out.println(counter + ". " + descripcion.apply(elemento));
+                counter++;
+            }
+            int opcMas = pagina.isHayMas() ? counter++ : -1;
+            int opcExtra = opcionExtra != null ? counter++ : -1;
+            if (opcMas != -1) {
+                System.out.println(opcMas + ". Ver más");
+            }
+            if (opcExtra != -1) {
+                System.out.println(opcExtra + ". " + opcionExtra);
+            }
+
+            //INPUT DEL USUARIO
+            int opc;
+            do {
+                opc = sc.nextInt();
+            } while (opc < 1 || opc >= counter);
+
+            if (opc == opcExtra) {
+                return null;
+            }
+            if (opc != opcMas) {
+                return elementos.get(opc - 1);
+            }
+            pagina = siguiente.apply(pagina.getUltimo());
+        }
+    }
+
 }
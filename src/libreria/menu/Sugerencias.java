@@ -0,0 +1,59 @@
+package libreria.menu;
+
+import java.util.List;
+import java.util.Scanner;
+import java.util.function.BiFunction;
+import libreria.utilidades.Configuracion;
+
+/**
+ * Autocompletado de los textos que se ingresan en los menús: si el texto termina en "*", se muestran los nombres guardados que empiezan con él para elegir uno en lugar de escribirlo completo.
+ *
+ * @author Matias Luca Soto
+ */
+final class Sugerencias {
+
+    //ATRIBUTOS
+    static final String AYUDA = " (termine con * para ver sugerencias)";
+    private static final int CANTIDAD = Math.max(1, Configuracion.getInt("libreria.sugerencias.cantidad", 10)); // Sugerencias que se muestran como máximo
+
+    //CONSTRUCTOR
+    private Sugerencias() {
+    }
+
+    //MÉTODOS
+    /**
+     * Si el texto ingresado termina en "*", muestra las sugerencias para lo escrito antes del "*" y pide elegir una
+     *
+     * @param sc Scanner del menú
+     * @param ingresado Texto ingresado por el usuario
+     * @param sugerir Método del Service que devuelve las sugerencias para un prefijo (por ejemplo AutorService::sugerirNombres)
+     * @return El texto elegido, o el ingresado (sin el "*") si no pidió sugerencias, no hay ninguna o prefiere usarlo tal cual
+     */
+    static String completar(Scanner sc, String ingresado, BiFunction<String, Integer, List<String>> sugerir) {
+        String texto = ingresado.trim();
+        if (!texto.endsWith("*")) {
+            return ingresado;
+        }
+        texto = texto.substring(0, texto.length() - 1).trim();
+        List<String> opciones = sugerir.apply(texto, CANTIDAD);
+        if (opciones.isEmpty()) {
+            System.out.println("No hay sugerencias para \"" + texto + "\".");
+            return texto;
+        }
+
+        //LISTADO DE SUGERENCIAS PARA ELEGIR
+        System.out.println("SUGERENCIAS:");
+        int counter = 1;
+        for (String opcion : opciones) {
+            System.out.println(counter + ". " + opcion);
+            counter++;
+        }
+        System.out.println("0. Usar \"" + texto + "\"");
+        int opc;
+        do {
+            opc = sc.nextInt();
+        } while (opc < 0 || opc > opciones.size());
+        return opc == 0 ? texto : opciones.get(opc - 1);
+    }
+
+}
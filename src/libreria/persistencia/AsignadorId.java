@@ -0,0 +1,42 @@
+package libreria.persistencia;
+
+import javax.persistence.PrePersist;
+import libreria.entidades.Identificable;
+
+/**
+ * Listener de las entidades que asigna la clave primaria justo antes de persistirlas, con la estrategia configurada en {@link GeneradorId}. Si la entidad ya trae una clave, se respeta.
+ *
+ * @author Matias Luca Soto
+ */
+public class AsignadorId {
+
+    //ATRIBUTOS
+    private static volatile GeneradorId generador;
+
+    //MÉTODOS
+    @PrePersist
+    public void asignar(Object entidad) {
+        Identificable identificable = (Identificable) entidad;
+        if (identificable.getId() == null) {
+            identificable.setId(getGenerador().generar(entidad.getClass()));
+        }
+    }
+
+    /**
+     * @return Generador de claves compartido por todas las entidades, creado la primera vez que se pide
+     */
+    public static GeneradorId getGenerador() {
+        GeneradorId actual = generador;
+        if (actual == null) {
+            synchronized (AsignadorId.class) {
+                actual = generador;
+                if (actual == null) {
+                    actual = GeneradorId.configurado();
+                    generador = actual;
+                }
+            }
+        }
+        return actual;
+    }
+
+}
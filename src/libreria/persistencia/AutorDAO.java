@@ -1,13 +1,20 @@
 package libreria.persistencia;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import javax.persistence.EntityManager;
-import javax.persistence.EntityManagerFactory;
+import java.util.function.Consumer;
 import javax.persistence.NoResultException;
-import javax.persistence.Persistence;
 import javax.persistence.RollbackException;
+import libreria.busqueda.Autocompletado;
+import libreria.busqueda.BuscadorSimilares;
+import libreria.dto.ReferenciaDTO;
 import libreria.entidades.Autor;
 import libreria.exceptions.AutorException;
+import libreria.utilidades.Configuracion;
+import libreria.utilidades.Normalizador;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
 
 /**
  *
@@ -16,14 +23,9 @@ import libreria.exceptions.AutorException;
 public class AutorDAO {
 
     //ATRIBUTOS
-    private final EntityManagerFactory emf;
-    private final EntityManager em;
-
-    //CONSTRUCTOR
-    public AutorDAO() {
-        this.emf = Persistence.createEntityManagerFactory("LibreriaPU");
-        this.em = emf.createEntityManager();
-    }
+    private static final int FETCH_SIZE = Math.max(1, Configuracion.getInt("libreria.cursor.fetch-size", 500)); // Filas por página al recorrer la tabla completa
+    private static final Autocompletado SUGERENCIAS = Autocompletado.AUTORES; // Lo mantienen al día los métodos de escritura de este DAO
+    private static final BuscadorSimilares SIMILARES = BuscadorSimilares.AUTORES; // Ídem
 
     //MÉTODOS
     /**
@@ -33,9 +35,11 @@ public class AutorDAO {
      */
     public void guardarAutor(Autor autor) {
         try {
-            em.getTransaction().begin();
-            em.persist(autor);
-            em.getTransaction().commit();
+            UnidadDeTrabajo.enTransaccion(em -> {
+                em.persist(autor);
+                return null;
+            });
+            sugerir(autor);
         } catch (Exception e) {
             System.out.println("Error al guardar autor en el DAO");
             e.printStackTrace();
@@ -44,15 +48,52 @@ public class AutorDAO {
     }
 
     /**
-     * Método void que recibe un Objeto Autor actualizado para aplicarle un merge en la Base de Datos
+     * Método void que recibe una colección de Autores nuevos y los persiste en la Base de Datos en lotes del tamaño configurado (libreria.lote.tamanio)
+     *
+     * @param autores Colección de Autores a persistir
+     */
+    public void guardarAutores(Collection<Autor> autores) {
+        guardarAutores(autores, UnidadDeTrabajo.TAMANIO_LOTE);
+    }
+
+    /**
+     * Método void que persiste una colección de Autores nuevos haciendo commit cada tamanioLote elementos. Los INSERT de cada lote viajan en un batch JDBC y el contexto de persistencia se limpia entre lotes, por lo que la memoria no crece con el tamaño de la colección.
+     *
+     * @param autores Colección de Autores a persistir
+     * @param tamanioLote Cantidad de autores por commit
+     */
+    public void guardarAutores(Collection<Autor> autores, int tamanioLote) {
+        try {
+            UnidadDeTrabajo.persistirEnLotes(autores, tamanioLote);
+            for (Autor autor : autores) {
+                sugerir(autor);
+            }
+        } catch (Exception e) {
+            if (!UnidadDeTrabajo.hayTransaccion()) {
+                SUGERENCIAS.invalidar(); // Los lotes anteriores al error ya tienen commit
+                SIMILARES.invalidar();
+            }
+            System.out.println("Error al guardar autores en lote en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que recibe un Objeto Autor actualizado para aplicarle un merge en la Base de Datos. Con el bloqueo optimista, si la fila cambió de versión desde que se leyó el merge falla con OptimisticLockException en lugar de pisar el cambio ajeno
      *
      * @param autor Objeto Autor con sus atributos actualizados para aplicar merge en la BD
+     * @return El Autor ya actualizado, con su nueva versión
      */
-    public void modificarAutor(Autor autor) {
+    public Autor modificarAutor(Autor autor) {
         try {
-            em.getTransaction().begin();
-            em.merge(autor);
-            em.getTransaction().commit();
+            Autor guardado = UnidadDeTrabajo.enTransaccion(em -> {
+                Autor actualizado = em.merge(autor);
+                em.flush();
+                return actualizado;
+            });
+            sugerir(guardado);
+            return guardado;
         } catch (Exception e) {
             System.out.println("Error al modificar autor en el DAO");
             e.printStackTrace();
@@ -68,10 +109,15 @@ public class AutorDAO {
      */
     public void eliminarAutorId(String id) throws AutorException  {
         try {
-            Autor autor = buscarAutorPorId(id);
-            em.getTransaction().begin();
-            em.remove(autor);
-            em.getTransaction().commit();
+            UnidadDeTrabajo.enTransaccion(em -> {
+                Autor autor = buscarAutorPorId(id);
+                em.remove(autor);
+                return null;
+            });
+            UnidadDeTrabajo.alConfirmar(() -> {
+                SUGERENCIAS.quitar(id);
+                SIMILARES.quitar(id);
+            });
         } catch (RollbackException e) {
             throw new AutorException("No se puede eliminar el autor por estar asociado a uno o más libros."
                     + "\nElimine los libros primeros para poder eliminar el autor");
@@ -89,7 +135,7 @@ public class AutorDAO {
      */
     public Autor buscarAutorPorId(String id) {
         try {
-            Autor autor = em.find(Autor.class, id);
+            Autor autor = UnidadDeTrabajo.consultar(em -> em.find(Autor.class, id));
             return autor;
         } catch (Exception e) {
             System.out.println("Error al buscar autor por ID en el DAO");
@@ -99,17 +145,31 @@ public class AutorDAO {
     }
 
     /**
-     * Método que busca un Autor en la BD según el nombre pasado como argumento y lo devuelve de ser encontrado. Crea una sentencia query de JPQA para buscar el atributo del Objeto.
+     * Método que lee un Autor por su id directamente de la BD, sin pasar por la caché compartida ni por el contexto de persistencia, y refresca ambos con lo leído. Se usa para reintentar una modificación que chocó con otra
+     * @param id Primary Key del Objeto Autor a buscar
+     * @return El estado actual en la base, o null si ya no existe
+     */
+    public Autor buscarAutorActualizado(String id) {
+        try {
+            return UnidadDeTrabajo.consultar(em -> em.find(Autor.class, id, Collections.<String, Object>singletonMap(QueryHints.REFRESH, HintValues.TRUE)));
+        } catch (Exception e) {
+            System.out.println("Error al releer autor por ID en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que busca un Autor en la BD según el nombre pasado como argumento y lo devuelve de ser encontrado. Compara contra la columna indexada del nombre normalizado, así no distingue mayúsculas, acentos ni espacios de más.
      * @param nombre atributo del Autor a buscar
      * @return Objeto Autor de ser encontrado. Sino, null
      */
     public Autor buscarAutorPorNombre(String nombre) {
         try {
-            Autor autor = (Autor) em.createQuery("SELECT a "
-                    + "FROM Autor a "
-                    + "WHERE a.nombre LIKE :nombre").
-                    setParameter("nombre", nombre).
-                    getSingleResult();
+            Autor autor = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Autor.buscarPorNombre", Autor.class).
+                    setParameter("clave", Normalizador.normalizar(nombre)).
+                    setMaxResults(1).
+                    getSingleResult());
             return autor;
         } catch (NoResultException e) {
             return null;
@@ -121,13 +181,28 @@ public class AutorDAO {
     }
 
     /**
-     * Método que devuelve una Lista con todos los Objetos de la tabla Autor en la base de datos.
+     * Método que devuelve todos los Autores de la BD, incluidos los dados de baja y sin ordenar. Es el listado a usar para armar mapas por nombre, que tienen que conocer todos los nombres ya tomados
+     * @return Lista con todos los Autores en la BD
+     */
+    public List<Autor> listarTodosLosAutores() {
+        try {
+            return UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Autor.listarTodos", Autor.class).
+                    getResultList());
+        } catch (Exception e) {
+            System.out.println("Error al listar todos los autores en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve una Lista con todos los Objetos de la tabla Autor dados de alta en la base de datos, ordenados por nombre (el mismo orden con el que se imprimen).
      * @return Lista con todos los Autores en la BD
      */
     public List<Autor> listarAutores() {
         try {
-            List<Autor> autores = em.createQuery("SELECT a FROM Autor a").
-                    getResultList();
+            List<Autor> autores = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Autor.listar", Autor.class).
+                    getResultList());
             return autores;
         } catch (Exception e) {
             System.out.println("Error al listar autores en el DAO");
@@ -136,4 +211,208 @@ public class AutorDAO {
         }
     }
 
+    /**
+     * Método que devuelve una página de la tabla Autor ordenada por nombre. Usa OFFSET, por lo que sirve para saltar a una página puntual; para recorrer páginas seguidas conviene {@link #listarAutoresDesde(Autor, int)}.
+     *
+     * @param pagina Número de página, empezando en 0
+     * @param tamanio Cantidad de elementos por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página con los autores pedidos
+     */
+    public Pagina<Autor> listarAutores(int pagina, int tamanio) {
+        try {
+            int limite = Pagina.limitar(tamanio);
+            List<Autor> autores = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Autor.listar", Autor.class).
+                    setFirstResult(Math.max(0, pagina) * limite).
+                    setMaxResults(limite + 1).
+                    getResultList());
+            return Pagina.de(autores, Math.max(0, pagina), limite);
+        } catch (Exception e) {
+            System.out.println("Error al listar una página de autores en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve la página de autores que sigue al Autor recibido, ordenando por nombre (paginación por clave o keyset). A diferencia del OFFSET, el costo de cada página no crece a medida que se avanza.
+     *
+     * @param ultimo Último Autor de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de elementos por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página con los autores siguientes
+     */
+    public Pagina<Autor> listarAutoresDesde(Autor ultimo, int tamanio) {
+        try {
+            int limite = Pagina.limitar(tamanio);
+            List<Autor> autores = UnidadDeTrabajo.consultar(em -> {
+                if (ultimo == null) {
+                    return em.createNamedQuery("Autor.listar", Autor.class).
+                            setMaxResults(limite + 1).
+                            getResultList();
+                }
+                return em.createNamedQuery("Autor.listarDesde", Autor.class).
+                        setParameter("nombre", ultimo.getNombre()).
+                        setParameter("id", ultimo.getId()).
+                        setMaxResults(limite + 1).
+                        getResultList();
+            });
+            return Pagina.de(autores, -1, limite);
+        } catch (Exception e) {
+            System.out.println("Error al listar autores por clave en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve el ID y el nombre de todos los autores, ordenados por nombre, como filas de solo lectura en lugar de entidades administradas
+     *
+     * @return Lista de referencias (id, nombre)
+     */
+    public List<ReferenciaDTO> listarReferenciasAutores() {
+        try {
+            List<ReferenciaDTO> referencias = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Autor.listarReferencias", ReferenciaDTO.class).
+                    getResultList());
+            return referencias;
+        } catch (Exception e) {
+            System.out.println("Error al listar referencias de autores en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve la página de referencias (id, nombre) de autores que sigue a la recibida, ordenadas por nombre (paginación por clave)
+     *
+     * @param ultima Última referencia de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de elementos por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página de referencias
+     */
+    public Pagina<ReferenciaDTO> listarReferenciasAutoresDesde(ReferenciaDTO ultima, int tamanio) {
+        try {
+            int limite = Pagina.limitar(tamanio);
+            List<ReferenciaDTO> referencias = UnidadDeTrabajo.consultar(em -> {
+                if (ultima == null) {
+                    return em.createNamedQuery("Autor.listarReferencias", ReferenciaDTO.class).
+                            setMaxResults(limite + 1).
+                            getResultList();
+                }
+                return em.createNamedQuery("Autor.listarReferenciasDesde", ReferenciaDTO.class).
+                        setParameter("nombre", ultima.getNombre()).
+                        setParameter("id", ultima.getId()).
+                        setMaxResults(limite + 1).
+                        getResultList();
+            });
+            return Pagina.de(referencias, -1, limite);
+        } catch (Exception e) {
+            System.out.println("Error al listar referencias de autores por clave en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que recorre el ID y el nombre de todos los Autores dados de alta, en páginas de libreria.cursor.fetch-size filas ordenadas por nombre (cada página sigue desde la última referencia de la anterior). Con esto se arman las sugerencias de nombres
+     *
+     * @param accion Acción a ejecutar con cada referencia
+     */
+    public void recorrerReferenciasAutores(Consumer<ReferenciaDTO> accion) {
+        try {
+            UnidadDeTrabajo.consultarAislado(em -> {
+                List<ReferenciaDTO> referencias = em.createNamedQuery("Autor.listarReferencias", ReferenciaDTO.class).
+                        setMaxResults(FETCH_SIZE).
+                        getResultList();
+                while (!referencias.isEmpty()) {
+                    referencias.forEach(accion);
+                    if (referencias.size() < FETCH_SIZE) {
+                        break;
+                    }
+                    ReferenciaDTO ultima = referencias.get(referencias.size() - 1);
+                    referencias = em.createNamedQuery("Autor.listarReferenciasDesde", ReferenciaDTO.class).
+                            setParameter("nombre", ultima.getNombre()).
+                            setParameter("id", ultima.getId()).
+                            setMaxResults(FETCH_SIZE).
+                            getResultList();
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            System.out.println("Error al recorrer referencias de autores en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve los nombres de Autores dados de alta que empiezan con el texto recibido, sin ir a la base. Las sugerencias se arman la primera vez recorriendo la tabla y después las mantienen al día las escrituras de este DAO
+     *
+     * @param prefijo Comienzo del nombre, sin distinguir mayúsculas ni acentos
+     * @param cantidad Cantidad máxima de sugerencias
+     * @return Nombres en orden alfabético
+     */
+    public List<String> sugerirNombres(String prefijo, int cantidad) {
+        try {
+            cargarSugerencias();
+            return SUGERENCIAS.completar(prefijo, cantidad);
+        } catch (Exception e) {
+            System.out.println("Error al sugerir nombres de autores en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Descarta las sugerencias y el buscador de nombres parecidos, para cuando la tabla se modificó por fuera de este DAO. Se vuelven a armar en el próximo uso
+     */
+    public static void invalidarSugerencias() {
+        SUGERENCIAS.invalidar();
+        SIMILARES.invalidar();
+    }
+
+    /**
+     * Método que devuelve el nombre del Autor dado de alta más parecido al recibido (por ejemplo "García Márquez" para "Garcia Marques"), sin ir a la base. Sirve para no crear un duplicado escrito distinto
+     *
+     * @param nombre Nombre a comparar
+     * @return El nombre parecido tal como está guardado, o null si no hay ninguno
+     */
+    public String buscarNombreParecido(String nombre) {
+        try {
+            cargarSimilares();
+            return SIMILARES.buscarParecido(nombre);
+        } catch (Exception e) {
+            System.out.println("Error al buscar autor parecido en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que arma las sugerencias de nombres y el buscador de nombres parecidos si todavía no están armados
+     */
+    public void cargarSugerencias() {
+        SUGERENCIAS.cargarSiHaceFalta(receptor -> recorrerReferenciasAutores(referencia -> receptor.accept(referencia.getId(), referencia.getNombre())));
+        cargarSimilares();
+    }
+
+    private void cargarSimilares() {
+        SIMILARES.cargarSiHaceFalta(receptor -> recorrerReferenciasAutores(referencia -> receptor.accept(referencia.getId(), referencia.getNombre())));
+    }
+
+    /**
+     * Lleva a las sugerencias el Autor recién escrito (o lo quita si quedó dado de baja) y al buscador de nombres parecidos cuando su transacción queda confirmada. Si la transacción se deshace, ninguno de los dos se toca
+     */
+    private static void sugerir(Autor autor) {
+        String id = autor.getId();
+        String nombre = autor.getNombre();
+        boolean alta = Boolean.TRUE.equals(autor.getAlta());
+        UnidadDeTrabajo.alConfirmar(() -> {
+            if (alta) {
+                SUGERENCIAS.agregar(id, nombre);
+                SIMILARES.agregar(id, nombre);
+            } else {
+                SUGERENCIAS.quitar(id);
+                SIMILARES.quitar(id);
+            }
+        });
+    }
+
 }
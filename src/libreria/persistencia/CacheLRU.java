@@ -0,0 +1,173 @@
+package libreria.persistencia;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Caché en memoria de tamaño acotado: cuando se llena descarta el elemento usado hace más tiempo (LRU), y cada elemento vence a los {@code ttl} milisegundos de guardado. Cuenta aciertos y fallos para poder dimensionarla. Es segura para usar desde varios hilos.
+ *
+ * @author Matias Luca Soto
+ * @param <K> Tipo de la clave
+ * @param <V> Tipo del valor
+ */
+public class CacheLRU<K, V> {
+
+    //ATRIBUTOS
+    private final String nombre;
+    private final int tamanioMaximo;
+    private final long ttl;
+    private final LinkedHashMap<K, Entrada<V>> entradas;
+    private final Consumer<V> alDescartar;
+    private long aciertos;
+    private long fallos;
+
+    /**
+     * Valor guardado junto con el momento en que vence
+     */
+    private static final class Entrada<V> {
+
+        private final V valor;
+        private final long vence;
+
+        private Entrada(V valor, long vence) {
+            this.valor = valor;
+            this.vence = vence;
+        }
+    }
+
+    //CONSTRUCTOR
+    /**
+     * @param nombre Nombre de la caché, para las estadísticas
+     * @param tamanioMaximo Cantidad máxima de elementos
+     * @param ttl Milisegundos que vive cada elemento. 0 o menos: no vencen
+     */
+    public CacheLRU(String nombre, int tamanioMaximo, long ttl) {
+        this(nombre, tamanioMaximo, ttl, valor -> {
+        });
+    }
+
+    /**
+     * @param nombre Nombre de la caché, para las estadísticas
+     * @param tamanioMaximo Cantidad máxima de elementos
+     * @param ttl Milisegundos que vive cada elemento. 0 o menos: no vencen
+     * @param alDescartar Recibe cada valor que sale de la caché (reemplazado, vencido, desplazado por uno nuevo o quitado), para mantener al día los índices que apuntan a él. Se ejecuta con la caché bloqueada
+     */
+    public CacheLRU(String nombre, int tamanioMaximo, long ttl, Consumer<V> alDescartar) {
+        this.nombre = nombre;
+        this.tamanioMaximo = Math.max(1, tamanioMaximo);
+        this.ttl = ttl;
+        this.alDescartar = alDescartar;
+        this.entradas = new LinkedHashMap<K, Entrada<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> mayor) {
+                if (size() > CacheLRU.this.tamanioMaximo) {
+                    CacheLRU.this.alDescartar.accept(mayor.getValue().valor);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //MÉTODOS
+    /**
+     * @param clave Clave a buscar
+     * @return El valor guardado, o null si no está o si ya venció
+     */
+    public synchronized V get(K clave) {
+        Entrada<V> entrada = entradas.get(clave);
+        if (entrada != null && ttl > 0 && entrada.vence < System.currentTimeMillis()) {
+            entradas.remove(clave);
+            alDescartar.accept(entrada.valor);
+            entrada = null;
+        }
+        if (entrada == null) {
+            fallos++;
+            return null;
+        }
+        aciertos++;
+        return entrada.valor;
+    }
+
+    /**
+     * Guarda un valor. Los valores null no se guardan.
+     *
+     * @param clave Clave
+     * @param valor Valor a guardar
+     */
+    public synchronized void put(K clave, V valor) {
+        if (valor != null) {
+            Entrada<V> anterior = entradas.put(clave, new Entrada<>(valor, System.currentTimeMillis() + ttl));
+            if (anterior != null) {
+                alDescartar.accept(anterior.valor);
+            }
+        }
+    }
+
+    /**
+     * @param clave Clave a descartar
+     */
+    public synchronized void remove(K clave) {
+        Entrada<V> entrada = entradas.remove(clave);
+        if (entrada != null) {
+            alDescartar.accept(entrada.valor);
+        }
+    }
+
+    /**
+     * Descarta todos los elementos cuyo valor cumple la condición
+     *
+     * @param condicion Condición sobre el valor guardado
+     */
+    public synchronized void removeIf(Predicate<? super V> condicion) {
+        Iterator<Entrada<V>> iterador = entradas.values().iterator();
+        while (iterador.hasNext()) {
+            V valor = iterador.next().valor;
+            if (condicion.test(valor)) {
+                iterador.remove();
+                alDescartar.accept(valor);
+            }
+        }
+    }
+
+    /**
+     * Descarta todos los elementos (las estadísticas se conservan)
+     */
+    public synchronized void clear() {
+        for (Entrada<V> entrada : entradas.values()) {
+            alDescartar.accept(entrada.valor);
+        }
+        entradas.clear();
+    }
+
+    public synchronized int size() {
+        return entradas.size();
+    }
+
+    public synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    public synchronized long getFallos() {
+        return fallos;
+    }
+
+    /**
+     * @return Porcentaje de búsquedas que encontraron el valor en la caché
+     */
+    public synchronized double getPorcentajeAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0 : aciertos * 100.0 / total;
+    }
+
+    //toString
+    @Override
+    public synchronized String toString() {
+        return nombre + ": " + entradas.size() + "/" + tamanioMaximo + " elementos / Aciertos: " + aciertos + " / Fallos: " + fallos
+                + " (" + String.format("%.1f", getPorcentajeAciertos()) + "% de aciertos)";
+    }
+
+}
@@ -0,0 +1,75 @@
+package libreria.persistencia;
+
+import java.util.List;
+import javax.persistence.EntityTransaction;
+import libreria.utilidades.Normalizador;
+
+/**
+ * Completa al iniciar la unidad de persistencia las claves normalizadas (nombre de Autores y Editoriales, título de Libros) que están vacías. Las entidades las calculan solas al guardarse, pero las filas escritas por una versión anterior de la aplicación las tienen en NULL, y como las búsquedas por nombre comparan contra esas columnas, no se encontrarían.
+ * <p>
+ * La normalización (quitar acentos) no se puede hacer en SQL de forma portable, así que las filas se leen y se actualizan de a lotes de {@link UnidadDeTrabajo#TAMANIO_LOTE}, cada uno en su propia transacción: si se interrumpe, la próxima vez sigue con las que faltan.
+ *
+ * @author Matias Luca Soto
+ */
+final class CompletadorClaves {
+
+    //CONSTRUCTOR
+    private CompletadorClaves() {
+    }
+
+    //MÉTODOS
+    /**
+     * Completa las claves vacías de todas las entidades e informa por consola cuántas completó. Un error no impide el arranque.
+     */
+    static void completar() {
+        try {
+            long completadas = completar("Autor", "nombre", "nombreClave")
+                    + completar("Editorial", "nombre", "nombreClave")
+                    + completar("Libro", "titulo", "tituloClave");
+            if (completadas > 0) {
+                System.out.println("Claves normalizadas completadas: " + completadas);
+            }
+        } catch (RuntimeException e) {
+            System.out.println("No se pudieron completar las claves normalizadas de la base de datos");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Completa la clave de una entidad a partir de su atributo, de a un lote por transacción, hasta que no queden filas con la clave vacía
+     *
+     * @return Cantidad de filas completadas
+     */
+    private static long completar(String entidad, String atributo, String clave) {
+        String pendientes = "SELECT e.id, e." + atributo + " FROM " + entidad + " e WHERE e." + clave + " IS NULL";
+        String actualizar = "UPDATE " + entidad + " e SET e." + clave + " = :clave WHERE e.id = :id";
+        return UnidadDeTrabajo.consultarAislado(em -> {
+            long cantidad = 0;
+            List<Object[]> filas;
+            do {
+                filas = em.createQuery(pendientes, Object[].class).
+                        setMaxResults(UnidadDeTrabajo.TAMANIO_LOTE).
+                        getResultList();
+                EntityTransaction tx = em.getTransaction();
+                tx.begin();
+                try {
+                    for (Object[] fila : filas) {
+                        em.createQuery(actualizar).
+                                setParameter("clave", Normalizador.normalizar((String) fila[1])).
+                                setParameter("id", fila[0]).
+                                executeUpdate();
+                    }
+                    tx.commit();
+                } finally {
+                    if (tx.isActive()) {
+                        tx.rollback();
+                    }
+                }
+                em.clear();
+                cantidad += filas.size();
+            } while (filas.size() == UnidadDeTrabajo.TAMANIO_LOTE);
+            return cantidad;
+        });
+    }
+
+}
@@ -0,0 +1,174 @@
+package libreria.persistencia;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import libreria.utilidades.Configuracion;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.sessions.server.ConnectionPool;
+import org.eclipse.persistence.sessions.server.ServerSession;
+
+/**
+ * Registro único del EntityManagerFactory de la unidad de persistencia "LibreriaPU". La fábrica se construye una sola vez, de forma perezosa, la primera vez que algún DAO la pide, y se comparte entre todos los DAOs de la aplicación (un solo pool de conexiones y una sola caché compartida).
+ * <p>
+ * Los pools de conexiones de EclipseLink se configuran con las siguientes propiedades (ver {@link Configuracion}):
+ * <ul>
+ * <li>libreria.pool.escritura.inicial / .min / .max: pool de escritura (por defecto 2 / 2 / 10)</li>
+ * <li>libreria.pool.lectura.inicial / .min / .max: pool de lectura (por defecto 2 / 2 / 10)</li>
+ * <li>libreria.pool.espera: milisegundos máximos de espera por una conexión libre (por defecto 5000)</li>
+ * <li>libreria.pool.sentencias: tamaño de la caché de sentencias preparadas por conexión, 0 la desactiva (por defecto 50)</li>
+ * </ul>
+ * Las escrituras se envían con batch JDBC, agrupando tantas sentencias como el tamaño de lote de {@link UnidadDeTrabajo#TAMANIO_LOTE}.
+ * Además, cualquier propiedad "javax.persistence.*" o "eclipselink.*" configurada pisa a la de persistence.xml (por ejemplo la URL, el usuario o la contraseña de la base de datos).
+ *
+ * @author Matias Luca Soto
+ */
+public final class ConexionPersistencia {
+
+    //ATRIBUTOS
+    private static final String UNIDAD_PERSISTENCIA = "LibreriaPU";
+    private static volatile EntityManagerFactory emf;
+
+    //CONSTRUCTOR
+    private ConexionPersistencia() {
+    }
+
+    //MÉTODOS
+    /**
+     * Devuelve la fábrica compartida de EntityManagers. Si todavía no fue creada, la crea, registra un shutdown hook para cerrarla al terminar el proceso y, salvo que libreria.claves.completar sea false, completa las claves normalizadas que falten (ver CompletadorClaves). Después, salvo que libreria.indices.verificar sea false, comprueba que la base tenga los índices declarados en las entidades y crea las restricciones únicas que falten (ver VerificadorIndices).
+     *
+     * @return EntityManagerFactory de la unidad "LibreriaPU"
+     * @throws IllegalStateException Si no se pudo crear una restricción única faltante; la fábrica se cierra y la próxima llamada lo vuelve a intentar
+     */
+    public static EntityManagerFactory getEntityManagerFactory() {
+        EntityManagerFactory fabrica = emf;
+        if (fabrica == null) {
+            synchronized (ConexionPersistencia.class) {
+                fabrica = emf;
+                if (fabrica == null) {
+                    fabrica = Persistence.createEntityManagerFactory(UNIDAD_PERSISTENCIA, propiedades());
+                    emf = fabrica;
+                    try {
+                        // PRIMERO LAS CLAVES: LA RESTRICCIÓN ÚNICA DEL TÍTULO SE ARMA SOBRE LA COLUMNA NORMALIZADA
+                        if (Configuracion.getBoolean("libreria.claves.completar", true)) {
+                            CompletadorClaves.completar();
+                        }
+                        if (Configuracion.getBoolean("libreria.indices.verificar", true)) {
+                            VerificadorIndices.verificar();
+                        }
+                    } catch (RuntimeException e) {
+                        // SIN LAS RESTRICCIONES NO SE ARRANCA: CADA LLAMADA VUELVE A INTENTARLO Y A FALLAR
+                        emf = null;
+                        fabrica.close();
+                        throw e;
+                    }
+                    Runtime.getRuntime().addShutdownHook(new Thread(ConexionPersistencia::cerrar, "cierre-LibreriaPU"));
+                }
+            }
+        }
+        return fabrica;
+    }
+
+    /**
+     * Devuelve un resumen del uso de los pools de conexiones de la fábrica compartida: conexiones en uso, creadas y máximas de cada pool.
+     *
+     * @return Texto con una línea por pool, o un aviso si la fábrica todavía no fue creada
+     */
+    public static String estadoPools() {
+        EntityManagerFactory fabrica = emf;
+        if (fabrica == null || !fabrica.isOpen()) {
+            return "La unidad de persistencia todavía no fue iniciada.";
+        }
+        ServerSession sesion = (ServerSession) JpaHelper.getServerSession(fabrica);
+        StringBuilder estado = new StringBuilder("ESTADO DE LOS POOLS DE CONEXIONES:");
+        estado.append(describir(sesion.getReadConnectionPool()));
+        for (ConnectionPool pool : sesion.getConnectionPools().values()) {
+            estado.append(describir(pool));
+        }
+        return estado.toString();
+    }
+
+    /**
+     * Descarta de la caché compartida todas las instancias de una entidad, para que la próxima lectura vaya a la base. Hace falta después de cambios que no pasan por el EntityManager (UPDATE masivos, SQL nativo u otra aplicación escribiendo en la misma base).
+     *
+     * @param entidad Clase de la entidad a invalidar
+     */
+    public static void invalidarCache(Class<?> entidad) {
+        EntityManagerFactory fabrica = emf;
+        if (fabrica != null && fabrica.isOpen()) {
+            fabrica.getCache().evict(entidad);
+        }
+    }
+
+    /**
+     * Descarta de la caché compartida la instancia de una entidad con la clave indicada
+     *
+     * @param entidad Clase de la entidad
+     * @param id Clave primaria de la instancia a descartar
+     */
+    public static void invalidarCache(Class<?> entidad, Object id) {
+        EntityManagerFactory fabrica = emf;
+        if (fabrica != null && fabrica.isOpen()) {
+            fabrica.getCache().evict(entidad, id);
+        }
+    }
+
+    /**
+     * Cierra la fábrica compartida (y con ella el pool de conexiones) si está abierta. Puede llamarse más de una vez sin problemas.
+     */
+    public static synchronized void cerrar() {
+        if (emf != null) {
+            if (emf.isOpen()) {
+                emf.close();
+            }
+            emf = null;
+        }
+    }
+
+    /**
+     * Arma el mapa de propiedades que se le pasa a la fábrica, a partir de la configuración externa
+     */
+    private static Map<String, Object> propiedades() {
+        Map<String, Object> propiedades = new HashMap<>();
+
+        //POOL DE ESCRITURA (el pool "default" de EclipseLink)
+        propiedades.put(PersistenceUnitProperties.CONNECTION_POOL + PersistenceUnitProperties.CONNECTION_POOL_INITIAL, Configuracion.get("libreria.pool.escritura.inicial", "2"));
+        propiedades.put(PersistenceUnitProperties.CONNECTION_POOL + PersistenceUnitProperties.CONNECTION_POOL_MIN, Configuracion.get("libreria.pool.escritura.min", "2"));
+        propiedades.put(PersistenceUnitProperties.CONNECTION_POOL + PersistenceUnitProperties.CONNECTION_POOL_MAX, Configuracion.get("libreria.pool.escritura.max", "10"));
+        propiedades.put(PersistenceUnitProperties.CONNECTION_POOL + PersistenceUnitProperties.CONNECTION_POOL_WAIT, Configuracion.get("libreria.pool.espera", "5000"));
+
+        //POOL DE LECTURA, SEPARADO DEL DE ESCRITURA
+        propiedades.put(PersistenceUnitProperties.CONNECTION_POOL_READ + PersistenceUnitProperties.CONNECTION_POOL_INITIAL, Configuracion.get("libreria.pool.lectura.inicial", "2"));
+        propiedades.put(PersistenceUnitProperties.CONNECTION_POOL_READ + PersistenceUnitProperties.CONNECTION_POOL_MIN, Configuracion.get("libreria.pool.lectura.min", "2"));
+        propiedades.put(PersistenceUnitProperties.CONNECTION_POOL_READ + PersistenceUnitProperties.CONNECTION_POOL_MAX, Configuracion.get("libreria.pool.lectura.max", "10"));
+        propiedades.put(PersistenceUnitProperties.CONNECTION_POOL_READ + PersistenceUnitProperties.CONNECTION_POOL_SHARED, "false");
+
+        //CACHÉ DE SENTENCIAS PREPARADAS
+        int sentencias = Configuracion.getInt("libreria.pool.sentencias", 50);
+        propiedades.put(PersistenceUnitProperties.CACHE_STATEMENTS, String.valueOf(sentencias > 0));
+        if (sentencias > 0) {
+            propiedades.put(PersistenceUnitProperties.CACHE_STATEMENTS_SIZE, String.valueOf(sentencias));
+        }
+
+        //BATCH WRITING: LOS INSERT/UPDATE DE UN FLUSH VIAJAN AGRUPADOS
+        propiedades.put(PersistenceUnitProperties.BATCH_WRITING, "JDBC");
+        propiedades.put(PersistenceUnitProperties.BATCH_WRITING_SIZE, String.valueOf(UnidadDeTrabajo.TAMANIO_LOTE));
+
+        //PROPIEDADES DEL PROVEEDOR CONFIGURADAS DE FORMA EXTERNA
+        propiedades.putAll(Configuracion.conPrefijo("javax.persistence."));
+        propiedades.putAll(Configuracion.conPrefijo("eclipselink."));
+        return propiedades;
+    }
+
+    /**
+     * Describe en una línea el uso de un pool de conexiones
+     */
+    private static String describir(ConnectionPool pool) {
+        int creadas = pool.getTotalNumberOfConnections();
+        int enUso = creadas - pool.getConnectionsAvailable().size();
+        return "\n" + pool.getName() + ": " + enUso + " en uso / " + creadas + " creadas / " + pool.getMaxNumberOfConnections() + " máximas";
+    }
+
+}
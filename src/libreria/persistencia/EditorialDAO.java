@@ -1,14 +1,21 @@
 package libreria.persistencia;
 
 import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import javax.persistence.EntityManager;
-import javax.persistence.EntityManagerFactory;
+import java.util.function.Consumer;
 import javax.persistence.NoResultException;
-import javax.persistence.Persistence;
 import javax.persistence.RollbackException;
+import libreria.busqueda.Autocompletado;
+import libreria.busqueda.BuscadorSimilares;
+import libreria.dto.ReferenciaDTO;
 import libreria.entidades.Editorial;
 import libreria.exceptions.EditorialException;
+import libreria.utilidades.Configuracion;
+import libreria.utilidades.Normalizador;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
 
 /**
  *
@@ -17,14 +24,9 @@ import libreria.exceptions.EditorialException;
 public class EditorialDAO {
 
     //ATRIBUTOS
-    private final EntityManagerFactory emf;
-    private final EntityManager em;
-
-    //CONSTRUCTOR
-    public EditorialDAO() {
-        this.emf = Persistence.createEntityManagerFactory("LibreriaPU");
-        this.em = emf.createEntityManager();
-    }
+    private static final int FETCH_SIZE = Math.max(1, Configuracion.getInt("libreria.cursor.fetch-size", 500)); // Filas por página al recorrer la tabla completa
+    private static final Autocompletado SUGERENCIAS = Autocompletado.EDITORIALES; // Lo mantienen al día los métodos de escritura de este DAO
+    private static final BuscadorSimilares SIMILARES = BuscadorSimilares.EDITORIALES; // Ídem
 
     //MÉTODOS
     /**
@@ -34,9 +36,11 @@ public class EditorialDAO {
      */
     public void guardarEditorial(Editorial editorial) {
         try {
-            em.getTransaction().begin();
-            em.persist(editorial);
-            em.getTransaction().commit();
+            UnidadDeTrabajo.enTransaccion(em -> {
+                em.persist(editorial);
+                return null;
+            });
+            sugerir(editorial);
         } catch (Exception e) {
             System.out.println("Error al guardar editorial en el DAO");
             e.printStackTrace();
@@ -45,15 +49,52 @@ public class EditorialDAO {
     }
 
     /**
-     * Método void que recibe un Objeto Editorial actualizado para aplicarle un merge en la Base de Datos
+     * Método void que recibe una colección de Editoriales nuevas y las persiste en la Base de Datos en lotes del tamaño configurado (libreria.lote.tamanio)
+     *
+     * @param editoriales Colección de Editoriales a persistir
+     */
+    public void guardarEditoriales(Collection<Editorial> editoriales) {
+        guardarEditoriales(editoriales, UnidadDeTrabajo.TAMANIO_LOTE);
+    }
+
+    /**
+     * Método void que persiste una colección de Editoriales nuevas haciendo commit cada tamanioLote elementos. Los INSERT de cada lote viajan en un batch JDBC y el contexto de persistencia se limpia entre lotes, por lo que la memoria no crece con el tamaño de la colección.
+     *
+     * @param editoriales Colección de Editoriales a persistir
+     * @param tamanioLote Cantidad de editoriales por commit
+     */
+    public void guardarEditoriales(Collection<Editorial> editoriales, int tamanioLote) {
+        try {
+            UnidadDeTrabajo.persistirEnLotes(editoriales, tamanioLote);
+            for (Editorial editorial : editoriales) {
+                sugerir(editorial);
+            }
+        } catch (Exception e) {
+            if (!UnidadDeTrabajo.hayTransaccion()) {
+                SUGERENCIAS.invalidar(); // Los lotes anteriores al error ya tienen commit
+                SIMILARES.invalidar();
+            }
+            System.out.println("Error al guardar editoriales en lote en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que recibe un Objeto Editorial actualizado para aplicarle un merge en la Base de Datos. Con el bloqueo optimista, si la fila cambió de versión desde que se leyó el merge falla con OptimisticLockException en lugar de pisar el cambio ajeno
      *
      * @param editorial Objeto Editorial con sus atributos actualizados para aplicar merge en la BD
+     * @return La Editorial ya actualizada, con su nueva versión
      */
-    public void modificarEditorial(Editorial editorial) {
+    public Editorial modificarEditorial(Editorial editorial) {
         try {
-            em.getTransaction().begin();
-            em.merge(editorial);
-            em.getTransaction().commit();
+            Editorial guardado = UnidadDeTrabajo.enTransaccion(em -> {
+                Editorial actualizado = em.merge(editorial);
+                em.flush();
+                return actualizado;
+            });
+            sugerir(guardado);
+            return guardado;
         } catch (Exception e) {
             System.out.println("Error al modificar editorial en el DAO");
             e.printStackTrace();
@@ -69,10 +110,15 @@ public class EditorialDAO {
      */
     public void eliminarEditorialPorId(String id) throws EditorialException {
         try {
-            Editorial editorial = buscarEditorialPorId(id);
-            em.getTransaction().begin();
-            em.remove(editorial);
-            em.getTransaction().commit();
+            UnidadDeTrabajo.enTransaccion(em -> {
+                Editorial editorial = buscarEditorialPorId(id);
+                em.remove(editorial);
+                return null;
+            });
+            UnidadDeTrabajo.alConfirmar(() -> {
+                SUGERENCIAS.quitar(id);
+                SIMILARES.quitar(id);
+            });
         } catch (RollbackException e) {
             throw new EditorialException("No se puede eliminar la editorial por estar asociada a uno o más libros."
                     + "\nElimine los libros primeros para poder eliminar la Editorial");
@@ -91,7 +137,7 @@ public class EditorialDAO {
      */
     public Editorial buscarEditorialPorId(String id) {
         try {
-            Editorial editorial = em.find(Editorial.class, id);
+            Editorial editorial = UnidadDeTrabajo.consultar(em -> em.find(Editorial.class, id));
             return editorial;
         } catch (Exception e) {
             System.out.println("Error al buscar Editorial por ID en el DAO");
@@ -101,18 +147,32 @@ public class EditorialDAO {
     }
 
     /**
-     * Método que busca una Editorial en la BD según el nombre pasado como argumento y lo devuelve de ser encontrado. Crea una sentencia query de JPQA para buscar el atributo del Objeto.
+     * Método que lee una Editorial por su id directamente de la BD, sin pasar por la caché compartida ni por el contexto de persistencia, y refresca ambos con lo leído. Se usa para reintentar una modificación que chocó con otra
+     * @param id Primary Key del Objeto Editorial a buscar
+     * @return El estado actual en la base, o null si ya no existe
+     */
+    public Editorial buscarEditorialActualizada(String id) {
+        try {
+            return UnidadDeTrabajo.consultar(em -> em.find(Editorial.class, id, Collections.<String, Object>singletonMap(QueryHints.REFRESH, HintValues.TRUE)));
+        } catch (Exception e) {
+            System.out.println("Error al releer editorial por ID en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que busca una Editorial en la BD según el nombre pasado como argumento y lo devuelve de ser encontrado. Compara contra la columna indexada del nombre normalizado, así no distingue mayúsculas, acentos ni espacios de más.
      *
      * @param nombre atributo de la Editorial a buscar
      * @return Objeto Editorial de ser encontrado. Sino, null
      */
     public Editorial buscarEditorialPorNombre(String nombre) {
         try {
-            Editorial editorial = (Editorial) em.createQuery("SELECT e "
-                    + "FROM Editorial e "
-                    + "WHERE e.nombre LIKE :nombre").
-                    setParameter("nombre", nombre).
-                    getSingleResult();
+            Editorial editorial = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Editorial.buscarPorNombre", Editorial.class).
+                    setParameter("clave", Normalizador.normalizar(nombre)).
+                    setMaxResults(1).
+                    getSingleResult());
             return editorial;
         } catch (NoResultException e) {
             return null;
@@ -124,14 +184,29 @@ public class EditorialDAO {
     }
 
     /**
-     * Método que devuelve una Lista con todos los Objetos de la tabla Editorial en la base de datos.
+     * Método que devuelve todas las Editoriales de la BD, incluidas las dadas de baja y sin ordenar. Es el listado a usar para armar mapas por nombre, que tienen que conocer todos los nombres ya tomados
+     * @return Lista con todas las Editoriales en la BD
+     */
+    public List<Editorial> listarTodasLasEditoriales() {
+        try {
+            return UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Editorial.listarTodas", Editorial.class).
+                    getResultList());
+        } catch (Exception e) {
+            System.out.println("Error listando todas las editoriales desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve una Lista con todos los Objetos de la tabla Editorial dados de alta en la base de datos, ordenados por nombre (el mismo orden con el que se imprimen).
      *
      * @return Lista con todas las Editoriales de la BD
      */
     public List<Editorial> listarEditoriales() {
         try {
-            List<Editorial> editoriales = em.createQuery("SELECT e FROM Editorial e").
-                    getResultList();
+            List<Editorial> editoriales = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Editorial.listar", Editorial.class).
+                    getResultList());
             return editoriales;
         } catch (Exception e) {
             System.out.println("Error listando a Editoriales desde el DAO");
@@ -140,4 +215,208 @@ public class EditorialDAO {
         }
     }
 
+    /**
+     * Método que devuelve una página de la tabla Editorial ordenada por nombre. Usa OFFSET, por lo que sirve para saltar a una página puntual; para recorrer páginas seguidas conviene {@link #listarEditorialesDesde(Editorial, int)}.
+     *
+     * @param pagina Número de página, empezando en 0
+     * @param tamanio Cantidad de elementos por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página con los editoriales pedidos
+     */
+    public Pagina<Editorial> listarEditoriales(int pagina, int tamanio) {
+        try {
+            int limite = Pagina.limitar(tamanio);
+            List<Editorial> editoriales = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Editorial.listar", Editorial.class).
+                    setFirstResult(Math.max(0, pagina) * limite).
+                    setMaxResults(limite + 1).
+                    getResultList());
+            return Pagina.de(editoriales, Math.max(0, pagina), limite);
+        } catch (Exception e) {
+            System.out.println("Error al listar una página de editoriales en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve la página de editoriales que sigue al Editorial recibido, ordenando por nombre (paginación por clave o keyset). A diferencia del OFFSET, el costo de cada página no crece a medida que se avanza.
+     *
+     * @param ultimo Último Editorial de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de elementos por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página con los editoriales siguientes
+     */
+    public Pagina<Editorial> listarEditorialesDesde(Editorial ultimo, int tamanio) {
+        try {
+            int limite = Pagina.limitar(tamanio);
+            List<Editorial> editoriales = UnidadDeTrabajo.consultar(em -> {
+                if (ultimo == null) {
+                    return em.createNamedQuery("Editorial.listar", Editorial.class).
+                            setMaxResults(limite + 1).
+                            getResultList();
+                }
+                return em.createNamedQuery("Editorial.listarDesde", Editorial.class).
+                        setParameter("nombre", ultimo.getNombre()).
+                        setParameter("id", ultimo.getId()).
+                        setMaxResults(limite + 1).
+                        getResultList();
+            });
+            return Pagina.de(editoriales, -1, limite);
+        } catch (Exception e) {
+            System.out.println("Error al listar editoriales por clave en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve el ID y el nombre de todos los editoriales, ordenados por nombre, como filas de solo lectura en lugar de entidades administradas
+     *
+     * @return Lista de referencias (id, nombre)
+     */
+    public List<ReferenciaDTO> listarReferenciasEditoriales() {
+        try {
+            List<ReferenciaDTO> referencias = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Editorial.listarReferencias", ReferenciaDTO.class).
+                    getResultList());
+            return referencias;
+        } catch (Exception e) {
+            System.out.println("Error al listar referencias de editoriales en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve la página de referencias (id, nombre) de editoriales que sigue a la recibida, ordenadas por nombre (paginación por clave)
+     *
+     * @param ultima Última referencia de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de elementos por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página de referencias
+     */
+    public Pagina<ReferenciaDTO> listarReferenciasEditorialesDesde(ReferenciaDTO ultima, int tamanio) {
+        try {
+            int limite = Pagina.limitar(tamanio);
+            List<ReferenciaDTO> referencias = UnidadDeTrabajo.consultar(em -> {
+                if (ultima == null) {
+                    return em.createNamedQuery("Editorial.listarReferencias", ReferenciaDTO.class).
+                            setMaxResults(limite + 1).
+                            getResultList();
+                }
+                return em.createNamedQuery("Editorial.listarReferenciasDesde", ReferenciaDTO.class).
+                        setParameter("nombre", ultima.getNombre()).
+                        setParameter("id", ultima.getId()).
+                        setMaxResults(limite + 1).
+                        getResultList();
+            });
+            return Pagina.de(referencias, -1, limite);
+        } catch (Exception e) {
+            System.out.println("Error al listar referencias de editoriales por clave en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que recorre el ID y el nombre de todos las Editoriales dados de alta, en páginas de libreria.cursor.fetch-size filas ordenadas por nombre (cada página sigue desde la última referencia de la anterior). Con esto se arman las sugerencias de nombres
+     *
+     * @param accion Acción a ejecutar con cada referencia
+     */
+    public void recorrerReferenciasEditoriales(Consumer<ReferenciaDTO> accion) {
+        try {
+            UnidadDeTrabajo.consultarAislado(em -> {
+                List<ReferenciaDTO> referencias = em.createNamedQuery("Editorial.listarReferencias", ReferenciaDTO.class).
+                        setMaxResults(FETCH_SIZE).
+                        getResultList();
+                while (!referencias.isEmpty()) {
+                    referencias.forEach(accion);
+                    if (referencias.size() < FETCH_SIZE) {
+                        break;
+                    }
+                    ReferenciaDTO ultima = referencias.get(referencias.size() - 1);
+                    referencias = em.createNamedQuery("Editorial.listarReferenciasDesde", ReferenciaDTO.class).
+                            setParameter("nombre", ultima.getNombre()).
+                            setParameter("id", ultima.getId()).
+                            setMaxResults(FETCH_SIZE).
+                            getResultList();
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            System.out.println("Error al recorrer referencias de editoriales en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve los nombres de Editoriales dadas de alta que empiezan con el texto recibido, sin ir a la base. Las sugerencias se arman la primera vez recorriendo la tabla y después las mantienen al día las escrituras de este DAO
+     *
+     * @param prefijo Comienzo del nombre, sin distinguir mayúsculas ni acentos
+     * @param cantidad Cantidad máxima de sugerencias
+     * @return Nombres en orden alfabético
+     */
+    public List<String> sugerirNombres(String prefijo, int cantidad) {
+        try {
+            cargarSugerencias();
+            return SUGERENCIAS.completar(prefijo, cantidad);
+        } catch (Exception e) {
+            System.out.println("Error al sugerir nombres de editoriales en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Descarta las sugerencias y el buscador de nombres parecidos, para cuando la tabla se modificó por fuera de este DAO. Se vuelven a armar en el próximo uso
+     */
+    public static void invalidarSugerencias() {
+        SUGERENCIAS.invalidar();
+        SIMILARES.invalidar();
+    }
+
+    /**
+     * Método que devuelve el nombre de la Editorial dada de alta más parecido al recibido (por ejemplo "García Márquez" para "Garcia Marques"), sin ir a la base. Sirve para no crear un duplicado escrito distinto
+     *
+     * @param nombre Nombre a comparar
+     * @return El nombre parecido tal como está guardado, o null si no hay ninguno
+     */
+    public String buscarNombreParecido(String nombre) {
+        try {
+            cargarSimilares();
+            return SIMILARES.buscarParecido(nombre);
+        } catch (Exception e) {
+            System.out.println("Error al buscar editorial parecida en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que arma las sugerencias de nombres y el buscador de nombres parecidos si todavía no están armados
+     */
+    public void cargarSugerencias() {
+        SUGERENCIAS.cargarSiHaceFalta(receptor -> recorrerReferenciasEditoriales(referencia -> receptor.accept(referencia.getId(), referencia.getNombre())));
+        cargarSimilares();
+    }
+
+    private void cargarSimilares() {
+        SIMILARES.cargarSiHaceFalta(receptor -> recorrerReferenciasEditoriales(referencia -> receptor.accept(referencia.getId(), referencia.getNombre())));
+    }
+
+    /**
+     * Lleva a las sugerencias la Editorial recién escrita (o la quita si quedó dada de baja) y al buscador de nombres parecidos cuando su transacción queda confirmada. Si la transacción se deshace, ninguno de los dos se toca
+     */
+    private static void sugerir(Editorial editorial) {
+        String id = editorial.getId();
+        String nombre = editorial.getNombre();
+        boolean alta = Boolean.TRUE.equals(editorial.getAlta());
+        UnidadDeTrabajo.alConfirmar(() -> {
+            if (alta) {
+                SUGERENCIAS.agregar(id, nombre);
+                SIMILARES.agregar(id, nombre);
+            } else {
+                SUGERENCIAS.quitar(id);
+                SIMILARES.quitar(id);
+            }
+        });
+    }
+
 }
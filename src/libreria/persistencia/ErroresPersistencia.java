@@ -0,0 +1,98 @@
+package libreria.persistencia;
+
+import java.sql.SQLException;
+
+/**
+ * Interpretación de los errores que devuelve la base de datos. EclipseLink envuelve la SQLException original en varias capas (RollbackException, PersistenceException, DatabaseException), así que estos métodos recorren toda la cadena de causas.
+ *
+ * @author Matias Luca Soto
+ */
+public final class ErroresPersistencia {
+
+    //ATRIBUTOS
+    private static final String ESTADO_INTEGRIDAD = "23"; // Clase SQLSTATE de las violaciones de restricciones
+    private static final int MYSQL_CLAVE_DUPLICADA = 1062;
+
+    //CONSTRUCTOR
+    private ErroresPersistencia() {
+    }
+
+    //MÉTODOS
+    /**
+     * @param error Excepción recibida al escribir en la base
+     * @return true si la causa es una fila duplicada en una clave primaria o restricción única
+     */
+    public static boolean esClaveDuplicada(Throwable error) {
+        return buscarClaveDuplicada(error) != null;
+    }
+
+    /**
+     * @param error Excepción recibida al escribir en la base
+     * @param restricciones Nombres de las restricciones únicas a buscar
+     * @return true si la causa es una fila duplicada en alguna de las restricciones indicadas
+     */
+    public static boolean violaRestriccion(Throwable error, String... restricciones) {
+        return restriccionViolada(error, restricciones) != null;
+    }
+
+    /**
+     * @param error Excepción recibida al escribir en la base
+     * @param restricciones Nombres de las restricciones únicas a buscar
+     * @return La primera de las restricciones indicadas que aparece en el error de clave duplicada, o null si no es ese el error o si se violó otra restricción
+     */
+    public static String restriccionViolada(Throwable error, String... restricciones) {
+        SQLException duplicada = buscarClaveDuplicada(error);
+        if (duplicada == null || duplicada.getMessage() == null) {
+            return null;
+        }
+        String mensaje = duplicada.getMessage().toUpperCase();
+        for (String restriccion : restricciones) {
+            if (mensaje.contains(restriccion.toUpperCase())) {
+                return restriccion;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param error Excepción recibida al escribir en la base
+     * @return true si la causa es un conflicto de bloqueo optimista: la fila cambió de versión (u otro la borró) desde que se leyó
+     */
+    public static boolean esConflictoDeVersion(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause() == causa ? null : causa.getCause()) {
+            if (causa instanceof javax.persistence.OptimisticLockException
+                    || causa instanceof org.eclipse.persistence.exceptions.OptimisticLockException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Recorre la cadena de causas hasta encontrar la SQLException de clave duplicada
+     */
+    private static SQLException buscarClaveDuplicada(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause() == causa ? null : causa.getCause()) {
+            if (causa instanceof SQLException) {
+                SQLException sql = (SQLException) causa;
+                if (sql.getErrorCode() == MYSQL_CLAVE_DUPLICADA
+                        || (sql.getSQLState() != null && sql.getSQLState().startsWith(ESTADO_INTEGRIDAD) && esUnicidad(sql.getMessage()))) {
+                    return sql;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Distingue las violaciones de unicidad de las de claves foráneas o NOT NULL, que comparten SQLSTATE en varios motores
+     */
+    private static boolean esUnicidad(String mensaje) {
+        if (mensaje == null) {
+            return false;
+        }
+        String texto = mensaje.toLowerCase();
+        return texto.contains("duplicate") || texto.contains("unique");
+    }
+
+}
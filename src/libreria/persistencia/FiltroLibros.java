@@ -0,0 +1,105 @@
+package libreria.persistencia;
+
+/**
+ * Criterios de la búsqueda combinada de Libros ({@link LibroDAO#buscarLibros(FiltroLibros, int, int)}). Cada criterio en null no filtra; los que tienen valor se combinan con AND. Por defecto trae solo los Libros dados de alta, ordenados por ISBN.
+ *
+ * @author Matias Luca Soto
+ */
+public class FiltroLibros {
+
+    /**
+     * Columnas por las que se puede ordenar el resultado. A igual valor se desempata por ISBN, así las páginas no se pisan
+     */
+    public enum Orden {
+        ISBN, TITULO, ANIO, RESTANTES
+    }
+
+    //ATRIBUTOS
+    private String nombreAutor; // Se compara normalizado, igual que las búsquedas por nombre
+    private String nombreEditorial;
+    private Integer anioDesde;
+    private Integer anioHasta;
+    private Boolean disponible; // true: con ejemplares restantes; false: sin ninguno
+    private Boolean alta = true;
+    private Orden orden = Orden.ISBN;
+    private boolean descendente;
+
+    //CONSTRUCTOR
+    /**
+     * Constructor vacio
+     */
+    public FiltroLibros() {
+    }
+
+    //GETTERS & SETTERS
+    public String getNombreAutor() {
+        return nombreAutor;
+    }
+
+    public void setNombreAutor(String nombreAutor) {
+        this.nombreAutor = nombreAutor;
+    }
+
+    public String getNombreEditorial() {
+        return nombreEditorial;
+    }
+
+    public void setNombreEditorial(String nombreEditorial) {
+        this.nombreEditorial = nombreEditorial;
+    }
+
+    public Integer getAnioDesde() {
+        return anioDesde;
+    }
+
+    public void setAnioDesde(Integer anioDesde) {
+        this.anioDesde = anioDesde;
+    }
+
+    public Integer getAnioHasta() {
+        return anioHasta;
+    }
+
+    public void setAnioHasta(Integer anioHasta) {
+        this.anioHasta = anioHasta;
+    }
+
+    public Boolean getDisponible() {
+        return disponible;
+    }
+
+    public void setDisponible(Boolean disponible) {
+        this.disponible = disponible;
+    }
+
+    /**
+     * @return true para solo los Libros dados de alta, false para solo los dados de baja, null para todos
+     */
+    public Boolean getAlta() {
+        return alta;
+    }
+
+    public void setAlta(Boolean alta) {
+        this.alta = alta;
+    }
+
+    public Orden getOrden() {
+        return orden;
+    }
+
+    /**
+     * @param orden Columna por la que ordenar. null ordena por ISBN
+     */
+    public void setOrden(Orden orden) {
+        this.orden = orden == null ? Orden.ISBN : orden;
+    }
+
+    public boolean isDescendente() {
+        return descendente;
+    }
+
+    public void setDescendente(boolean descendente) {
+        this.descendente = descendente;
+    }
+
+}
@@ -0,0 +1,54 @@
+package libreria.persistencia;
+
+import libreria.utilidades.Configuracion;
+
+/**
+ * Estrategia de generación de claves primarias para las entidades. La estrategia se elige con la propiedad libreria.id.estrategia:
+ * <ul>
+ * <li>tiempo (por defecto): 128 bits ordenados por tiempo, en 32 caracteres hexadecimales. Las claves nuevas quedan siempre al final del índice de la clave primaria, así los INSERT no reparten escrituras por todo el índice</li>
+ * <li>secuencia: número de una secuencia por entidad, de 19 dígitos, reservado en bloques de libreria.id.asignacion valores (por defecto 50) para no consultar la base en cada INSERT</li>
+ * <li>uuid: UUID aleatorio en 32 caracteres hexadecimales, sin guiones</li>
+ * </ul>
+ * Ninguna estrategia pasa de {@link #LONGITUD} caracteres, que es el ancho de las columnas de clave. Las estrategias "tiempo" y "uuid" escriben las claves con el mismo formato y son intercambiables: cambiar entre ellas no requiere migrar las claves existentes.
+ *
+ * @author Matias Luca Soto
+ */
+public interface GeneradorId {
+
+    /**
+     * Largo máximo de las claves de todas las estrategias, y ancho de las columnas de clave primaria y foránea
+     */
+    int LONGITUD = 32;
+
+    /**
+     * @param entidad Clase de la entidad que recibe la clave
+     * @return Clave nueva, distinta de todas las generadas antes
+     */
+    String generar(Class<?> entidad);
+
+    /**
+     * @param id Clave existente
+     * @return true si la clave tiene el formato que genera esta estrategia (las que no lo tienen son las que migra {@link MigracionIds})
+     */
+    boolean reconoce(String id);
+
+    /**
+     * Crea la estrategia indicada en la configuración
+     *
+     * @return Generador de claves configurado
+     */
+    static GeneradorId configurado() {
+        String estrategia = Configuracion.get("libreria.id.estrategia", "tiempo").toLowerCase();
+        switch (estrategia) {
+            case "uuid":
+                return new GeneradorIdAleatorio();
+            case "secuencia":
+                return new GeneradorIdSecuencia(Configuracion.getInt("libreria.id.asignacion", 50));
+            case "tiempo":
+                return new GeneradorIdTemporal();
+            default:
+                System.out.println("Estrategia de claves desconocida '" + estrategia + "', se usa 'tiempo'");
+                return new GeneradorIdTemporal();
+        }
+    }
+}
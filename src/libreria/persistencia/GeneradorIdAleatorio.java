@@ -0,0 +1,22 @@
+package libreria.persistencia;
+
+import java.util.UUID;
+
+/**
+ * Claves UUID aleatorias (estrategia "uuid"), escritas sin guiones: 32 caracteres hexadecimales, igual que las de la estrategia "tiempo". Las dos estrategias son intercambiables: cada una reconoce como propias las claves de la otra, así que pasar de una a otra no requiere migración (solo cambia el orden de las claves nuevas). Los UUID de 36 caracteres que se generaban antes los migra {@link MigracionIds}
+ *
+ * @author Matias Luca Soto
+ */
+final class GeneradorIdAleatorio implements GeneradorId {
+
+    @Override
+    public String generar(Class<?> entidad) {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    @Override
+    public boolean reconoce(String id) {
+        return GeneradorIdTemporal.esHexadecimal(id);
+    }
+
+}
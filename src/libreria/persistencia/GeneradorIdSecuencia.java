@@ -0,0 +1,121 @@
+package libreria.persistencia;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceException;
+import libreria.entidades.SecuenciaId;
+
+/**
+ * Claves numéricas de una secuencia por entidad (estrategia "secuencia"), escritas con 19 dígitos para que el orden del texto sea el mismo que el del número.
+ * <p>
+ * Los valores se reservan en bloques: cada proceso toma de la tabla SecuenciaId un rango de {@code asignacion} valores con un bloqueo de fila y los reparte en memoria, así solo hay un viaje a la base cada {@code asignacion} INSERT. La reserva se hace fuera del lock del generador, así un hilo que espera a la base no frena a los que todavía tienen valores de otra entidad; si dos hilos reservan a la vez, los dos bloques se encolan y se usan. Los valores de un bloque que no se llegan a usar (por ejemplo al cerrar la aplicación) se pierden.
+ *
+ * @author Matias Luca Soto
+ */
+final class GeneradorIdSecuencia implements GeneradorId {
+
+    //ATRIBUTOS
+    private static final int DIGITOS = 19;
+    private final int asignacion;
+    private final Map<String, Deque<long[]>> bloques = new HashMap<>(); // nombre -> bloques reservados {próximo, límite}, en orden
+
+    //CONSTRUCTOR
+    GeneradorIdSecuencia(int asignacion) {
+        this.asignacion = Math.max(1, asignacion);
+    }
+
+    //MÉTODOS
+    @Override
+    public String generar(Class<?> entidad) {
+        String nombre = entidad.getSimpleName();
+        while (true) {
+            Long valor = siguiente(nombre);
+            if (valor != null) {
+                return formatear(valor);
+            }
+            //SIN VALORES EN MEMORIA: SE RESERVA UN BLOQUE SIN TENER EL LOCK Y SE ENCOLA
+            long[] reservado = reservar(nombre);
+            synchronized (this) {
+                bloques.computeIfAbsent(nombre, k -> new ArrayDeque<>()).addLast(reservado);
+            }
+        }
+    }
+
+    /**
+     * @return El próximo valor de los bloques ya reservados para la entidad, o null si se agotaron
+     */
+    private synchronized Long siguiente(String nombre) {
+        Deque<long[]> reservados = bloques.get(nombre);
+        while (reservados != null && !reservados.isEmpty()) {
+            long[] bloque = reservados.peekFirst();
+            if (bloque[0] < bloque[1]) {
+                return bloque[0]++;
+            }
+            reservados.pollFirst();
+        }
+        return null;
+    }
+
+    /**
+     * Escribe el número con ceros a la izquierda hasta completar los 19 dígitos
+     */
+    private static String formatear(long valor) {
+        String numero = Long.toString(valor);
+        StringBuilder id = new StringBuilder(DIGITOS);
+        for (int i = numero.length(); i < DIGITOS; i++) {
+            id.append('0');
+        }
+        return id.append(numero).toString();
+    }
+
+    @Override
+    public boolean reconoce(String id) {
+        if (id.length() != DIGITOS) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (!Character.isDigit(id.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reserva el próximo bloque de la secuencia en una transacción propia, independiente de la que esté insertando la entidad. Si dos procesos crean la fila de la secuencia a la vez, el que pierde vuelve a intentar leyéndola.
+     */
+    private long[] reservar(String nombre) {
+        PersistenceException error = null;
+        for (int intento = 0; intento < 2; intento++) {
+            EntityManager em = ConexionPersistencia.getEntityManagerFactory().createEntityManager();
+            EntityTransaction tx = em.getTransaction();
+            try {
+                tx.begin();
+                SecuenciaId secuencia = em.find(SecuenciaId.class, nombre, LockModeType.PESSIMISTIC_WRITE);
+                if (secuencia == null) {
+                    secuencia = new SecuenciaId(nombre, 1L);
+                    em.persist(secuencia);
+                }
+                long inicio = secuencia.getSiguiente();
+                secuencia.setSiguiente(inicio + asignacion);
+                tx.commit();
+                return new long[]{inicio, inicio + asignacion};
+            } catch (PersistenceException e) {
+                error = e;
+            } finally {
+                if (tx.isActive()) {
+                    tx.rollback();
+                }
+                em.close();
+            }
+        }
+        System.out.println("Error reservando valores de la secuencia " + nombre);
+        throw error;
+    }
+
+}
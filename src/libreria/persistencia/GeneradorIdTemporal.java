@@ -0,0 +1,73 @@
+package libreria.persistencia;
+
+import java.security.SecureRandom;
+
+/**
+ * Claves de 128 bits ordenadas por tiempo (estrategia "tiempo"), escritas como 32 caracteres hexadecimales:
+ * <ul>
+ * <li>48 bits con los milisegundos desde 1970</li>
+ * <li>16 bits de contador dentro del mismo milisegundo, que arranca en un valor al azar</li>
+ * <li>64 bits al azar</li>
+ * </ul>
+ * Dentro de un mismo proceso las claves salen estrictamente crecientes, aunque el reloj retroceda; entre procesos distintos los bits al azar evitan colisiones.
+ *
+ * @author Matias Luca Soto
+ */
+final class GeneradorIdTemporal implements GeneradorId {
+
+    //ATRIBUTOS
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private final SecureRandom azar = new SecureRandom();
+    private long ultimoMilisegundo = -1;
+    private int contador;
+
+    //MÉTODOS
+    @Override
+    public synchronized String generar(Class<?> entidad) {
+        long ahora = System.currentTimeMillis();
+        if (ahora > ultimoMilisegundo) {
+            ultimoMilisegundo = ahora;
+            contador = azar.nextInt(0x8000);
+        } else if (++contador > 0xFFFF) {
+            // Se agotó el contador del milisegundo: se toma prestado el siguiente
+            ultimoMilisegundo++;
+            contador = azar.nextInt(0x8000);
+        }
+        long alto = (ultimoMilisegundo << 16) | contador;
+        char[] id = new char[32];
+        escribir(alto, id, 0);
+        escribir(azar.nextLong(), id, 16);
+        return new String(id);
+    }
+
+    @Override
+    public boolean reconoce(String id) {
+        return esHexadecimal(id);
+    }
+
+    /**
+     * @return true si la clave tiene 32 caracteres hexadecimales, el formato de las estrategias "tiempo" y "uuid"
+     */
+    static boolean esHexadecimal(String id) {
+        if (id.length() != 32) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (Character.digit(id.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Escribe un long como 16 dígitos hexadecimales a partir de la posición indicada
+     */
+    private static void escribir(long valor, char[] destino, int desde) {
+        for (int i = 15; i >= 0; i--) {
+            destino[desde + i] = HEX[(int) (valor & 0xF)];
+            valor >>>= 4;
+        }
+    }
+
+}
@@ -1,11 +1,38 @@
 package libreria.persistencia;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import javax.persistence.EntityManager;
-import javax.persistence.EntityManagerFactory;
 import javax.persistence.NoResultException;
-import javax.persistence.Persistence;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import libreria.busqueda.Autocompletado;
+import libreria.busqueda.IndiceTitulos;
+import libreria.dto.LibroResumenDTO;
+import libreria.entidades.Autor;
+import libreria.entidades.Editorial;
 import libreria.entidades.Libro;
+import libreria.utilidades.Configuracion;
+import libreria.utilidades.Normalizador;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.queries.CursoredStream;
 
 /**
  *
@@ -14,26 +41,33 @@ import libreria.entidades.Libro;
 public final class LibroDAO {
 
     //ATRIBUTOS
-    private final EntityManagerFactory emf;
-    private final EntityManager em;
+    private static final int FETCH_SIZE = Math.max(1, Configuracion.getInt("libreria.cursor.fetch-size", 500)); // Filas por viaje en los recorridos con cursor y los listados completos
 
-    //CONSTRUCTOR
-    public LibroDAO() {
-        this.emf = Persistence.createEntityManagerFactory("LibreriaPU");
-        this.em = emf.createEntityManager();
-    }
+    /* Caché de los resultados de las búsquedas por ISBN y por título normalizado (libreria.cache.libros.tamanio y .ttl en milisegundos), guardados
+    por ID. Guarda copias que no comparten nada con lo que se devuelve (tampoco el Autor ni la Editorial), así quien recibe un Libro puede modificarlo
+    sin tocar la caché. Las búsquedas sin resultado no se guardan, así un alta nunca queda tapada. Los métodos de escritura de este DAO descartan
+    por ID el Libro afectado; sus claves de búsqueda salen de los mapas junto con él */
+    private static final Map<Long, String> IDS_POR_ISBN = new ConcurrentHashMap<>();
+    private static final Map<String, String> IDS_POR_TITULO = new ConcurrentHashMap<>();
+    private static final CacheLRU<String, Libro> POR_ID = new CacheLRU<>("Libros por ISBN y título",
+            Configuracion.getInt("libreria.cache.libros.tamanio", 10000), Configuracion.getInt("libreria.cache.libros.ttl", 60000), LibroDAO::olvidarClaves);
+    private static final IndiceTitulos INDICE = IndiceTitulos.getInstancia(); // Índice y sugerencias de títulos: los mantienen al día los métodos de escritura de este DAO
+    private static final Autocompletado SUGERENCIAS = Autocompletado.TITULOS;
 
     //MÉTODOS
     /**
-     * Método void que recibe un Objeto Libro para persistirlo en la Base de Datos
+     * Método void que recibe un Objeto Libro para persistirlo en la Base de Datos. El INSERT se envía en el momento (flush), así una violación de las restricciones únicas de ISBN o título aparece acá aunque la transacción la haya abierto otro
      *
      * @param libro Libro a persistir
      */
     public void guardarLibro(Libro libro) {
         try {
-            em.getTransaction().begin();
-            em.persist(libro);
-            em.getTransaction().commit();
+            UnidadDeTrabajo.enTransaccion(em -> {
+                em.persist(libro);
+                em.flush();
+                return null;
+            });
+            indexar(libro);
         } catch (Exception e) {
             System.out.println("Error al guardar libro en el DAO");
             e.printStackTrace();
@@ -42,19 +76,58 @@ public final class LibroDAO {
     }
 
     /**
-     * Método void que recibe un Objeto Libro actualizado para aplicarle un merge en la Base de Datos
+     * Método void que recibe una colección de Libros nuevos y los persiste en la Base de Datos en lotes del tamaño configurado (libreria.lote.tamanio)
+     *
+     * @param libros Colección de Libros a persistir
+     */
+    public void guardarLibros(Collection<Libro> libros) {
+        guardarLibros(libros, UnidadDeTrabajo.TAMANIO_LOTE);
+    }
+
+    /**
+     * Método void que persiste una colección de Libros nuevos haciendo commit cada tamanioLote elementos. Los INSERT de cada lote viajan en un batch JDBC y el contexto de persistencia se limpia entre lotes, por lo que la memoria no crece con el tamaño de la colección.
+     *
+     * @param libros Colección de Libros a persistir
+     * @param tamanioLote Cantidad de libros por commit
+     */
+    public void guardarLibros(Collection<Libro> libros, int tamanioLote) {
+        try {
+            UnidadDeTrabajo.persistirEnLotes(libros, tamanioLote);
+            for (Libro libro : libros) {
+                indexar(libro);
+            }
+        } catch (Exception e) {
+            System.out.println("Error al guardar libros en lote en el DAO");
+            e.printStackTrace();
+            if (!UnidadDeTrabajo.hayTransaccion()) {
+                INDICE.invalidar(); // Los lotes anteriores al error ya tienen commit
+                SUGERENCIAS.invalidar();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Método que recibe un Objeto Libro actualizado para aplicarle un merge en la Base de Datos. Igual que en el alta, el UPDATE se envía en el momento para que una violación de las restricciones únicas o un conflicto de versión (OptimisticLockException) aparezcan acá
      *
      * @param libro Libro con sus atributos ya actualizados
+     * @return El Libro ya actualizado, con su nueva versión
      */
-    public void modificarLibro(Libro libro) {
+    public Libro modificarLibro(Libro libro) {
         try {
-            em.getTransaction().begin();
-            em.merge(libro);
-            em.getTransaction().commit();
+            Libro guardado = UnidadDeTrabajo.enTransaccion(em -> {
+                Libro actualizado = em.merge(libro);
+                em.flush();
+                return actualizado;
+            });
+            indexar(guardado);
+            return guardado;
         } catch (Exception e) {
             System.out.println("Error al modificar libro en el DAO");
             e.printStackTrace();
             throw e;
+        } finally {
+            descartarId(libro.getId());
         }
     }
 
@@ -65,17 +138,80 @@ public final class LibroDAO {
      */
     public void eliminarLibroPorId(String id) {
         try {
-            Libro libro = buscarLibroPorId(id);
-            em.getTransaction().begin();
-            em.remove(libro);
-            em.getTransaction().commit();
+            UnidadDeTrabajo.enTransaccion(em -> {
+                Libro libro = buscarLibroPorId(id);
+                em.remove(libro);
+                return null;
+            });
+            UnidadDeTrabajo.alConfirmar(() -> {
+                INDICE.quitar(id);
+                SUGERENCIAS.quitar(id);
+            });
         } catch (Exception e) {
             System.out.println("Error eliminando libro desde el DAO");
             e.printStackTrace();
             throw e;
+        } finally {
+            descartarId(id);
         }
     }
 
+    /**
+     * Método que presta ejemplares de un Libro con un único UPDATE condicional: suma a los prestados, resta a los restantes e incrementa la versión, solo si el Libro está dado de alta y le quedan suficientes ejemplares. No lee el Libro ni bloquea la tabla, y dos puestos que prestan a la vez nunca dejan los restantes en negativo
+     *
+     * @param isbn ISBN del Libro
+     * @param cantidad Cantidad de ejemplares a prestar
+     * @return true si se registró el préstamo; false si no hay un Libro dado de alta con ese ISBN y suficientes ejemplares restantes
+     */
+    public boolean prestarLibro(Long isbn, int cantidad) {
+        return actualizarEjemplares("Libro.prestar", isbn, cantidad);
+    }
+
+    /**
+     * Método que devuelve ejemplares prestados de un Libro con un único UPDATE condicional, que solo se aplica si tiene al menos esa cantidad de ejemplares prestados
+     *
+     * @param isbn ISBN del Libro
+     * @param cantidad Cantidad de ejemplares a devolver
+     * @return true si se registró la devolución; false si no hay un Libro con ese ISBN y suficientes ejemplares prestados
+     */
+    public boolean devolverLibro(Long isbn, int cantidad) {
+        return actualizarEjemplares("Libro.devolver", isbn, cantidad);
+    }
+
+    /**
+     * Método que da de alta o de baja, en un único UPDATE, todos los Libros de un Autor. Solo toca los que no están ya en ese estado, incrementando su versión
+     *
+     * @param idAutor ID del Autor
+     * @param alta true para darlos de alta, false para darlos de baja
+     * @return Cantidad de Libros que cambiaron de estado
+     */
+    public int cambiarAltaPorAutor(String idAutor, boolean alta) {
+        return cambiarAlta(em -> em.createNamedQuery("Libro.cambiarAltaPorAutor").setParameter("id", idAutor), alta);
+    }
+
+    /**
+     * Método que da de alta o de baja, en un único UPDATE, todos los Libros de una Editorial
+     *
+     * @param idEditorial ID de la Editorial
+     * @param alta true para darlos de alta, false para darlos de baja
+     * @return Cantidad de Libros que cambiaron de estado
+     */
+    public int cambiarAltaPorEditorial(String idEditorial, boolean alta) {
+        return cambiarAlta(em -> em.createNamedQuery("Libro.cambiarAltaPorEditorial").setParameter("id", idEditorial), alta);
+    }
+
+    /**
+     * Método que da de alta o de baja, en un único UPDATE, todos los Libros publicados entre dos años (ambos incluidos)
+     *
+     * @param desde Primer año del rango
+     * @param hasta Último año del rango
+     * @param alta true para darlos de alta, false para darlos de baja
+     * @return Cantidad de Libros que cambiaron de estado
+     */
+    public int cambiarAltaPorAnios(int desde, int hasta, boolean alta) {
+        return cambiarAlta(em -> em.createNamedQuery("Libro.cambiarAltaPorAnios").setParameter("desde", desde).setParameter("hasta", hasta), alta);
+    }
+
     /**
      * Método que devuelve un Objeto Libro resultado de buscar un id pasado como parámetro en la BS. Utiliza el método .find(Tipo de Clase, PM) para encontrar un Objeto específico y devolverlo en el método
      *
@@ -84,7 +220,7 @@ public final class LibroDAO {
      */
     public Libro buscarLibroPorId(String id) {
         try {
-            Libro libro = em.find(Libro.class, id);
+            Libro libro = UnidadDeTrabajo.consultar(em -> em.find(Libro.class, id));
             return libro;
         } catch (Exception e) {
             System.out.println("Error al buscar libro por ISBN en el DAO");
@@ -94,43 +230,140 @@ public final class LibroDAO {
     }
 
     /**
-     * Método que devuelve un Objeto Libro encontrado en la BS según el Long isbn enviado como argumento. Ejecuta un query de JPQA para buscar el Libro según el código ISBN
+     * Método que lee un Libro por su id directamente de la BD, sin pasar por las cachés ni por el contexto de persistencia. Se usa para reintentar una modificación que chocó con otra
+     *
+     * @param id Primary Key del Libro a buscar
+     * @return El estado actual en la base, o null si ya no existe
+     */
+    public Libro buscarLibroActualizado(String id) {
+        try {
+            return UnidadDeTrabajo.consultar(em -> em.find(Libro.class, id, Collections.<String, Object>singletonMap(QueryHints.REFRESH, HintValues.TRUE)));
+        } catch (Exception e) {
+            System.out.println("Error al releer libro por ID en el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve un Objeto Libro encontrado en la BS según el Long isbn enviado como argumento. Ejecuta un query de JPQA para buscar el Libro según el código ISBN. Fuera de una transacción el Libro encontrado queda en la caché (las búsquedas sin resultado no se guardan)
      *
      * @param isbn Código de tipo Long que corresponda al Libro a buscar
      * @return Libro con ese isbn de ser encontrado. Sino, null
      */
     public Libro buscarLibroPorIsbn(Long isbn) {
         try {
-            Libro libro = (Libro) em.createQuery("SELECT l "
-                    + "FROM Libro l "
-                    + "WHERE l.isbn = :isbn").
-                    setParameter("isbn", isbn).
-                    getSingleResult();
+            boolean usarCache = !UnidadDeTrabajo.hayTransaccion();
+            if (usarCache) {
+                Libro guardado = enCachePorIsbn(isbn);
+                if (guardado != null) {
+                    return guardado;
+                }
+            }
+            Libro libro = UnidadDeTrabajo.consultar(em -> unico(em.createNamedQuery("Libro.buscarPorIsbn", Libro.class).
+                    setParameter("isbn", isbn)));
+            if (usarCache) {
+                recordar(libro);
+            }
             return libro;
-        } catch (NoResultException e) {
-            return null;
         } catch (Exception e) {
-            System.out.println("Error buscando libro por título desde el DAO");
+            System.out.println("Error buscando libro por ISBN desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que trae en una sola consulta los Libros dados de alta con los ISBN recibidos. Los Libros que devuelve son de solo lectura
+     *
+     * @param isbns ISBN de los Libros a buscar
+     * @return Los Libros encontrados, sin un orden en particular (los ISBN que no existen o están dados de baja no aparecen)
+     */
+    public List<Libro> buscarLibrosPorIsbns(Collection<Long> isbns) {
+        try {
+            if (isbns.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Libro.buscarPorIsbns", Libro.class).
+                    setParameter("isbns", isbns).
+                    getResultList());
+        } catch (Exception e) {
+            System.out.println("Error buscando libros por varios ISBN desde el DAO");
             e.printStackTrace();
             throw e;
         }
     }
 
     /**
-     * Método que busca un Libro en la BD según el String titulo pasado como argumento y lo devuelve. Crea una sentencia query de JPQA para buscar el atributo del Objeto.
+     * Método que busca Libros cuyo título contiene el texto recibido, en cualquier parte, usando el índice de títulos en memoria. La primera búsqueda arma el índice recorriendo la tabla; después se mantiene al día con las escrituras de este DAO
+     *
+     * @param texto Texto a buscar (al menos 2 caracteres)
+     * @param pagina Número de página, empezando en 0
+     * @param tamanio Cantidad de Libros por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página con los ISBN encontrados, ordenados por relevancia
+     */
+    public Pagina<Long> buscarIsbnsPorTitulo(String texto, int pagina, int tamanio) {
+        try {
+            INDICE.cargarSiHaceFalta(this::recorrerTitulos);
+            return INDICE.buscar(texto, pagina, tamanio);
+        } catch (Exception e) {
+            System.out.println("Error buscando libros por parte del título desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve los títulos de Libros dados de alta que empiezan con el texto recibido, sin ir a la base. Las sugerencias se arman la primera vez recorriendo la tabla y después las mantienen al día las escrituras de este DAO
+     *
+     * @param prefijo Comienzo del título, sin distinguir mayúsculas ni acentos
+     * @param cantidad Cantidad máxima de sugerencias
+     * @return Títulos en orden alfabético
+     */
+    public List<String> sugerirTitulos(String prefijo, int cantidad) {
+        try {
+            cargarSugerencias();
+            return SUGERENCIAS.completar(prefijo, cantidad);
+        } catch (Exception e) {
+            System.out.println("Error sugiriendo títulos de libros desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que arma las sugerencias de títulos si todavía no están armadas
+     */
+    public void cargarSugerencias() {
+        SUGERENCIAS.cargarSiHaceFalta(receptor -> recorrerTitulos((id, isbn, titulo, alta) -> {
+            if (alta) {
+                receptor.accept(id, titulo);
+            }
+        }));
+    }
+
+    /**
+     * Método que busca un Libro en la BD según el String titulo pasado como argumento y lo devuelve. Compara contra la columna indexada del título normalizado, así no distingue mayúsculas, acentos ni espacios de más. Fuera de una transacción el Libro encontrado queda en la caché, accesible por su título normalizado
      * @param titulo String correspondiente al titulo del Libro
      * @return El Libro buscado de ser encontrado. Sino, null
      */
     public Libro buscarLibroPorTitulo(String titulo) {
         try {
-            Libro libro = (Libro) em.createQuery("SELECT l "
-                    + "FROM Libro l "
-                    + "WHERE l.titulo LIKE :titulo").
-                    setParameter("titulo", titulo).
-                    getSingleResult();
+            boolean usarCache = !UnidadDeTrabajo.hayTransaccion();
+            String clave = Normalizador.normalizar(titulo);
+            if (usarCache) {
+                Libro guardado = enCachePorTitulo(clave);
+                if (guardado != null) {
+                    return guardado;
+                }
+            }
+            Libro libro = UnidadDeTrabajo.consultar(em -> unico(em.createNamedQuery("Libro.buscarPorTitulo", Libro.class).
+                    setParameter("clave", clave).
+                    setMaxResults(1)));
+            if (usarCache) {
+                recordar(libro);
+            }
             return libro;
-        } catch (NoResultException e) {
-            return null;
         } catch (Exception e) {
             System.out.println("Error buscando libro por título desde el DAO");
             e.printStackTrace();
@@ -139,7 +372,41 @@ public final class LibroDAO {
     }
 
     /**
-     * Método que busca Libros matcheados con el String nombre pasado como argumento del atributo Autor del Libro y devuelve el o los Libros encontrados en una Lista.
+     * Método que busca, en una sola consulta, un Libro que ya tenga el ISBN o el título recibidos. Antes de ir a la base mira la caché por ISBN y por título: si ya tiene un Libro con alguno de esos valores, no hace falta la consulta. Sirve también dentro de una transacción, porque solo lee de las cachés y no guarda nada en ellas.
+     * @param isbn ISBN del Libro a registrar
+     * @param titulo Título del Libro a registrar
+     * @return Un Libro con ese ISBN (preferentemente) o con ese título, o null si no hay duplicados
+     */
+    public Libro buscarDuplicado(Long isbn, String titulo) {
+        try {
+            Libro porIsbn = enCachePorIsbn(isbn);
+            if (porIsbn != null) {
+                return porIsbn;
+            }
+            Libro porTitulo = enCachePorTitulo(Normalizador.normalizar(titulo));
+            if (porTitulo != null) {
+                return porTitulo;
+            }
+            List<Libro> duplicados = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Libro.buscarDuplicados", Libro.class).
+                    setParameter("isbn", isbn).
+                    setParameter("clave", Normalizador.normalizar(titulo)).
+                    setMaxResults(2).
+                    getResultList());
+            for (Libro duplicado : duplicados) {
+                if (duplicado.getIsbn().equals(isbn)) {
+                    return duplicado;
+                }
+            }
+            return duplicados.isEmpty() ? null : duplicados.get(0);
+        } catch (Exception e) {
+            System.out.println("Error buscando libros duplicados desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que busca Libros matcheados con el String nombre pasado como argumento del atributo Autor del Libro y devuelve el o los Libros encontrados en una Lista. El nombre se compara normalizado, sin distinguir mayúsculas ni acentos.
      * @param nombre nombre del autor de los libros a buscar
      * @return Lista con todos los libros encontrados. Si no se encontró ninguno, la lista estará vacia
      */
@@ -147,11 +414,9 @@ public final class LibroDAO {
 
         try {
 
-            List<Libro> libros = em.createQuery("SELECT l "
-                    + "FROM Libro l "
-                    + "WHERE l.autor.nombre LIKE :nombre")
-                    .setParameter("nombre", nombre)
-                    .getResultList();
+            List<Libro> libros = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Libro.buscarPorAutor", Libro.class)
+                    .setParameter("clave", Normalizador.normalizar(nombre))
+                    .getResultList());
             return libros;
 
         } catch (Exception e) {
@@ -162,18 +427,16 @@ public final class LibroDAO {
     }
 
     /**
-     * Método que busca libros matcheados con el nombre de editorial pasado como argumento y los devuelve dentro de una Lista.
+     * Método que busca libros matcheados con el nombre de editorial pasado como argumento y los devuelve dentro de una Lista. El nombre se compara normalizado, sin distinguir mayúsculas ni acentos.
      * @param nombre nombre de la editorial 
      * @return Lista con todos los libros encontrados. Si no se encontró ninguno, se devuleve vacia
      */
     public List<Libro> buscarLibrosPorEditorial(String nombre) {
         try {
 
-            List<Libro> libros = em.createQuery("SELECT l "
-                    + "FROM Libro l "
-                    + "WHERE l.editorial.nombre LIKE :nombre")
-                    .setParameter("nombre", nombre)
-                    .getResultList();
+            List<Libro> libros = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Libro.buscarPorEditorial", Libro.class)
+                    .setParameter("clave", Normalizador.normalizar(nombre))
+                    .getResultList());
             return libros;
 
         } catch (Exception e) {
@@ -184,13 +447,14 @@ public final class LibroDAO {
     }
 
     /**
-     * Método que devuelve una Lista con todos los Objetos de la tabla Libro en la base de datos.
+     * Método que devuelve una Lista con todos los Objetos de la tabla Libro dados de alta en la base de datos.
      * @return Lista con todos los Libros en la BD
      */
     public List<Libro> listarLibros() {
         try {
-            List<Libro> libros = em.createQuery("SELECT l FROM Libro l").
-                    getResultList();
+            List<Libro> libros = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Libro.listar", Libro.class).
+                    setHint(QueryHints.JDBC_FETCH_SIZE, FETCH_SIZE).
+                    getResultList());
             return libros;
         } catch (Exception e) {
             System.out.println("Error listando a los libros desde el DAO");
@@ -198,4 +462,445 @@ public final class LibroDAO {
             throw e;
         }
     }
+
+    /**
+     * Método que devuelve una página de los Libros dados de alta, ordenada por ISBN. Usa OFFSET, por lo que sirve para saltar a una página puntual; para recorrer páginas seguidas conviene {@link #listarLibrosDesde(Long, int)}.
+     *
+     * @param pagina Número de página, empezando en 0
+     * @param tamanio Cantidad de Libros por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página con los Libros pedidos
+     */
+    public Pagina<Libro> listarLibros(int pagina, int tamanio) {
+        try {
+            int limite = Pagina.limitar(tamanio);
+            List<Libro> libros = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Libro.listarActivosPorIsbn", Libro.class).
+                    setFirstResult(Math.max(0, pagina) * limite).
+                    setMaxResults(limite + 1).
+                    getResultList());
+            return Pagina.de(libros, Math.max(0, pagina), limite);
+        } catch (Exception e) {
+            System.out.println("Error listando una página de libros desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve la página de Libros dados de alta con ISBN mayor al recibido, ordenados por ISBN (paginación por clave o keyset). A diferencia del OFFSET, el costo de cada página no crece a medida que se avanza.
+     *
+     * @param ultimoIsbn ISBN del último Libro de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de Libros por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página con los Libros siguientes
+     */
+    public Pagina<Libro> listarLibrosDesde(Long ultimoIsbn, int tamanio) {
+        try {
+            int limite = Pagina.limitar(tamanio);
+            List<Libro> libros = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Libro.listarDesde", Libro.class).
+                    setParameter("isbn", ultimoIsbn == null ? Long.MIN_VALUE : ultimoIsbn).
+                    setMaxResults(limite + 1).
+                    getResultList());
+            return Pagina.de(libros, -1, limite);
+        } catch (Exception e) {
+            System.out.println("Error listando libros por clave desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que devuelve la página de resúmenes de Libros dados de alta con ISBN mayor al recibido, ordenados por ISBN. Solo trae las columnas que muestran los listados (ISBN, título, autor, editorial y restantes), sin armar entidades.
+     *
+     * @param ultimoIsbn ISBN del último Libro de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de Libros por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página de resúmenes
+     */
+    public Pagina<LibroResumenDTO> listarResumenesLibrosDesde(Long ultimoIsbn, int tamanio) {
+        try {
+            int limite = Pagina.limitar(tamanio);
+            List<LibroResumenDTO> resumenes = UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Libro.listarResumenesDesde", LibroResumenDTO.class).
+                    setParameter("isbn", ultimoIsbn == null ? Long.MIN_VALUE : ultimoIsbn).
+                    setMaxResults(limite + 1).
+                    getResultList());
+            return Pagina.de(resumenes, -1, limite);
+        } catch (Exception e) {
+            System.out.println("Error listando resúmenes de libros desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que cuenta los Libros guardados en la BD
+     * @return Cantidad de Libros
+     */
+    public long contarLibros() {
+        try {
+            return UnidadDeTrabajo.consultar(em -> em.createNamedQuery("Libro.contar", Long.class).getSingleResult());
+        } catch (Exception e) {
+            System.out.println("Error contando libros desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que busca Libros combinando los criterios recibidos (Autor, Editorial, rango de años, disponibilidad y alta) en una única consulta parametrizada armada con la Criteria API, ordenada y paginada en la base. Los valores viajan como parámetros, así la sentencia es la misma para cualquier valor y la base reutiliza su plan.
+     * <p>
+     * La página informa el total de resultados. Si la página pedida es la última, el total sale de lo que trajo; si no, se cuenta con un COUNT de las mismas condiciones, que solo une Autor o Editorial cuando se filtra por ellos.
+     *
+     * @param filtro Criterios de búsqueda y orden
+     * @param pagina Número de página, empezando en 0
+     * @param tamanio Cantidad de Libros por página (como máximo {@link Pagina#TAMANIO_MAXIMO})
+     * @return Página con los Libros encontrados y el total
+     */
+    public Pagina<Libro> buscarLibros(FiltroLibros filtro, int pagina, int tamanio) {
+        try {
+            int limite = Pagina.limitar(tamanio);
+            int numero = Math.max(0, pagina);
+            return UnidadDeTrabajo.consultar(em -> {
+
+                //PÁGINA PEDIDA: TRAE EL AUTOR Y LA EDITORIAL EN EL MISMO SELECT, COMO LAS CONSULTAS CON NOMBRE
+                CriteriaBuilder cb = em.getCriteriaBuilder();
+                CriteriaQuery<Libro> consulta = cb.createQuery(Libro.class);
+                Root<Libro> libro = consulta.from(Libro.class);
+                @SuppressWarnings("unchecked")
+                Join<Libro, Autor> autor = (Join<Libro, Autor>) libro.<Libro, Autor>fetch("autor");
+                @SuppressWarnings("unchecked")
+                Join<Libro, Editorial> editorial = (Join<Libro, Editorial>) libro.<Libro, Editorial>fetch("editorial");
+                Map<String, Object> parametros = new HashMap<>();
+                consulta.select(libro).
+                        where(condiciones(cb, libro, autor, editorial, filtro, parametros)).
+                        orderBy(orden(cb, libro, filtro));
+                TypedQuery<Libro> query = em.createQuery(consulta).
+                        setHint(QueryHints.READ_ONLY, HintValues.TRUE).
+                        setFirstResult(numero * limite).
+                        setMaxResults(limite + 1);
+                parametros.forEach(query::setParameter);
+                Pagina<Libro> resultado = Pagina.de(query.getResultList(), numero, limite);
+
+                //TOTAL: EN LA ÚLTIMA PÁGINA SE DEDUCE SIN OTRA CONSULTA
+                if (!resultado.isHayMas() && (numero == 0 || !resultado.isEmpty())) {
+                    return resultado.conTotal((long) numero * limite + resultado.getElementos().size());
+                }
+                CriteriaQuery<Long> cuenta = cb.createQuery(Long.class);
+                Root<Libro> contado = cuenta.from(Libro.class);
+                parametros.clear();
+                cuenta.select(cb.count(contado)).
+                        where(condiciones(cb, contado,
+                                filtro.getNombreAutor() == null ? null : contado.<Libro, Autor>join("autor"),
+                                filtro.getNombreEditorial() == null ? null : contado.<Libro, Editorial>join("editorial"),
+                                filtro, parametros));
+                TypedQuery<Long> queryCuenta = em.createQuery(cuenta);
+                parametros.forEach(queryCuenta::setParameter);
+                return resultado.conTotal(queryCuenta.getSingleResult());
+            });
+        } catch (Exception e) {
+            System.out.println("Error buscando libros por criterios desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que recorre el ISBN y el título de todos los Libros de la BD sin armar las entidades completas, en páginas de libreria.cursor.fetch-size filas ordenadas por ISBN (cada página sigue desde el último ISBN de la anterior, usando el índice único). Lo usa la importación masiva para armar su filtro de duplicados sin tener toda la tabla en memoria.
+     * @param accion Acción a ejecutar con el ISBN y el título de cada Libro
+     * @return Cantidad de Libros recorridos
+     */
+    public long recorrerIsbnsYTitulos(BiConsumer<Long, String> accion) {
+        try {
+            return UnidadDeTrabajo.consultarAislado(em -> {
+                long cantidad = 0;
+                Long ultimoIsbn = Long.MIN_VALUE;
+                List<Object[]> filas;
+                do {
+                    filas = em.createNamedQuery("Libro.listarIsbnsYTitulosDesde", Object[].class).
+                            setParameter("isbn", ultimoIsbn).
+                            setHint(QueryHints.JDBC_FETCH_SIZE, FETCH_SIZE).
+                            setMaxResults(FETCH_SIZE).
+                            getResultList();
+                    for (Object[] fila : filas) {
+                        ultimoIsbn = (Long) fila[0];
+                        accion.accept(ultimoIsbn, (String) fila[1]);
+                        cantidad++;
+                    }
+                } while (filas.size() == FETCH_SIZE);
+                return cantidad;
+            });
+        } catch (Exception e) {
+            System.out.println("Error recorriendo ISBN y títulos desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que recorre el ID, ISBN, título y alta de todos los Libros de la BD, por páginas igual que {@link #recorrerIsbnsYTitulos(BiConsumer)}. Con esto se arma el índice de títulos
+     * @param receptor Receptor de los datos de cada Libro
+     */
+    public void recorrerTitulos(IndiceTitulos.Receptor receptor) {
+        try {
+            UnidadDeTrabajo.consultarAislado(em -> {
+                Long ultimoIsbn = Long.MIN_VALUE;
+                List<Object[]> filas;
+                do {
+                    filas = em.createNamedQuery("Libro.listarParaIndiceDesde", Object[].class).
+                            setParameter("isbn", ultimoIsbn).
+                            setHint(QueryHints.JDBC_FETCH_SIZE, FETCH_SIZE).
+                            setMaxResults(FETCH_SIZE).
+                            getResultList();
+                    for (Object[] fila : filas) {
+                        ultimoIsbn = (Long) fila[1];
+                        receptor.recibir((String) fila[0], ultimoIsbn, (String) fila[2], Boolean.TRUE.equals(fila[3]));
+                    }
+                } while (filas.size() == FETCH_SIZE);
+                return null;
+            });
+        } catch (Exception e) {
+            System.out.println("Error recorriendo los títulos desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que recorre todos los Libros de la BD con un cursor de base de datos, entregándolos de a uno a la acción recibida. Las filas se traen de a libreria.cursor.fetch-size por viaje y el contexto de persistencia se libera cada esa cantidad de Libros, así la memoria usada no depende del tamaño de la tabla. Pensado para reportes, exportaciones y chequeos de consistencia.
+     * @param accion Acción a ejecutar con cada Libro. Los Libros que recibe quedan desconectados del EntityManager
+     * @return Cantidad de Libros recorridos
+     */
+    public long recorrerLibros(Consumer<? super Libro> accion) {
+        try {
+            return UnidadDeTrabajo.consultarAislado(em -> {
+                CursoredStream cursor = (CursoredStream) em.createNamedQuery("Libro.listarPorIsbn").
+                        setHint(QueryHints.CURSOR, true).
+                        setHint(QueryHints.CURSOR_PAGE_SIZE, FETCH_SIZE).
+                        setHint(QueryHints.JDBC_FETCH_SIZE, FETCH_SIZE).
+                        setHint(QueryHints.READ_ONLY, true).
+                        getSingleResult();
+                long cantidad = 0;
+                try {
+                    while (cursor.hasNext()) {
+                        accion.accept((Libro) cursor.next());
+                        cantidad++;
+                        if (cantidad % FETCH_SIZE == 0) {
+                            cursor.releasePrevious();
+                            em.clear();
+                        }
+                    }
+                } finally {
+                    cursor.close();
+                }
+                return cantidad;
+            });
+        } catch (Exception e) {
+            System.out.println("Error recorriendo los libros desde el DAO");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Condiciones de {@link #buscarLibros(FiltroLibros, int, int)}, una por cada criterio con valor. Cada valor se registra como parámetro con nombre en el mapa recibido
+     */
+    private static Predicate[] condiciones(CriteriaBuilder cb, Root<Libro> libro, From<?, Autor> autor, From<?, Editorial> editorial, FiltroLibros filtro, Map<String, Object> parametros) {
+        List<Predicate> condiciones = new ArrayList<>();
+        if (filtro.getNombreAutor() != null) {
+            condiciones.add(cb.equal(autor.get("nombreClave"), cb.parameter(String.class, "autor")));
+            parametros.put("autor", Normalizador.normalizar(filtro.getNombreAutor()));
+        }
+        if (filtro.getNombreEditorial() != null) {
+            condiciones.add(cb.equal(editorial.get("nombreClave"), cb.parameter(String.class, "editorial")));
+            parametros.put("editorial", Normalizador.normalizar(filtro.getNombreEditorial()));
+        }
+        if (filtro.getAnioDesde() != null) {
+            condiciones.add(cb.greaterThanOrEqualTo(libro.<Integer>get("anio"), cb.parameter(Integer.class, "desde")));
+            parametros.put("desde", filtro.getAnioDesde());
+        }
+        if (filtro.getAnioHasta() != null) {
+            condiciones.add(cb.lessThanOrEqualTo(libro.<Integer>get("anio"), cb.parameter(Integer.class, "hasta")));
+            parametros.put("hasta", filtro.getAnioHasta());
+        }
+        if (filtro.getDisponible() != null) {
+            Path<Integer> restantes = libro.get("ejemplaresRestantes");
+            condiciones.add(filtro.getDisponible() ? cb.gt(restantes, 0) : cb.le(restantes, 0));
+        }
+        if (filtro.getAlta() != null) {
+            condiciones.add(cb.equal(libro.get("alta"), cb.parameter(Boolean.class, "alta")));
+            parametros.put("alta", filtro.getAlta());
+        }
+        return condiciones.toArray(new Predicate[0]);
+    }
+
+    /**
+     * Orden de {@link #buscarLibros(FiltroLibros, int, int)}: la columna elegida y, para desempatar, el ISBN (único), así cada Libro cae siempre en la misma página
+     */
+    private static List<Order> orden(CriteriaBuilder cb, Root<Libro> libro, FiltroLibros filtro) {
+        List<Order> orden = new ArrayList<>();
+        Path<?> isbn = libro.get("isbn");
+        switch (filtro.getOrden()) {
+            case TITULO:
+                orden.add(filtro.isDescendente() ? cb.desc(libro.get("titulo")) : cb.asc(libro.get("titulo")));
+                break;
+            case ANIO:
+                orden.add(filtro.isDescendente() ? cb.desc(libro.get("anio")) : cb.asc(libro.get("anio")));
+                break;
+            case RESTANTES:
+                orden.add(filtro.isDescendente() ? cb.desc(libro.get("ejemplaresRestantes")) : cb.asc(libro.get("ejemplaresRestantes")));
+                break;
+            default:
+                break;
+        }
+        orden.add(filtro.isDescendente() ? cb.desc(isbn) : cb.asc(isbn));
+        return orden;
+    }
+
+    /**
+     * @return Tamaño, aciertos y fallos de las cachés de búsqueda por ISBN y por título
+     */
+    public static String estadisticasCache() {
+        return POR_ID.toString();
+    }
+
+    /**
+     * Vacía las cachés de búsqueda por ISBN y por título y descarta el índice de títulos, para cuando la tabla se modificó por fuera de este DAO
+     */
+    public static void invalidarCache() {
+        POR_ID.clear();
+        IDS_POR_ISBN.clear();
+        IDS_POR_TITULO.clear();
+        INDICE.invalidar();
+        SUGERENCIAS.invalidar();
+    }
+
+    /**
+     * Ejecuta uno de los UPDATE de ejemplares y descarta de las cachés el Libro afectado
+     */
+    private static boolean actualizarEjemplares(String consulta, Long isbn, int cantidad) {
+        try {
+            int filas = UnidadDeTrabajo.enTransaccion(em -> em.createNamedQuery(consulta).
+                    setParameter("isbn", isbn).
+                    setParameter("cantidad", cantidad).
+                    executeUpdate());
+            return filas > 0;
+        } catch (Exception e) {
+            System.out.println("Error actualizando los ejemplares del libro desde el DAO");
+            e.printStackTrace();
+            throw e;
+        } finally {
+            descartarIsbn(isbn);
+        }
+    }
+
+    /**
+     * Ejecuta uno de los UPDATE masivos de alta. Como no se sabe qué Libros tocó, vacía las cachés de búsqueda completas
+     */
+    private static int cambiarAlta(Function<EntityManager, Query> consulta, boolean alta) {
+        try {
+            return UnidadDeTrabajo.enTransaccion(em -> consulta.apply(em).
+                    setParameter("alta", alta).
+                    executeUpdate());
+        } catch (Exception e) {
+            System.out.println("Error cambiando el alta de los libros desde el DAO");
+            e.printStackTrace();
+            throw e;
+        } finally {
+            invalidarCache();
+        }
+    }
+
+    /**
+     * Devuelve el único resultado de la consulta, o null si no hay ninguno
+     */
+    private static Libro unico(TypedQuery<Libro> consulta) {
+        try {
+            return consulta.getSingleResult();
+        } catch (NoResultException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lleva al índice y a las sugerencias de títulos un Libro recién escrito, cuando su transacción queda confirmada (los valores se toman ahora: la entidad puede cambiar antes del commit)
+     */
+    private static void indexar(Libro libro) {
+        String id = libro.getId();
+        Long isbn = libro.getIsbn();
+        String titulo = libro.getTitulo();
+        boolean alta = Boolean.TRUE.equals(libro.getAlta());
+        UnidadDeTrabajo.alConfirmar(() -> {
+            INDICE.agregar(id, isbn, titulo, alta);
+            if (alta) {
+                SUGERENCIAS.agregar(id, titulo);
+            } else {
+                SUGERENCIAS.quitar(id);
+            }
+        });
+    }
+
+    /**
+     * @return Copia del Libro guardado con ese ISBN, o null si no está en la caché
+     */
+    private static Libro enCachePorIsbn(Long isbn) {
+        Libro guardado = POR_ID.get(isbn == null ? null : IDS_POR_ISBN.get(isbn));
+        return guardado != null && guardado.getIsbn().equals(isbn) ? copiar(guardado) : null;
+    }
+
+    /**
+     * @return Copia del Libro guardado con ese título normalizado, o null si no está en la caché
+     */
+    private static Libro enCachePorTitulo(String clave) {
+        Libro guardado = POR_ID.get(IDS_POR_TITULO.get(clave));
+        return guardado != null && clave.equals(Normalizador.normalizar(guardado.getTitulo())) ? copiar(guardado) : null;
+    }
+
+    /**
+     * Guarda en la caché una copia del Libro leído, accesible por su ISBN y por su título normalizado
+     */
+    private static void recordar(Libro libro) {
+        if (libro == null) {
+            return;
+        }
+        POR_ID.put(libro.getId(), copiar(libro)); // Primero el Libro: si reemplaza a uno viejo, se olvidan las claves viejas y no las nuevas
+        IDS_POR_ISBN.put(libro.getIsbn(), libro.getId());
+        IDS_POR_TITULO.put(Normalizador.normalizar(libro.getTitulo()), libro.getId());
+    }
+
+    /**
+     * Saca de los mapas de claves las que apuntan a un Libro que salió de la caché (si no fueron tomadas ya por otro Libro)
+     */
+    private static void olvidarClaves(Libro guardado) {
+        IDS_POR_ISBN.remove(guardado.getIsbn(), guardado.getId());
+        IDS_POR_TITULO.remove(Normalizador.normalizar(guardado.getTitulo()), guardado.getId());
+    }
+
+    /**
+     * Copia el Libro junto con su Autor y su Editorial, para que la caché y quien lo recibe no compartan ningún objeto
+     */
+    private static Libro copiar(Libro original) {
+        Libro copia = new Libro(original);
+        if (original.getAutor() != null) {
+            copia.setAutor(new Autor(original.getAutor()));
+        }
+        if (original.getEditorial() != null) {
+            copia.setEditorial(new Editorial(original.getEditorial()));
+        }
+        return copia;
+    }
+
+    /**
+     * Descarta de la caché el Libro con ese ISBN
+     */
+    private static void descartarIsbn(Long isbn) {
+        String id = isbn == null ? null : IDS_POR_ISBN.get(isbn);
+        if (id != null) {
+            POR_ID.remove(id);
+        }
+    }
+
+    /**
+     * Descarta de la caché el Libro con ese ID, con todas sus claves de búsqueda
+     */
+    private static void descartarId(String id) {
+        POR_ID.remove(id);
+    }
+
 }
@@ -0,0 +1,155 @@
+package libreria.persistencia;
+
+import java.util.ArrayList;
+import java.util.List;
+import libreria.entidades.Autor;
+import libreria.entidades.Editorial;
+import libreria.entidades.Libro;
+
+/**
+ * Migra las claves primarias existentes a la estrategia configurada en {@link GeneradorId}: cada fila cuya clave no tiene el formato de la estrategia actual (por ejemplo los UUID de 36 caracteres generados antes) recibe una clave nueva, y los Libros que la referencian se actualizan en la misma transacción. Las claves de las estrategias "tiempo" y "uuid" tienen el mismo formato, así que al pasar de una a la otra no se migra ninguna fila.
+ * <p>
+ * Al terminar, las columnas de clave (las primarias y las foráneas de Libro) se achican a {@link GeneradorId#LONGITUD} caracteres: las tablas creadas con las claves de 36 caracteres conservan ese ancho, porque la generación del esquema no modifica columnas existentes.
+ * <p>
+ * Las filas se procesan en lotes de {@link UnidadDeTrabajo#TAMANIO_LOTE}, cada uno en su propia transacción, así que la migración puede interrumpirse y volver a ejecutarse: las filas ya migradas se saltean. Usa SQL nativo (la clave de una entidad no se puede cambiar por JPA) y está pensada para correr con la aplicación detenida. Se ejecuta con:
+ * <pre>java -cp ... libreria.persistencia.MigracionIds</pre>
+ *
+ * @author Matias Luca Soto
+ */
+public final class MigracionIds {
+
+    //ATRIBUTOS
+    private final GeneradorId generador;
+
+    //CONSTRUCTOR
+    /**
+     * @param generador Estrategia de claves a la que se migra
+     */
+    public MigracionIds(GeneradorId generador) {
+        this.generador = generador;
+    }
+
+    //MÉTODOS
+    public static void main(String[] args) {
+        try {
+            long migradas = new MigracionIds(AsignadorId.getGenerador()).migrar();
+            System.out.println("Claves migradas: " + migradas);
+        } finally {
+            ConexionPersistencia.cerrar();
+        }
+    }
+
+    /**
+     * Migra las claves de Autores, Editoriales y Libros, ajusta el ancho de las columnas de clave y vacía la caché compartida, las cachés de Libros y las sugerencias, que quedaron con las claves viejas
+     *
+     * @return Cantidad de filas que cambiaron de clave
+     */
+    public long migrar() {
+        long migradas = 0;
+        migradas += migrarReferencia(Autor.class, "AUTOR", "AUTOR_ID");
+        migradas += migrarReferencia(Editorial.class, "EDITORIAL", "EDITORIAL_ID");
+        migradas += migrarLibros();
+        ajustarColumnas();
+        ConexionPersistencia.getEntityManagerFactory().getCache().evictAll();
+        LibroDAO.invalidarCache();
+        AutorDAO.invalidarSugerencias();
+        EditorialDAO.invalidarSugerencias();
+        return migradas;
+    }
+
+    /**
+     * Migra una tabla referenciada desde Libro. Como el nombre normalizado es único, la fila nueva se inserta con un nombre normalizado provisorio (su propia clave), se pasan los Libros a la fila nueva, se borra la vieja y recién entonces se le devuelve el nombre normalizado.
+     */
+    private long migrarReferencia(Class<?> entidad, String tabla, String columnaLibro) {
+        List<String> pendientes = pendientes(entidad);
+        for (List<String> lote : lotes(pendientes)) {
+            UnidadDeTrabajo.enTransaccion(em -> {
+                for (String viejo : lote) {
+                    String nuevo = generador.generar(entidad);
+                    Object clave = em.createNativeQuery("SELECT NOMBRECLAVE FROM " + tabla + " WHERE ID = ?1")
+                            .setParameter(1, viejo)
+                            .getSingleResult();
+                    em.createNativeQuery("INSERT INTO " + tabla + " (ID, NOMBRE, NOMBRECLAVE, ALTA, VERSION) SELECT ?1, NOMBRE, ?2, ALTA, VERSION FROM " + tabla + " WHERE ID = ?3")
+                            .setParameter(1, nuevo)
+                            .setParameter(2, nuevo)
+                            .setParameter(3, viejo)
+                            .executeUpdate();
+                    em.createNativeQuery("UPDATE LIBRO SET " + columnaLibro + " = ?1, VERSION = VERSION + 1 WHERE " + columnaLibro + " = ?2")
+                            .setParameter(1, nuevo)
+                            .setParameter(2, viejo)
+                            .executeUpdate();
+                    em.createNativeQuery("DELETE FROM " + tabla + " WHERE ID = ?1")
+                            .setParameter(1, viejo)
+                            .executeUpdate();
+                    em.createNativeQuery("UPDATE " + tabla + " SET NOMBRECLAVE = ?1 WHERE ID = ?2")
+                            .setParameter(1, clave)
+                            .setParameter(2, nuevo)
+                            .executeUpdate();
+                }
+                return null;
+            });
+        }
+        return pendientes.size();
+    }
+
+    /**
+     * Migra la tabla de Libros, que no es referenciada por ninguna otra
+     */
+    private long migrarLibros() {
+        List<String> pendientes = pendientes(Libro.class);
+        for (List<String> lote : lotes(pendientes)) {
+            UnidadDeTrabajo.enTransaccion(em -> {
+                for (String viejo : lote) {
+                    em.createNativeQuery("UPDATE LIBRO SET ID = ?1 WHERE ID = ?2")
+                            .setParameter(1, generador.generar(Libro.class))
+                            .setParameter(2, viejo)
+                            .executeUpdate();
+                }
+                return null;
+            });
+        }
+        return pendientes.size();
+    }
+
+    /**
+     * Achica las columnas de clave al largo de las claves migradas. MySQL no deja cambiar una columna que participa de una clave foránea sin desactivar la verificación, así que se desactiva solo en esta conexión y mientras duran los ALTER TABLE
+     */
+    private void ajustarColumnas() {
+        String tipo = "VARCHAR(" + GeneradorId.LONGITUD + ")";
+        UnidadDeTrabajo.enTransaccion(em -> {
+            em.createNativeQuery("SET FOREIGN_KEY_CHECKS = 0").executeUpdate();
+            try {
+                em.createNativeQuery("ALTER TABLE LIBRO MODIFY ID " + tipo + " NOT NULL, MODIFY AUTOR_ID " + tipo + ", MODIFY EDITORIAL_ID " + tipo).executeUpdate();
+                em.createNativeQuery("ALTER TABLE AUTOR MODIFY ID " + tipo + " NOT NULL").executeUpdate();
+                em.createNativeQuery("ALTER TABLE EDITORIAL MODIFY ID " + tipo + " NOT NULL").executeUpdate();
+            } finally {
+                em.createNativeQuery("SET FOREIGN_KEY_CHECKS = 1").executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Lee todas las claves de una entidad y se queda con las que no tienen el formato de la estrategia actual
+     */
+    private List<String> pendientes(Class<?> entidad) {
+        List<String> ids = UnidadDeTrabajo.consultar(em
+                -> em.createQuery("SELECT e.id FROM " + entidad.getSimpleName() + " e", String.class).getResultList());
+        List<String> pendientes = new ArrayList<>();
+        for (String id : ids) {
+            if (!generador.reconoce(id)) {
+                pendientes.add(id);
+            }
+        }
+        return pendientes;
+    }
+
+    private static List<List<String>> lotes(List<String> ids) {
+        List<List<String>> lotes = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += UnidadDeTrabajo.TAMANIO_LOTE) {
+            lotes.add(ids.subList(i, Math.min(ids.size(), i + UnidadDeTrabajo.TAMANIO_LOTE)));
+        }
+        return lotes;
+    }
+
+}
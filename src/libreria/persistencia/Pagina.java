@@ -0,0 +1,117 @@
+package libreria.persistencia;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Una página de resultados de una consulta. Las consultas paginadas piden un elemento más que el tamaño de la página para saber si hay una página siguiente sin tener que contar todas las filas. Las que además informan el total de resultados lo llevan en {@link #getTotal()}.
+ *
+ * @author Matias Luca Soto
+ * @param <T> Tipo de los elementos de la página
+ */
+public class Pagina<T> {
+
+    //ATRIBUTOS
+    /**
+     * Tamaño máximo de página que aceptan los DAOs, sin importar lo que se pida
+     */
+    public static final int TAMANIO_MAXIMO = 100;
+
+    private final List<T> elementos;
+    private final int numero;
+    private final boolean hayMas;
+    private final long total; // -1 si la consulta no lo cuenta
+
+    //CONSTRUCTOR
+    /**
+     * @param elementos Elementos de la página
+     * @param numero Número de página (empezando en 0). En la paginación por clave (keyset) es -1
+     * @param hayMas true si existe una página siguiente
+     */
+    public Pagina(List<T> elementos, int numero, boolean hayMas) {
+        this(elementos, numero, hayMas, -1);
+    }
+
+    /**
+     * @param elementos Elementos de la página
+     * @param numero Número de página (empezando en 0). En la paginación por clave (keyset) es -1
+     * @param hayMas true si existe una página siguiente
+     * @param total Cantidad total de resultados en todas las páginas, o -1 si no se contó
+     */
+    public Pagina(List<T> elementos, int numero, boolean hayMas, long total) {
+        this.elementos = Collections.unmodifiableList(elementos);
+        this.numero = numero;
+        this.hayMas = hayMas;
+        this.total = total;
+    }
+
+    //MÉTODOS
+    /**
+     * Ajusta un tamaño de página pedido al rango permitido (entre 1 y {@link #TAMANIO_MAXIMO})
+     *
+     * @param tamanio Tamaño pedido
+     * @return Tamaño a usar en la consulta
+     */
+    public static int limitar(int tamanio) {
+        return Math.max(1, Math.min(tamanio, TAMANIO_MAXIMO));
+    }
+
+    /**
+     * Arma una página a partir del resultado de una consulta hecha con setMaxResults(tamanio + 1)
+     *
+     * @param <T> Tipo de los elementos
+     * @param filas Resultado de la consulta (hasta tamanio + 1 elementos)
+     * @param numero Número de página, o -1 si es paginación por clave
+     * @param tamanio Tamaño de página usado en la consulta
+     * @return La página armada
+     */
+    public static <T> Pagina<T> de(List<T> filas, int numero, int tamanio) {
+        boolean hayMas = filas.size() > tamanio;
+        List<T> elementos = hayMas ? new ArrayList<>(filas.subList(0, tamanio)) : filas;
+        return new Pagina<>(elementos, numero, hayMas);
+    }
+
+    /**
+     * @param total Cantidad total de resultados
+     * @return La misma página, informando el total
+     */
+    public Pagina<T> conTotal(long total) {
+        return new Pagina<>(elementos, numero, hayMas, total);
+    }
+
+    /**
+     * @return true si la página no tiene elementos
+     */
+    public boolean isEmpty() {
+        return elementos.isEmpty();
+    }
+
+    /**
+     * @return El último elemento de la página (el punto de partida de la página siguiente en la paginación por clave), o null si está vacía
+     */
+    public T getUltimo() {
+        return elementos.isEmpty() ? null : elementos.get(elementos.size() - 1);
+    }
+
+    //GETTERS
+    public List<T> getElementos() {
+        return elementos;
+    }
+
+    public int getNumero() {
+        return numero;
+    }
+
+    public boolean isHayMas() {
+        return hayMas;
+    }
+
+    /**
+     * @return Cantidad total de resultados, o -1 si la consulta no lo cuenta
+     */
+    public long getTotal() {
+        return total;
+    }
+
+}
@@ -0,0 +1,34 @@
+package libreria.persistencia;
+
+import libreria.utilidades.Configuracion;
+import org.eclipse.persistence.config.DescriptorCustomizer;
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.descriptors.invalidation.TimeToLiveCacheInvalidationPolicy;
+
+/**
+ * Configura la caché compartida (de segundo nivel) de EclipseLink para las entidades de referencia, Autor y Editorial, que cambian poco y se leen en cada alta o modificación de un Libro:
+ * <ul>
+ * <li>libreria.cache.referencias.tamanio: cantidad máxima de entidades por clase; al llenarse se descartan las menos usadas (por defecto 1000)</li>
+ * <li>libreria.cache.referencias.ttl: milisegundos que vive cada entidad en la caché antes de volver a leerse de la base, 0 para que no venzan (por defecto 600000, 10 minutos)</li>
+ * </ul>
+ * Los mismos valores usan las cachés por nombre de AutorService y EditorialService.
+ *
+ * @author Matias Luca Soto
+ */
+public class PersonalizadorCache implements DescriptorCustomizer {
+
+    //ATRIBUTOS
+    public static final int TAMANIO_REFERENCIAS = Configuracion.getInt("libreria.cache.referencias.tamanio", 1000);
+    public static final long TTL_REFERENCIAS = Configuracion.getInt("libreria.cache.referencias.ttl", 600000);
+
+    //MÉTODOS
+    @Override
+    public void customize(ClassDescriptor descriptor) {
+        descriptor.useCacheIdentityMap();
+        descriptor.setIdentityMapSize(Math.max(1, TAMANIO_REFERENCIAS));
+        if (TTL_REFERENCIAS > 0) {
+            descriptor.setCacheInvalidationPolicy(new TimeToLiveCacheInvalidationPolicy(TTL_REFERENCIAS));
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+package libreria.persistencia;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import libreria.utilidades.Configuracion;
+
+/**
+ * Unidad de trabajo de la capa de persistencia. Cada operación de los DAOs se ejecuta con un EntityManager de vida corta que se abre al empezar y se cierra al terminar, así el contexto de persistencia no acumula entidades durante toda la ejecución.
+ * <p>
+ * Si en el hilo actual ya hay un EntityManager en uso (una operación anidada o una sesión abierta con {@link #abrirSesion()}), se reutiliza ese mismo EntityManager y su transacción, de forma que varias operaciones de distintos DAOs pueden formar parte de una única unidad de trabajo.
+ * <p>
+ * Las estructuras en memoria que reflejan la base (índices, sugerencias, cachés) se actualizan con {@link #alConfirmar(Runnable)}: la actualización se ejecuta recién después del commit de la transacción en curso y se descarta si hay rollback.
+ *
+ * @author Matias Luca Soto
+ */
+public final class UnidadDeTrabajo {
+
+    //ATRIBUTOS
+    /**
+     * Cantidad de entidades por lote en las operaciones masivas (libreria.lote.tamanio, por defecto 500)
+     */
+    public static final int TAMANIO_LOTE = Math.max(1, Configuracion.getInt("libreria.lote.tamanio", 500));
+    /**
+     * Cantidad de veces que los servicios reintentan una modificación rechazada por el bloqueo optimista, releyendo antes el estado actual de la fila (libreria.bloqueo.reintentos, por defecto 2; 0 no reintenta)
+     */
+    public static final int REINTENTOS_CONFLICTO = Math.max(0, Configuracion.getInt("libreria.bloqueo.reintentos", 2));
+    private static final ThreadLocal<EntityManager> ACTUAL = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> SESION = new ThreadLocal<>();
+    private static final ThreadLocal<List<Runnable>> AL_CONFIRMAR = new ThreadLocal<>(); // Acciones pendientes del commit de la transacción en curso
+
+    //CONSTRUCTOR
+    private UnidadDeTrabajo() {
+    }
+
+    /**
+     * Operación a ejecutar con el EntityManager de la unidad de trabajo
+     *
+     * @param <T> Tipo del resultado de la operación
+     */
+    @FunctionalInterface
+    public interface Trabajo<T> {
+
+        T ejecutar(EntityManager em);
+    }
+
+    //MÉTODOS
+    /**
+     * Ejecuta una operación de solo lectura. No abre transacción; el EntityManager se cierra al terminar (salvo que pertenezca a una sesión o a una unidad de trabajo más externa).
+     *
+     * @param <T> Tipo del resultado
+     * @param trabajo Operación a ejecutar
+     * @return Resultado de la operación
+     */
+    public static <T> T consultar(Trabajo<T> trabajo) {
+        EntityManager em = ACTUAL.get();
+        boolean propio = em == null;
+        if (propio) {
+            em = abrir();
+        }
+        try {
+            return trabajo.ejecutar(em);
+        } finally {
+            if (propio) {
+                liberar(em);
+            }
+        }
+    }
+
+    /**
+     * Ejecuta una operación de solo lectura con un EntityManager propio, separado de la unidad de trabajo actual del hilo. Sirve para recorridos largos que limpian su contexto de persistencia a medida que avanzan sin afectar al de quien los llama.
+     *
+     * @param <T> Tipo del resultado
+     * @param trabajo Operación a ejecutar
+     * @return Resultado de la operación
+     */
+    public static <T> T consultarAislado(Trabajo<T> trabajo) {
+        EntityManager em = ConexionPersistencia.getEntityManagerFactory().createEntityManager();
+        try {
+            return trabajo.ejecutar(em);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Ejecuta una operación dentro de una transacción. Si ya hay una transacción activa en la unidad de trabajo actual se une a ella y el commit lo hace quien la abrió; si no, la abre, hace commit al terminar y rollback si algo falla.
+     *
+     * @param <T> Tipo del resultado
+     * @param trabajo Operación a ejecutar
+     * @return Resultado de la operación
+     */
+    public static <T> T enTransaccion(Trabajo<T> trabajo) {
+        EntityManager em = ACTUAL.get();
+        boolean propio = em == null;
+        if (propio) {
+            em = abrir();
+        }
+        EntityTransaction tx = em.getTransaction();
+        boolean transaccionPropia = !tx.isActive();
+        try {
+            if (transaccionPropia) {
+                tx.begin();
+            }
+            T resultado = trabajo.ejecutar(em);
+            if (transaccionPropia) {
+                confirmar(tx);
+            }
+            return resultado;
+        } catch (RuntimeException e) {
+            if (transaccionPropia && tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            if (transaccionPropia) {
+                AL_CONFIRMAR.remove(); // Con rollback, las acciones pendientes se descartan
+            }
+            if (propio) {
+                liberar(em);
+            }
+        }
+    }
+
+    /**
+     * Persiste una colección de entidades en lotes: cada {@code tamanioLote} entidades hace flush (que EclipseLink envía como un batch JDBC), commit y limpia el contexto de persistencia, así la memoria usada no crece con el tamaño de la entrada.
+     * <p>
+     * Si ya hay una transacción activa en la unidad de trabajo actual, se une a ella: hace flush y limpia el contexto por lote, pero el commit queda a cargo de quien abrió la transacción. Como lo limpiado ya está en la base (dentro de la transacción), no se pierde nada, pero las entidades que quien llama leyó antes en esa transacción quedan desasociadas del contexto: los cambios que se les hagan después deben aplicarse con merge.
+     * <p>
+     * Si hay una sesión abierta (ver {@link #abrirSesion()}) sin transacción, los lotes se guardan con un EntityManager propio: el de la sesión no es de este método, así que ni se le hace commit ni se limpia.
+     *
+     * @param entidades Entidades nuevas a persistir
+     * @param tamanioLote Cantidad de entidades por lote
+     * @return Cantidad de entidades persistidas
+     */
+    public static int persistirEnLotes(Iterable<?> entidades, int tamanioLote) {
+        if (tamanioLote < 1) {
+            throw new IllegalArgumentException("El tamaño del lote debe ser mayor a 0");
+        }
+        EntityManager actual = ACTUAL.get();
+        if (actual != null && actual.getTransaction().isActive()) {
+            return persistirEnTransaccionAjena(actual, entidades, tamanioLote);
+        }
+        //SIN TRANSACCIÓN EN CURSO: EL ENTITYMANAGER ES PROPIO (SI HAY SESIÓN, UNO APARTE DEL DE LA SESIÓN)
+        EntityManager em = actual == null ? abrir() : ConexionPersistencia.getEntityManagerFactory().createEntityManager();
+        EntityTransaction tx = em.getTransaction();
+        int cantidad = 0;
+        try {
+            tx.begin();
+            for (Object entidad : entidades) {
+                em.persist(entidad);
+                cantidad++;
+                if (cantidad % tamanioLote == 0) {
+                    em.flush();
+                    confirmar(tx);
+                    em.clear();
+                    tx.begin();
+                }
+            }
+            confirmar(tx);
+            em.clear();
+            return cantidad;
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        } finally {
+            AL_CONFIRMAR.remove();
+            if (actual == null) {
+                liberar(em);
+            } else {
+                em.close();
+            }
+        }
+    }
+
+    /**
+     * Persiste en lotes dentro de la transacción de quien llama: flush y clear por lote, sin commit
+     */
+    private static int persistirEnTransaccionAjena(EntityManager em, Iterable<?> entidades, int tamanioLote) {
+        int cantidad = 0;
+        for (Object entidad : entidades) {
+            em.persist(entidad);
+            cantidad++;
+            if (cantidad % tamanioLote == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        if (cantidad % tamanioLote != 0) {
+            em.flush();
+            em.clear();
+        }
+        return cantidad;
+    }
+
+    /**
+     * Registra una acción para cuando los cambios de la transacción en curso queden confirmados: se ejecuta después de su commit y se descarta si termina en rollback. Sin transacción en curso, se ejecuta en el momento. Es la forma de llevar a las estructuras en memoria compartidas un cambio que todavía puede deshacerse
+     *
+     * @param accion Acción a ejecutar después del commit
+     */
+    public static void alConfirmar(Runnable accion) {
+        if (!hayTransaccion()) {
+            accion.run();
+            return;
+        }
+        List<Runnable> pendientes = AL_CONFIRMAR.get();
+        if (pendientes == null) {
+            pendientes = new ArrayList<>();
+            AL_CONFIRMAR.set(pendientes);
+        }
+        pendientes.add(accion);
+    }
+
+    /**
+     * Abre una sesión en el hilo actual: hasta que se llame a {@link #cerrarSesion()} todas las operaciones de los DAOs comparten el mismo EntityManager. Pensado para el menú interactivo, donde una misma acción lista entidades y después modifica alguna de ellas.
+     */
+    public static void abrirSesion() {
+        if (ACTUAL.get() != null) {
+            throw new IllegalStateException("Ya hay una unidad de trabajo abierta en este hilo");
+        }
+        ACTUAL.set(ConexionPersistencia.getEntityManagerFactory().createEntityManager());
+        SESION.set(Boolean.TRUE);
+    }
+
+    /**
+     * Cierra la sesión abierta en el hilo actual, descartando su contexto de persistencia. Si no hay sesión abierta no hace nada.
+     */
+    public static void cerrarSesion() {
+        if (Boolean.TRUE.equals(SESION.get())) {
+            EntityManager em = ACTUAL.get();
+            SESION.remove();
+            liberar(em);
+        }
+    }
+
+    /**
+     * @return true si el hilo actual tiene una sesión abierta
+     */
+    public static boolean haySesion() {
+        return Boolean.TRUE.equals(SESION.get());
+    }
+
+    /**
+     * @return true si el hilo actual está dentro de una transacción. Lo que se lee ahí puede incluir cambios que todavía no tienen commit (y que pueden deshacerse), así que no debe guardarse en cachés compartidas
+     */
+    public static boolean hayTransaccion() {
+        EntityManager em = ACTUAL.get();
+        return em != null && em.getTransaction().isActive();
+    }
+
+    /**
+     * Hace commit y ejecuta las acciones registradas con {@link #alConfirmar(Runnable)}. Los cambios ya están confirmados, así que un error en una acción se informa sin propagarlo
+     */
+    private static void confirmar(EntityTransaction tx) {
+        tx.commit();
+        List<Runnable> pendientes = AL_CONFIRMAR.get();
+        AL_CONFIRMAR.remove();
+        if (pendientes != null) {
+            for (Runnable accion : pendientes) {
+                try {
+                    accion.run();
+                } catch (RuntimeException e) {
+                    System.out.println("Error actualizando datos en memoria después del commit");
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Crea un EntityManager nuevo y lo registra como el actual del hilo
+     */
+    private static EntityManager abrir() {
+        EntityManager em = ConexionPersistencia.getEntityManagerFactory().createEntityManager();
+        ACTUAL.set(em);
+        return em;
+    }
+
+    /**
+     * Quita el EntityManager del hilo y lo cierra, deshaciendo cualquier transacción que haya quedado abierta
+     */
+    private static void liberar(EntityManager em) {
+        ACTUAL.remove();
+        if (em.getTransaction().isActive()) {
+            em.getTransaction().rollback();
+        }
+        em.close();
+    }
+
+}
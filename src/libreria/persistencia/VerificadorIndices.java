@@ -0,0 +1,224 @@
+package libreria.persistencia;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.persistence.EntityManager;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import libreria.entidades.Autor;
+import libreria.entidades.Editorial;
+import libreria.entidades.Libro;
+
+/**
+ * Comprueba al iniciar la unidad de persistencia que la base de datos tenga los índices y restricciones únicas declarados en las anotaciones @Table de las entidades. La generación de esquema solo los crea junto con las tablas, así que una base creada con una versión anterior de la aplicación puede no tenerlos y cada búsqueda terminaría recorriendo la tabla entera.
+ * <p>
+ * Un índice se da por presente si en la tabla existe alguno (con cualquier nombre) cuyas primeras columnas sean las declaradas. Los índices faltantes solo se informan; las restricciones únicas faltantes se crean con ALTER TABLE, porque de ellas depende que no se guarden ISBN, títulos o nombres duplicados. Si una no se puede crear (por ejemplo, porque la tabla ya tiene filas duplicadas), la aplicación no arranca.
+ *
+ * @author Matias Luca Soto
+ */
+final class VerificadorIndices {
+
+    //ATRIBUTOS
+    private static final Class<?>[] ENTIDADES = {Autor.class, Editorial.class, Libro.class};
+
+    //CONSTRUCTOR
+    private VerificadorIndices() {
+    }
+
+    //MÉTODOS
+    /**
+     * Revisa los índices de todas las entidades e informa por consola los que faltan, y crea las restricciones únicas que falten. Un error al leer los metadatos no impide el arranque.
+     *
+     * @throws IllegalStateException Si no se pudo crear una restricción única faltante
+     */
+    static void verificar() {
+        Faltantes faltantes;
+        try {
+            faltantes = UnidadDeTrabajo.consultarAislado(VerificadorIndices::buscarFaltantes);
+        } catch (RuntimeException e) {
+            System.out.println("No se pudieron verificar los índices de la base de datos");
+            e.printStackTrace();
+            return;
+        }
+        if (!faltantes.indices.isEmpty()) {
+            System.out.println("ATENCIÓN: faltan índices en la base de datos, las búsquedas van a recorrer las tablas completas:");
+            for (String faltante : faltantes.indices) {
+                System.out.println(" - " + faltante);
+            }
+        }
+        for (Map.Entry<String, String> restriccion : faltantes.restricciones.entrySet()) {
+            crearRestriccion(restriccion.getKey(), restriccion.getValue());
+        }
+    }
+
+    /**
+     * Ejecuta el ALTER TABLE que crea una restricción única faltante
+     *
+     * @throws IllegalStateException Si la base la rechaza
+     */
+    private static void crearRestriccion(String descripcion, String sql) {
+        try {
+            UnidadDeTrabajo.consultarAislado(em -> {
+                em.getTransaction().begin();
+                try {
+                    em.createNativeQuery(sql).executeUpdate();
+                    em.getTransaction().commit();
+                } finally {
+                    if (em.getTransaction().isActive()) {
+                        em.getTransaction().rollback();
+                    }
+                }
+                return null;
+            });
+            System.out.println("Restricción única creada: " + descripcion);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("No se pudo crear la restricción única " + descripcion
+                    + ". Si la tabla tiene filas duplicadas, corríjalas y vuelva a iniciar la aplicación", e);
+        }
+    }
+
+    /**
+     * Compara los índices declarados en las entidades con los que informa el driver JDBC
+     *
+     * @return Los índices faltantes y las restricciones únicas a crear
+     */
+    private static Faltantes buscarFaltantes(EntityManager em) {
+        // EclipseLink solo entrega la conexión JDBC dentro de una transacción
+        em.getTransaction().begin();
+        try {
+            Connection conexion = em.unwrap(Connection.class);
+            DatabaseMetaData metadatos = conexion.getMetaData();
+            String catalogo = conexion.getCatalog();
+            Faltantes faltantes = new Faltantes();
+            for (Class<?> entidad : ENTIDADES) {
+                Table tabla = entidad.getAnnotation(Table.class);
+                if (tabla == null) {
+                    continue;
+                }
+                String nombreTabla = tabla.name().isEmpty() ? entidad.getSimpleName() : tabla.name();
+                List<String> nombresReales = nombresReales(metadatos, catalogo, nombreTabla);
+                if (nombresReales.isEmpty()) {
+                    continue; // La genera el esquema, ya con sus índices
+                }
+                Map<String, List<String>> existentes = indicesDeTabla(metadatos, catalogo, nombresReales);
+                for (UniqueConstraint unica : tabla.uniqueConstraints()) {
+                    List<String> columnas = Arrays.asList(unica.columnNames());
+                    if (!existe(existentes, columnas, true)) {
+                        faltantes.restricciones.put(unica.name() + " en " + nombreTabla + " " + columnas,
+                                sqlRestriccion(nombresReales.get(0), unica.name(), columnas, existentes));
+                    }
+                }
+                for (Index indice : tabla.indexes()) {
+                    List<String> columnas = Arrays.asList(indice.columnList().split("\\s*,\\s*"));
+                    if (!existe(existentes, columnas, false)) {
+                        faltantes.indices.add(indice.name() + " en " + nombreTabla + " " + columnas);
+                    }
+                }
+            }
+            return faltantes;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error al leer los metadatos de la base de datos", e);
+        } finally {
+            em.getTransaction().rollback();
+        }
+    }
+
+    /**
+     * Indica si alguno de los índices existentes empieza por las columnas recibidas. Una restricción única solo la cumple un índice único con exactamente esas columnas
+     */
+    private static boolean existe(Map<String, List<String>> existentes, List<String> columnas, boolean unico) {
+        for (List<String> existente : existentes.values()) {
+            boolean esUnico = existente.get(0) != null;
+            List<String> columnasExistente = existente.subList(1, existente.size());
+            if (unico && (!esUnico || columnasExistente.size() != columnas.size())) {
+                continue;
+            }
+            if (columnasExistente.size() >= columnas.size() && empiezaCon(columnasExistente, columnas)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Arma el ALTER TABLE que crea una restricción única. Si ya hay un índice con ese nombre sobre otras columnas (por ejemplo, la restricción de una versión anterior), se reemplaza en la misma sentencia
+     */
+    private static String sqlRestriccion(String tabla, String nombre, List<String> columnas, Map<String, List<String>> existentes) {
+        StringBuilder sql = new StringBuilder("ALTER TABLE ").append(tabla).append(' ');
+        for (String existente : existentes.keySet()) {
+            if (existente.equalsIgnoreCase(nombre)) {
+                sql.append("DROP INDEX ").append(existente).append(", ");
+            }
+        }
+        return sql.append("ADD CONSTRAINT ").append(nombre).append(" UNIQUE (").append(String.join(", ", columnas)).append(')').toString();
+    }
+
+    private static boolean empiezaCon(List<String> existente, List<String> columnas) {
+        for (int i = 0; i < columnas.size(); i++) {
+            if (!existente.get(i).equalsIgnoreCase(columnas.get(i).trim())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lee los índices de una tabla por nombre. Cada uno es la lista de sus columnas ordenadas, precedida por un marcador que es null si el índice no es único. El nombre de la tabla se busca sin distinguir mayúsculas, porque cada motor (y cada configuración de MySQL) lo guarda distinto.
+     */
+    private static Map<String, List<String>> indicesDeTabla(DatabaseMetaData metadatos, String catalogo, List<String> nombresReales) throws SQLException {
+        Map<String, TreeMap<Short, String>> indices = new TreeMap<>();
+        Map<String, Boolean> unicos = new TreeMap<>();
+        for (String nombreReal : nombresReales) {
+            try (ResultSet rs = metadatos.getIndexInfo(catalogo, null, nombreReal, false, true)) {
+                while (rs.next()) {
+                    String indice = rs.getString("INDEX_NAME");
+                    String columna = rs.getString("COLUMN_NAME");
+                    if (indice != null && columna != null) {
+                        indices.computeIfAbsent(indice, k -> new TreeMap<>()).put(rs.getShort("ORDINAL_POSITION"), columna);
+                        unicos.put(indice, !rs.getBoolean("NON_UNIQUE"));
+                    }
+                }
+            }
+        }
+        Map<String, List<String>> columnas = new LinkedHashMap<>();
+        for (Map.Entry<String, TreeMap<Short, String>> indice : indices.entrySet()) {
+            List<String> lista = new ArrayList<>();
+            lista.add(unicos.get(indice.getKey()) ? "UNIQUE" : null);
+            lista.addAll(indice.getValue().values());
+            columnas.put(indice.getKey(), lista);
+        }
+        return columnas;
+    }
+
+    private static List<String> nombresReales(DatabaseMetaData metadatos, String catalogo, String tabla) throws SQLException {
+        List<String> nombres = new ArrayList<>();
+        try (ResultSet rs = metadatos.getTables(catalogo, null, "%", new String[]{"TABLE"})) {
+            while (rs.next()) {
+                String nombre = rs.getString("TABLE_NAME");
+                if (tabla.equalsIgnoreCase(nombre)) {
+                    nombres.add(nombre);
+                }
+            }
+        }
+        return nombres;
+    }
+
+    /**
+     * Resultado de la comparación: descripción de cada índice faltante, y descripción y ALTER TABLE de cada restricción única faltante
+     */
+    private static final class Faltantes {
+
+        private final List<String> indices = new ArrayList<>();
+        private final Map<String, String> restricciones = new LinkedHashMap<>();
+    }
+
+}
@@ -1,10 +1,18 @@
 package libreria.servicios;
 
 import java.util.List;
-import java.util.UUID;
+import javax.persistence.PersistenceException;
+import libreria.dto.ReferenciaDTO;
 import libreria.entidades.Autor;
 import libreria.exceptions.AutorException;
 import libreria.persistencia.AutorDAO;
+import libreria.persistencia.CacheLRU;
+import libreria.persistencia.ConexionPersistencia;
+import libreria.persistencia.ErroresPersistencia;
+import libreria.persistencia.Pagina;
+import libreria.persistencia.PersonalizadorCache;
+import libreria.persistencia.UnidadDeTrabajo;
+import libreria.utilidades.Normalizador;
 
 /**
  *
@@ -15,6 +23,11 @@ public class AutorService {
     //ATRIBUTO DAO
     private final AutorDAO dao;
 
+    /* Caché nombre -> Autor compartida por todas las instancias del servicio. Se mantiene al día con las altas, modificaciones
+    y bajas hechas desde el servicio; los nombres que no existen no se guardan, así un alta nueva nunca queda tapada. Guarda
+    copias y devuelve copias: ningún hilo ni quien llama comparte con la caché (ni con otro) la instancia que puede modificar */
+    private static final CacheLRU<String, Autor> POR_NOMBRE = new CacheLRU<>("Autores por nombre", PersonalizadorCache.TAMANIO_REFERENCIAS, PersonalizadorCache.TTL_REFERENCIAS);
+
     //CONSTRUCTOR
     public AutorService() {
         this.dao = new AutorDAO();
@@ -29,6 +42,18 @@ public class AutorService {
      * @throws AutorException Si el argumento está o si ya existe un Autor con ese nombre
      */
     public Autor crearAutor(String nombre) throws AutorException {
+        return crearAutor(nombre, false);
+    }
+
+    /**
+     * Igual que {@link #crearAutor(String)}, pero antes de crearlo busca si ya hay un autor con un nombre parecido (por ejemplo "Garcia Marques" cuando existe "García Márquez"), que suele ser el mismo escrito distinto
+     *
+     * @param nombre Nombre del nuevo Autor a crear
+     * @param permitirParecido true para crearlo aunque exista uno parecido (el usuario ya lo confirmó)
+     * @return El Objeto Autor ya creado y persistido
+     * @throws AutorException Si el argumento está vacío, si ya existe con ese nombre o si existe uno parecido y no se permitió
+     */
+    public Autor crearAutor(String nombre, boolean permitirParecido) throws AutorException {
 
         try {
 
@@ -39,15 +64,29 @@ public class AutorService {
             if (buscarAutorPorNombre(nombre) != null) {
                 throw new AutorException("El nombre ingresado ya está guardado en la base de datos.");
             }
+            if (!permitirParecido) {
+                String parecido = dao.buscarNombreParecido(nombre);
+                if (parecido != null) {
+                    throw new AutorException("Ya existe un autor con un nombre parecido: \"" + parecido + "\".");
+                }
+            }
 
             //ARMADO DEL OBJETO AUTOR
             Autor autor = new Autor();
-            autor.setId(UUID.randomUUID().toString()); // Generación de Primary Key
             autor.setNombre(nombre);
             autor.setAlta(true);
 
             //GUARDADO EN BASE DE DATOS
-            dao.guardarAutor(autor);
+            try {
+                dao.guardarAutor(autor);
+            } catch (PersistenceException e) {
+                //OTRO USUARIO LO GUARDÓ ENTRE LA VERIFICACIÓN Y EL INSERT
+                if (ErroresPersistencia.violaRestriccion(e, Autor.UK_NOMBRE)) {
+                    throw new AutorException("El nombre ingresado ya está guardado en la base de datos.");
+                }
+                throw e;
+            }
+            recordar(nombre, autor);
             return autor;
 
         } catch (AutorException e) {
@@ -80,12 +119,33 @@ public class AutorService {
                 throw new AutorException("El nombre ingresado ya pertenece a otro autor.");
             }
 
-            //SETEO LOS NUEVOS VALORES PARA EL AUTOR
-            autor.setNombre(nombre);
-            autor.setAlta(true);
-
-            //ENVIO EL AUTOR ACTUALIZADO AL DAO
-            dao.modificarAutor(autor);
+            //SE SACA DE LA CACHÉ: EL NOMBRE VIEJO DEJA DE APUNTAR A ESTE AUTOR
+            descartarDeCache(autor.getId());
+
+            /* MODIFICACIÓN CON BLOQUEO OPTIMISTA: si otro usuario modificó el autor desde que se leyó, el merge falla en lugar
+            de pisar su cambio. Se relee el estado actual y, si el otro cambio no tocó el nombre, se vuelve a aplicar este sobre
+            él (hasta libreria.bloqueo.reintentos veces) */
+            String nombreOriginal = autor.getNombre();
+            Autor aGuardar = autor;
+            Autor guardado;
+            for (int intento = 0;; intento++) {
+                aGuardar.setNombre(nombre);
+                aGuardar.setAlta(true);
+                try {
+                    guardado = dao.modificarAutor(aGuardar);
+                    break;
+                } catch (PersistenceException e) {
+                    //OTRO AUTOR TOMÓ ESE NOMBRE ENTRE LA VERIFICACIÓN Y EL UPDATE
+                    if (ErroresPersistencia.violaRestriccion(e, Autor.UK_NOMBRE)) {
+                        throw new AutorException("El nombre ingresado ya pertenece a otro autor.");
+                    }
+                    if (!ErroresPersistencia.esConflictoDeVersion(e)) {
+                        throw e;
+                    }
+                    aGuardar = releerParaReintentar(autor.getId(), nombreOriginal, nombre, intento);
+                }
+            }
+            recordar(nombre, guardado);
 
         } catch (AutorException e) {
             throw e;
@@ -112,6 +172,7 @@ public class AutorService {
 
             //Eliminamos el Autor en el DAO
             dao.eliminarAutorId(id);
+            descartarDeCache(id);
 
         } catch (AutorException e) {
             throw e;
@@ -122,6 +183,34 @@ public class AutorService {
         }
     }
 
+    /**
+     * Devuelve el Autor con ese nombre, creándolo si todavía no existe. No valida el nombre (quien llama ya lo hizo) y no lanza excepciones de negocio, así puede usarse dentro de una unidad de trabajo de {@link UnidadDeTrabajo}: si hay una transacción abierta, el alta forma parte de ella.
+     * <p>
+     * La restricción única sobre el nombre es la que garantiza que no haya duplicados cuando varios hilos o procesos crean el mismo Autor a la vez: si el INSERT choca con ella, se vuelve a leer y se devuelve el que ganó. Dentro de una transacción ajena el choque recién aparece en el commit, y es quien la abrió el que debe reintentar la operación completa (ver {@link ErroresPersistencia}).
+     *
+     * @param nombre Nombre del Autor
+     * @return El Autor existente o el nuevo recién persistido
+     */
+    public Autor obtenerOCrearAutor(String nombre) {
+        try {
+
+            Autor autor = desdeCache(nombre);
+            if (autor == null) {
+                autor = dao.buscarAutorPorNombre(nombre);
+                if (autor == null) {
+                    autor = insertarOLeerGanador(nombre);
+                }
+                recordar(nombre, autor);
+            }
+            return autor;
+
+        } catch (Exception e) {
+            System.out.println("Error obteniendo o creando Autor en AutorService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
     /**
      * Busca un Objeto Autor en la BD con el atributo 'nombre' que sea igual al pasado por argumento
      * @param nombre Nombre del Autor a buscar
@@ -136,7 +225,12 @@ public class AutorService {
             if (nombre.trim().isEmpty()) {
                 throw new AutorException("El nombre del autor está vacío");
             }
-            return dao.buscarAutorPorNombre(nombre);
+            Autor autor = desdeCache(nombre);
+            if (autor == null) {
+                autor = dao.buscarAutorPorNombre(nombre);
+                recordar(nombre, autor);
+            }
+            return autor;
 
         } catch (AutorException e) {
             throw e;
@@ -163,6 +257,132 @@ public class AutorService {
         }
     }
 
+    /**
+     * Devuelve una página de autores ordenados por nombre
+     *
+     * @param pagina Número de página, empezando en 0
+     * @param tamanio Cantidad de elementos por página
+     * @return Página pedida
+     */
+    public Pagina<Autor> listarAutores(int pagina, int tamanio) {
+        try {
+
+            return dao.listarAutores(pagina, tamanio);
+
+        } catch (Exception e) {
+            System.out.println("Error listando una página de autores en AutorService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve la página de autores que sigue al recibido, ordenados por nombre (paginación por clave)
+     *
+     * @param ultimo Último elemento de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de elementos por página
+     * @return Página siguiente
+     */
+    public Pagina<Autor> listarAutoresDesde(Autor ultimo, int tamanio) {
+        try {
+
+            return dao.listarAutoresDesde(ultimo, tamanio);
+
+        } catch (Exception e) {
+            System.out.println("Error listando autores por clave en AutorService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve el ID y el nombre de todos los autores, ordenados por nombre. Es la consulta a usar cuando los autores solo se van a mostrar
+     *
+     * @return Lista de referencias (id, nombre)
+     */
+    public List<ReferenciaDTO> listarReferenciasAutores() {
+        try {
+
+            return dao.listarReferenciasAutores();
+
+        } catch (Exception e) {
+            System.out.println("Error listando referencias de autores en AutorService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve la página de referencias (id, nombre) de autores que sigue a la recibida, ordenadas por nombre
+     *
+     * @param ultima Última referencia de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de elementos por página
+     * @return Página de referencias
+     */
+    public Pagina<ReferenciaDTO> listarReferenciasAutoresDesde(ReferenciaDTO ultima, int tamanio) {
+        try {
+
+            return dao.listarReferenciasAutoresDesde(ultima, tamanio);
+
+        } catch (Exception e) {
+            System.out.println("Error listando referencias de autores por clave en AutorService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve el nombre del Autor dado de alta más parecido al recibido, para avisar antes de crear un duplicado escrito distinto. No consulta la base: los nombres se mantienen en memoria
+     *
+     * @param nombre Nombre a comparar
+     * @return El nombre parecido tal como está guardado, o null si no hay ninguno
+     */
+    public String buscarNombreParecido(String nombre) {
+        try {
+
+            return dao.buscarNombreParecido(nombre);
+
+        } catch (Exception e) {
+            System.out.println("Error buscando autor parecido en AutorService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve los nombres de Autores dados de alta que empiezan con el texto recibido, para completar lo que el usuario está escribiendo. No consulta la base: las sugerencias se mantienen en memoria
+     *
+     * @param prefijo Comienzo del nombre
+     * @param cantidad Cantidad máxima de sugerencias
+     * @return Nombres en orden alfabético. Vacía si no hay ninguno
+     */
+    public List<String> sugerirNombres(String prefijo, int cantidad) {
+        try {
+
+            return dao.sugerirNombres(prefijo, cantidad);
+
+        } catch (Exception e) {
+            System.out.println("Error sugiriendo nombres de autores en AutorService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Arma las sugerencias de nombres recorriendo la tabla, si todavía no están armadas. Conviene llamarlo al iniciar la aplicación para que la primera sugerencia no espere el recorrido
+     */
+    public void cargarSugerencias() {
+        try {
+
+            dao.cargarSugerencias();
+
+        } catch (Exception e) {
+            System.out.println("Error cargando las sugerencias de autores en AutorService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
     /**
      * Imprime por consola un listado con todos los Autores en la BD, enumerados y con sus nombres
      * @throws AutorException Si no hay autores para mostrar.
@@ -171,7 +391,7 @@ public class AutorService {
 
         try {
 
-            List<Autor> autores = listarAutores();
+            List<ReferenciaDTO> autores = listarReferenciasAutores();
 
             if (autores.isEmpty()) {
                 throw new AutorException("No hay autores para mostrar.");
@@ -179,7 +399,7 @@ public class AutorService {
 
             int counter = 1;
             System.out.println("\nLISTA DE AUTORES:");
-            for (Autor autor : autores) {
+            for (ReferenciaDTO autor : autores) {
                 System.out.println(counter + ". " + autor.getNombre());
                 counter++;
             }
@@ -192,4 +412,96 @@ public class AutorService {
         }
 
     }
+
+    /**
+     * Vacía la caché por nombre, la caché compartida y las sugerencias de nombres de Autores, para cuando la tabla se modificó por fuera del servicio (por ejemplo con una importación o desde otra aplicación)
+     */
+    public static void invalidarCache() {
+        POR_NOMBRE.clear();
+        ConexionPersistencia.invalidarCache(Autor.class);
+        AutorDAO.invalidarSugerencias();
+    }
+
+    /**
+     * @return Tamaño, aciertos y fallos de la caché por nombre
+     */
+    public static String estadisticasCache() {
+        return POR_NOMBRE.toString();
+    }
+
+    /**
+     * Saca de la caché por nombre la entrada que apunta al Autor con ese ID
+     */
+    private static void descartarDeCache(String id) {
+        POR_NOMBRE.removeIf(autor -> autor.getId().equals(id));
+        if (UnidadDeTrabajo.hayTransaccion()) {
+            //UN recordar ANTERIOR DE LA MISMA TRANSACCIÓN LA VOLVERÍA A AGREGAR AL CONFIRMAR
+            UnidadDeTrabajo.alConfirmar(() -> POR_NOMBRE.removeIf(autor -> autor.getId().equals(id)));
+        }
+    }
+
+    /**
+     * Relee el autor después de un conflicto de versión y lo devuelve para reintentar la modificación sobre su estado actual. No se reintenta si se agotaron los intentos, si el hilo está dentro de una transacción (quedó marcada para rollback) o si el otro usuario también cambió el nombre
+     */
+    private Autor releerParaReintentar(String id, String nombreOriginal, String nombre, int intento) throws AutorException {
+        if (intento >= UnidadDeTrabajo.REINTENTOS_CONFLICTO || UnidadDeTrabajo.hayTransaccion()) {
+            throw new AutorException("El autor fue modificado por otro usuario mientras lo editaba. Vuelva a intentarlo.");
+        }
+        Autor actual = dao.buscarAutorActualizado(id);
+        if (actual == null) {
+            throw new AutorException("El autor fue eliminado por otro usuario mientras lo editaba.");
+        }
+        if (!actual.getNombre().equals(nombreOriginal) && !actual.getNombre().equals(nombre)) {
+            throw new AutorException("Otro usuario cambió el nombre del autor a '" + actual.getNombre() + "' mientras lo editaba.");
+        }
+        return actual;
+    }
+
+    /**
+     * Inserta un Autor nuevo con ese nombre. Si otro hilo o proceso lo creó primero, la restricción única rechaza el INSERT y se devuelve el ya guardado
+     */
+    private Autor insertarOLeerGanador(String nombre) {
+        Autor autor = new Autor(nombre);
+        try {
+            dao.guardarAutor(autor);
+            return autor;
+        } catch (PersistenceException e) {
+            if (UnidadDeTrabajo.hayTransaccion() || !ErroresPersistencia.violaRestriccion(e, Autor.UK_NOMBRE)) {
+                throw e;
+            }
+            Autor ganador = dao.buscarAutorPorNombre(nombre);
+            if (ganador == null) {
+                throw e;
+            }
+            return ganador;
+        }
+    }
+
+    /**
+     * Guarda el Autor en la caché por nombre, cuando la transacción del hilo queda confirmada (o enseguida, si no hay ninguna): lo leído o creado dentro de ella todavía puede deshacerse
+     */
+    private static void recordar(String nombre, Autor autor) {
+        if (autor == null) {
+            return;
+        }
+        String clave = clave(nombre);
+        //LA COPIA SE TOMA DESPUÉS DEL COMMIT, CUANDO LA ENTIDAD YA TIENE SU VERSIÓN
+        UnidadDeTrabajo.alConfirmar(() -> POR_NOMBRE.put(clave, new Autor(autor)));
+    }
+
+    /**
+     * @return Copia de la entrada de la caché por nombre, o null si no está
+     */
+    private static Autor desdeCache(String nombre) {
+        Autor guardado = POR_NOMBRE.get(clave(nombre));
+        return guardado == null ? null : new Autor(guardado);
+    }
+
+    /**
+     * Clave de la caché por nombre: el nombre normalizado, igual que compara la base
+     */
+    private static String clave(String nombre) {
+        return Normalizador.normalizar(nombre);
+    }
+
 }
@@ -1,10 +1,18 @@
 package libreria.servicios;
 
 import java.util.List;
-import java.util.UUID;
+import javax.persistence.PersistenceException;
+import libreria.dto.ReferenciaDTO;
 import libreria.entidades.Editorial;
 import libreria.exceptions.EditorialException;
+import libreria.persistencia.CacheLRU;
+import libreria.persistencia.ConexionPersistencia;
 import libreria.persistencia.EditorialDAO;
+import libreria.persistencia.ErroresPersistencia;
+import libreria.persistencia.Pagina;
+import libreria.persistencia.PersonalizadorCache;
+import libreria.persistencia.UnidadDeTrabajo;
+import libreria.utilidades.Normalizador;
 
 /**
  *
@@ -15,6 +23,11 @@ public class EditorialService {
     //ATRIBUTO DAO
     private final EditorialDAO dao;
 
+    /* Caché nombre -> Editorial compartida por todas las instancias del servicio. Se mantiene al día con las altas, modificaciones
+    y bajas hechas desde el servicio; los nombres que no existen no se guardan, así un alta nueva nunca queda tapada. Guarda
+    copias y devuelve copias: ningún hilo ni quien llama comparte con la caché (ni con otro) la instancia que puede modificar */
+    private static final CacheLRU<String, Editorial> POR_NOMBRE = new CacheLRU<>("Editoriales por nombre", PersonalizadorCache.TAMANIO_REFERENCIAS, PersonalizadorCache.TTL_REFERENCIAS);
+
     //CONSTRUCTOR
     public EditorialService() {
         this.dao = new EditorialDAO();
@@ -29,6 +42,18 @@ public class EditorialService {
      * @throws EditorialException Si el argumento está vacío o ya existe una Editorial con ese nombre
      */
     public Editorial crearEditorial(String nombre) throws EditorialException {
+        return crearEditorial(nombre, false);
+    }
+
+    /**
+     * Igual que {@link #crearEditorial(String)}, pero antes de crearla busca si ya hay una editorial con un nombre parecido (por ejemplo "Planetas" cuando existe "Planeta"), que suele ser la misma escrita distinto
+     *
+     * @param nombre Nombre de la nueva Editorial a crear
+     * @param permitirParecido true para crearla aunque exista una parecida (el usuario ya lo confirmó)
+     * @return El Objeto Editorial ya creada y persistida
+     * @throws EditorialException Si el argumento está vacío, si ya existe con ese nombre o si existe una parecida y no se permitió
+     */
+    public Editorial crearEditorial(String nombre, boolean permitirParecido) throws EditorialException {
 
         try {
 
@@ -39,21 +64,35 @@ public class EditorialService {
             if (buscarEditorialPorNombre(nombre) != null) {
                 throw new EditorialException("El nombre ingresado ya está guardado en la base de datos.");
             }
+            if (!permitirParecido) {
+                String parecido = dao.buscarNombreParecido(nombre);
+                if (parecido != null) {
+                    throw new EditorialException("Ya existe una editorial con un nombre parecido: \"" + parecido + "\".");
+                }
+            }
 
             //ARMADO DEL OBJETO EDITORIAL
             Editorial editorial = new Editorial();
-            editorial.setId(UUID.randomUUID().toString()); // Generación de Primary Key
             editorial.setNombre(nombre);
             editorial.setAlta(true);
 
             //GUARDANDO EN BASE DE DATOS
-            dao.guardarEditorial(editorial);
+            try {
+                dao.guardarEditorial(editorial);
+            } catch (PersistenceException e) {
+                //OTRO USUARIO LA GUARDÓ ENTRE LA VERIFICACIÓN Y EL INSERT
+                if (ErroresPersistencia.violaRestriccion(e, Editorial.UK_NOMBRE)) {
+                    throw new EditorialException("El nombre ingresado ya está guardado en la base de datos.");
+                }
+                throw e;
+            }
+            recordar(nombre, editorial);
             return editorial;
 
         } catch (EditorialException e) {
             throw e;
         } catch (Exception e) {
-            System.out.println("Error creando Editorial en Editorial Service");
+            System.out.println("Error creando Editorial en EditorialService");
             e.printStackTrace();
             throw e;
         }
@@ -81,17 +120,38 @@ public class EditorialService {
                 throw new EditorialException("El nombre ingresado ya pertenece a otra editorial.");
             }
 
-            //SETEO LOS NUEVOS VALORES PARA EL AUTOR
-            editorial.setNombre(nombre);
-            editorial.setAlta(true);
-
-            //ENVIO EL AUTOR ACTUALIZADO AL DAO
-            dao.modificarEditorial(editorial);
+            //SE SACA DE LA CACHÉ: EL NOMBRE VIEJO DEJA DE APUNTAR A ESTE EDITORIAL
+            descartarDeCache(editorial.getId());
+
+            /* MODIFICACIÓN CON BLOQUEO OPTIMISTA: si otro usuario modificó la editorial desde que se leyó, el merge falla en lugar
+            de pisar su cambio. Se relee el estado actual y, si el otro cambio no tocó el nombre, se vuelve a aplicar este sobre
+            ella (hasta libreria.bloqueo.reintentos veces) */
+            String nombreOriginal = editorial.getNombre();
+            Editorial aGuardar = editorial;
+            Editorial guardado;
+            for (int intento = 0;; intento++) {
+                aGuardar.setNombre(nombre);
+                aGuardar.setAlta(true);
+                try {
+                    guardado = dao.modificarEditorial(aGuardar);
+                    break;
+                } catch (PersistenceException e) {
+                    //OTRA EDITORIAL TOMÓ ESE NOMBRE ENTRE LA VERIFICACIÓN Y EL UPDATE
+                    if (ErroresPersistencia.violaRestriccion(e, Editorial.UK_NOMBRE)) {
+                        throw new EditorialException("El nombre ingresado ya pertenece a otra editorial.");
+                    }
+                    if (!ErroresPersistencia.esConflictoDeVersion(e)) {
+                        throw e;
+                    }
+                    aGuardar = releerParaReintentar(editorial.getId(), nombreOriginal, nombre, intento);
+                }
+            }
+            recordar(nombre, guardado);
 
         } catch (EditorialException e) {
             throw e;
         } catch (Exception e) {
-            System.out.println("Error modificando Editorial en Editorial Service");
+            System.out.println("Error modificando Editorial en EditorialService");
             e.printStackTrace();
             throw e;
         }
@@ -114,11 +174,40 @@ public class EditorialService {
 
             //ELIMINAMOS LA EDITORIAL EN EL DAO
             dao.eliminarEditorialPorId(id);
+            descartarDeCache(id);
 
         } catch (EditorialException e) {
             throw e;
         } catch (Exception e) {
-            System.out.println("Error eliminando Editorial en Editorial Service");
+            System.out.println("Error eliminando Editorial en EditorialService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve la Editorial con ese nombre, creándola si todavía no existe. No valida el nombre (quien llama ya lo hizo) y no lanza excepciones de negocio, así puede usarse dentro de una unidad de trabajo de {@link UnidadDeTrabajo}: si hay una transacción abierta, el alta forma parte de ella.
+     * <p>
+     * La restricción única sobre el nombre es la que garantiza que no haya duplicados cuando varios hilos o procesos crean la misma Editorial a la vez: si el INSERT choca con ella, se vuelve a leer y se devuelve la que ganó. Dentro de una transacción ajena el choque recién aparece en el commit, y es quien la abrió el que debe reintentar la operación completa (ver {@link ErroresPersistencia}).
+     *
+     * @param nombre Nombre de la Editorial
+     * @return La Editorial existente o la nueva recién persistida
+     */
+    public Editorial obtenerOCrearEditorial(String nombre) {
+        try {
+
+            Editorial editorial = desdeCache(nombre);
+            if (editorial == null) {
+                editorial = dao.buscarEditorialPorNombre(nombre);
+                if (editorial == null) {
+                    editorial = insertarOLeerGanador(nombre);
+                }
+                recordar(nombre, editorial);
+            }
+            return editorial;
+
+        } catch (Exception e) {
+            System.out.println("Error obteniendo o creando Editorial en EditorialService");
             e.printStackTrace();
             throw e;
         }
@@ -140,12 +229,17 @@ public class EditorialService {
                 throw new EditorialException("El nombre de la Editorial a buscar está vacío.");
             }
 
-            return dao.buscarEditorialPorNombre(nombre);
+            Editorial editorial = desdeCache(nombre);
+            if (editorial == null) {
+                editorial = dao.buscarEditorialPorNombre(nombre);
+                recordar(nombre, editorial);
+            }
+            return editorial;
 
         } catch (EditorialException e) {
             throw e;
         } catch (Exception e) {
-            System.out.println("Error buscando una Editorial en Editorial Service");
+            System.out.println("Error buscando una Editorial en EditorialService");
             e.printStackTrace();
             throw e;
         }
@@ -163,13 +257,139 @@ public class EditorialService {
             return dao.listarEditoriales();
 
         } catch (Exception e) {
-            System.out.println("Error listando Editoriales en Editorial Service");
+            System.out.println("Error listando Editoriales en EditorialService");
             e.printStackTrace();
             throw e;
         }
 
     }
 
+    /**
+     * Devuelve una página de editoriales ordenados por nombre
+     *
+     * @param pagina Número de página, empezando en 0
+     * @param tamanio Cantidad de elementos por página
+     * @return Página pedida
+     */
+    public Pagina<Editorial> listarEditoriales(int pagina, int tamanio) {
+        try {
+
+            return dao.listarEditoriales(pagina, tamanio);
+
+        } catch (Exception e) {
+            System.out.println("Error listando una página de editoriales en EditorialService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve la página de editoriales que sigue al recibido, ordenados por nombre (paginación por clave)
+     *
+     * @param ultimo Último elemento de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de elementos por página
+     * @return Página siguiente
+     */
+    public Pagina<Editorial> listarEditorialesDesde(Editorial ultimo, int tamanio) {
+        try {
+
+            return dao.listarEditorialesDesde(ultimo, tamanio);
+
+        } catch (Exception e) {
+            System.out.println("Error listando editoriales por clave en EditorialService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve el ID y el nombre de todos los editoriales, ordenados por nombre. Es la consulta a usar cuando los editoriales solo se van a mostrar
+     *
+     * @return Lista de referencias (id, nombre)
+     */
+    public List<ReferenciaDTO> listarReferenciasEditoriales() {
+        try {
+
+            return dao.listarReferenciasEditoriales();
+
+        } catch (Exception e) {
+            System.out.println("Error listando referencias de editoriales en EditorialService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve la página de referencias (id, nombre) de editoriales que sigue a la recibida, ordenadas por nombre
+     *
+     * @param ultima Última referencia de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de elementos por página
+     * @return Página de referencias
+     */
+    public Pagina<ReferenciaDTO> listarReferenciasEditorialesDesde(ReferenciaDTO ultima, int tamanio) {
+        try {
+
+            return dao.listarReferenciasEditorialesDesde(ultima, tamanio);
+
+        } catch (Exception e) {
+            System.out.println("Error listando referencias de editoriales por clave en EditorialService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve el nombre de la Editorial dada de alta más parecido al recibido, para avisar antes de crear un duplicado escrito distinto. No consulta la base: los nombres se mantienen en memoria
+     *
+     * @param nombre Nombre a comparar
+     * @return El nombre parecido tal como está guardado, o null si no hay ninguno
+     */
+    public String buscarNombreParecido(String nombre) {
+        try {
+
+            return dao.buscarNombreParecido(nombre);
+
+        } catch (Exception e) {
+            System.out.println("Error buscando editorial parecida en EditorialService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve los nombres de Editoriales dadas de alta que empiezan con el texto recibido, para completar lo que el usuario está escribiendo. No consulta la base: las sugerencias se mantienen en memoria
+     *
+     * @param prefijo Comienzo del nombre
+     * @param cantidad Cantidad máxima de sugerencias
+     * @return Nombres en orden alfabético. Vacía si no hay ninguno
+     */
+    public List<String> sugerirNombres(String prefijo, int cantidad) {
+        try {
+
+            return dao.sugerirNombres(prefijo, cantidad);
+
+        } catch (Exception e) {
+            System.out.println("Error sugiriendo nombres de editoriales en EditorialService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Arma las sugerencias de nombres recorriendo la tabla, si todavía no están armadas. Conviene llamarlo al iniciar la aplicación para que la primera sugerencia no espere el recorrido
+     */
+    public void cargarSugerencias() {
+        try {
+
+            dao.cargarSugerencias();
+
+        } catch (Exception e) {
+            System.out.println("Error cargando las sugerencias de editoriales en EditorialService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
     /**
      * Imprime por consola un listado con todas las Editoriales en la BD, enumerados y con sus nombres
      *
@@ -179,7 +399,7 @@ public class EditorialService {
 
         try {
 
-            List<Editorial> editoriales = listarEditoriales();
+            List<ReferenciaDTO> editoriales = listarReferenciasEditoriales();
 
             if (editoriales.isEmpty()) {
                 throw new EditorialException("No hay editoriales para mostrar.");
@@ -187,7 +407,7 @@ public class EditorialService {
 
             int counter = 1;
             System.out.println("\nLISTA DE EDITORIALES");
-            for (Editorial editorial : editoriales) {
+            for (ReferenciaDTO editorial : editoriales) {
                 System.out.println(counter + ". " + editorial.getNombre());
                 counter++;
             }
@@ -201,4 +421,95 @@ public class EditorialService {
 
     }
 
+    /**
+     * Vacía la caché por nombre, la caché compartida y las sugerencias de nombres de Editoriales, para cuando la tabla se modificó por fuera del servicio (por ejemplo con una importación o desde otra aplicación)
+     */
+    public static void invalidarCache() {
+        POR_NOMBRE.clear();
+        ConexionPersistencia.invalidarCache(Editorial.class);
+        EditorialDAO.invalidarSugerencias();
+    }
+
+    /**
+     * @return Tamaño, aciertos y fallos de la caché por nombre
+     */
+    public static String estadisticasCache() {
+        return POR_NOMBRE.toString();
+    }
+
+    /**
+     * Saca de la caché por nombre la entrada que apunta a la Editorial con ese ID
+     */
+    private static void descartarDeCache(String id) {
+        POR_NOMBRE.removeIf(editorial -> editorial.getId().equals(id));
+        if (UnidadDeTrabajo.hayTransaccion()) {
+            //UN recordar ANTERIOR DE LA MISMA TRANSACCIÓN LA VOLVERÍA A AGREGAR AL CONFIRMAR
+            UnidadDeTrabajo.alConfirmar(() -> POR_NOMBRE.removeIf(editorial -> editorial.getId().equals(id)));
+        }
+    }
+
+    /**
+     * Relee la editorial después de un conflicto de versión y la devuelve para reintentar la modificación sobre su estado actual. No se reintenta si se agotaron los intentos, si el hilo está dentro de una transacción (quedó marcada para rollback) o si el otro usuario también cambió el nombre
+     */
+    private Editorial releerParaReintentar(String id, String nombreOriginal, String nombre, int intento) throws EditorialException {
+        if (intento >= UnidadDeTrabajo.REINTENTOS_CONFLICTO || UnidadDeTrabajo.hayTransaccion()) {
+            throw new EditorialException("La editorial fue modificada por otro usuario mientras la editaba. Vuelva a intentarlo.");
+        }
+        Editorial actual = dao.buscarEditorialActualizada(id);
+        if (actual == null) {
+            throw new EditorialException("La editorial fue eliminada por otro usuario mientras la editaba.");
+        }
+        if (!actual.getNombre().equals(nombreOriginal) && !actual.getNombre().equals(nombre)) {
+            throw new EditorialException("Otro usuario cambió el nombre de la editorial a '" + actual.getNombre() + "' mientras la editaba.");
+        }
+        return actual;
+    }
+
+    /**
+     * Inserta una Editorial nueva con ese nombre. Si otro hilo o proceso la creó primero, la restricción única rechaza el INSERT y se devuelve la ya guardada
+     */
+    private Editorial insertarOLeerGanador(String nombre) {
+        Editorial editorial = new Editorial(nombre);
+        try {
+            dao.guardarEditorial(editorial);
+            return editorial;
+        } catch (PersistenceException e) {
+            if (UnidadDeTrabajo.hayTransaccion() || !ErroresPersistencia.violaRestriccion(e, Editorial.UK_NOMBRE)) {
+                throw e;
+            }
+            Editorial ganador = dao.buscarEditorialPorNombre(nombre);
+            if (ganador == null) {
+                throw e;
+            }
+            return ganador;
+        }
+    }
+
+    /**
+     * Guarda la Editorial en la caché por nombre, cuando la transacción del hilo queda confirmada (o enseguida, si no hay ninguna): lo leído o creado dentro de ella todavía puede deshacerse
+     */
+    private static void recordar(String nombre, Editorial editorial) {
+        if (editorial == null) {
+            return;
+        }
+        String clave = clave(nombre);
+        //LA COPIA SE TOMA DESPUÉS DEL COMMIT, CUANDO LA ENTIDAD YA TIENE SU VERSIÓN
+        UnidadDeTrabajo.alConfirmar(() -> POR_NOMBRE.put(clave, new Editorial(editorial)));
+    }
+
+    /**
+     * @return Copia de la entrada de la caché por nombre, o null si no está
+     */
+    private static Editorial desdeCache(String nombre) {
+        Editorial guardado = POR_NOMBRE.get(clave(nombre));
+        return guardado == null ? null : new Editorial(guardado);
+    }
+
+    /**
+     * Clave de la caché por nombre: el nombre normalizado, igual que compara la base
+     */
+    private static String clave(String nombre) {
+        return Normalizador.normalizar(nombre);
+    }
+
 }
@@ -1,14 +1,24 @@
 package libreria.servicios;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import javax.persistence.PersistenceException;
+import libreria.dto.LibroResumenDTO;
 import libreria.entidades.Autor;
 import libreria.entidades.Editorial;
 import libreria.entidades.Libro;
 import libreria.exceptions.AutorException;
 import libreria.exceptions.EditorialException;
 import libreria.exceptions.LibroException;
+import libreria.persistencia.ErroresPersistencia;
+import libreria.persistencia.FiltroLibros;
 import libreria.persistencia.LibroDAO;
+import libreria.persistencia.Pagina;
+import libreria.persistencia.UnidadDeTrabajo;
 
 /**
  *
@@ -17,20 +27,33 @@ import libreria.persistencia.LibroDAO;
 public final class LibroService {
 
     //ATRIBUTO DAO / AUTOR SERVICE / EDITORIAL SERVICE
+    private static final int INTENTOS_REGISTRO = 3;
+    private static final String CONFLICTO_VERSION = "El libro fue modificado por otro usuario mientras lo editaba (por ejemplo, un préstamo)."
+            + "\nVuelva a buscarlo e intente de nuevo.";
     private final LibroDAO dao;
     private final AutorService autorService;
     private final EditorialService editorialService;
 
-    //CONSTRUCTOR
+    //CONSTRUCTORES
     public LibroService() {
+        this(new AutorService(), new EditorialService());
+    }
+
+    /**
+     * Constructor que reutiliza los Services de Autor y Editorial ya creados, para no duplicar DAOs ni estados entre los distintos menús
+     *
+     * @param autorService Service de Autor compartido
+     * @param editorialService Service de Editorial compartido
+     */
+    public LibroService(AutorService autorService, EditorialService editorialService) {
         this.dao = new LibroDAO();
-        this.autorService = new AutorService();
-        this.editorialService = new EditorialService();
+        this.autorService = autorService;
+        this.editorialService = editorialService;
     }
 
     //MÉTODOS
     /**
-     * Recibe por parámetro todos los atributos del Objeto Libro, les realiza verificaciones y, si todo está correcto, setea los atributos para después persistirlo en la BD
+     * Recibe por parámetro todos los atributos del Objeto Libro, les realiza verificaciones y, si todo está correcto, setea los atributos para después persistirlo en la BD. El alta del Autor y de la Editorial (si todavía no existen) y el alta del Libro se hacen en una única transacción. Los duplicados de ISBN o título los detectan las restricciones únicas de la base, sin consultas previas
      *
      * @param isbn
      * @param titulo
@@ -48,16 +71,10 @@ public final class LibroService {
 
         try {
 
-            //VALIDACIONES
+            //VALIDACIONES (SIN CONSULTAR LA BASE)
             if (isbn < 0) {
                 throw new LibroException("El ISBN ingresado no es válido");
             }
-            //Si ya hay un libro con el mismo ISBN, se lanza la excepción y se muestra cual Libro ya tiene ese código
-            Libro verificacionIsbn = buscarLibroPorIsbn(isbn);
-            if (verificacionIsbn != null) {
-                throw new LibroException("El ISBN ingresado ya pertenece al siguiente libro:"
-                        + "\nISBN: " + verificacionIsbn.getIsbn() + " / Titulo: " + verificacionIsbn.getTitulo());
-            }
             if (titulo.trim().isEmpty()) {
                 throw new LibroException("Debe indicar el título del libro");
             }
@@ -79,44 +96,37 @@ public final class LibroService {
             if (nombreEditorial.trim().isEmpty()) {
                 throw new LibroException("La editorial no puede estar vacia.");
             }
-            if (dao.buscarLibroPorTitulo(titulo) != null) {
-                throw new LibroException("El titulo ingresado ya existe.");
-            }
-
-            //ARMADO DEL OBJETO LIBRO
-            Libro libro = new Libro();
-            libro.setId(UUID.randomUUID().toString()); // Generación de código hexadecimal
-            libro.setIsbn(isbn);
-            libro.setTitulo(titulo);
-            libro.setAnio(anio);
-            libro.setEjemplares(ejemplares);
-            libro.setEjemplaresPrestados(ejemplaresPrestados);
-            libro.setEjemplaresRestantes(ejemplaresRestantes);
-
-            /* VERIFICO SI EL AUTOR INGRESADO YA EXISTE.
-            Si no existe todavia, lo creo y lo seteo al Libro. Si ya existe, ya lo seteo. */
-            Autor autor = autorService.buscarAutorPorNombre(nombreAutor);
-            if (autor == null) {
-                libro.setAutor(autorService.crearAutor(nombreAutor));
-            } else {
-                libro.setAutor(autor);
-            }
 
-            //VERIFICO SI LA EDITORIAL YA EXISTE - Misma lógica que con Autor
-            Editorial editorial = editorialService.buscarEditorialPorNombre(nombreEditorial);
-            if (editorial == null) {
-                libro.setEditorial(editorialService.crearEditorial(nombreEditorial));
-            } else {
-                libro.setEditorial(editorial);
+            //ARMADO DEL OBJETO LIBRO (EL CONSTRUCTOR YA LE DA EL ALTA)
+            Libro libro = new Libro(isbn, titulo, anio, ejemplares, ejemplaresPrestados, ejemplaresRestantes, null, null);
+
+            /* REGISTRO EN UNA ÚNICA TRANSACCIÓN: Autor y Editorial desde las cachés por nombre (o creados si no existen) y alta
+            del Libro. No se consulta antes si el ISBN o el título ya existen: lo garantizan las restricciones únicas de la tabla, que se crean al arrancar si faltan (ver VerificadorIndices)
+            y, si alguna se viola, se informa con el mismo mensaje de siempre. Si otro usuario creó el mismo Autor o Editorial al
+            mismo tiempo, la restricción única hace fallar el commit: se repite la transacción completa, que esta vez encuentra
+            el que ya está guardado */
+            for (int intento = 1;; intento++) {
+                try {
+                    UnidadDeTrabajo.enTransaccion(em -> {
+                        libro.setAutor(autorService.obtenerOCrearAutor(nombreAutor));
+                        libro.setEditorial(editorialService.obtenerOCrearEditorial(nombreEditorial));
+                        dao.guardarLibro(libro);
+                        return null;
+                    });
+                    break;
+                } catch (PersistenceException e) {
+                    LibroException duplicado = traducirDuplicado(e, isbn);
+                    if (duplicado != null) {
+                        throw duplicado;
+                    }
+                    if (intento >= INTENTOS_REGISTRO || UnidadDeTrabajo.hayTransaccion()
+                            || !ErroresPersistencia.violaRestriccion(e, Autor.UK_NOMBRE, Editorial.UK_NOMBRE)) {
+                        throw e;
+                    }
+                }
             }
 
-            //DAMOS EL ALTA AL LIBRO
-            libro.setAlta(true);
-
-            //GUARDADO EN BASE DE DATOS
-            dao.guardarLibro(libro);
-
-        } catch (LibroException | AutorException | EditorialException e) {
+        } catch (LibroException e) {
             throw e;
         } catch (Exception e) {
             System.out.println("Error guardando Libro en LibroService");
@@ -150,13 +160,6 @@ public final class LibroService {
             if (isbn < 0) {
                 throw new LibroException("El código ISBN no es válido.");
             }
-            /* Si ya hay un libro con el mismo ISBN Y no pertenece al Libro recibido, se lanza la excepción y se muestra cual Libro ya tiene ese código.
-            Esta verificación extra es permitir que el Libro a modificar conserve su ISBN anterior */
-            Libro verificacionIsbn = buscarLibroPorIsbn(isbn);
-            if (verificacionIsbn != null && verificacionIsbn != libro) {
-                throw new LibroException("El ISBN ingresado ya pertenece al siguiente libro:"
-                        + "\nISBN: " + verificacionIsbn.getIsbn() + " / Titulo: " + verificacionIsbn.getTitulo());
-            }
             if (titulo.trim().isEmpty()) {
                 throw new LibroException("Debe indicar el título del libro");
             }
@@ -179,6 +182,9 @@ public final class LibroService {
                 throw new LibroException("La editorial no puede estar vacia.");
             }
 
+            //Copia del Libro tal como se leyó, para poder combinar esta modificación con la de otro usuario si chocan
+            Libro original = new Libro(libro);
+
             //Seteo los nuevos valores para el Libro
             libro.setIsbn(isbn);
             libro.setTitulo(titulo);
@@ -205,8 +211,26 @@ public final class LibroService {
 
             libro.setAlta(true);
 
-            //Envio el Libro actualizado al DAO
-            dao.modificarLibro(libro);
+            /* Envio el Libro actualizado al DAO. Si el ISBN o el título ya pertenecen a otro Libro, lo detecta la restricción
+            única de la base (el Libro a modificar puede conservar los suyos, porque la fila que los tiene es la misma).
+            Si otro usuario modificó el Libro desde que se leyó (por ejemplo, registró un préstamo), el bloqueo optimista rechaza
+            el merge: se relee el estado actual, se le aplican solo los campos que este usuario cambió y se reintenta */
+            Libro aGuardar = libro;
+            for (int intento = 0;; intento++) {
+                try {
+                    dao.modificarLibro(aGuardar);
+                    break;
+                } catch (PersistenceException e) {
+                    LibroException duplicado = traducirDuplicado(e, isbn);
+                    if (duplicado != null) {
+                        throw duplicado;
+                    }
+                    if (!ErroresPersistencia.esConflictoDeVersion(e)) {
+                        throw e;
+                    }
+                    aGuardar = combinarConActual(original, libro, intento);
+                }
+            }
 
         } catch (LibroException e) {
             throw e;
@@ -243,6 +267,181 @@ public final class LibroService {
         }
     }
 
+    /**
+     * Da de alta o de baja, en un único UPDATE, todos los Libros del Autor indicado. Los Libros dados de baja dejan de aparecer en los listados y búsquedas por autor o editorial
+     *
+     * @param nombreAutor Nombre del Autor
+     * @param alta true para darlos de alta, false para darlos de baja
+     * @return Cantidad de Libros que cambiaron de estado
+     * @throws LibroException Si el nombre está vacío o no hay un Autor con ese nombre
+     * @throws AutorException
+     */
+    public int cambiarAltaLibrosPorAutor(String nombreAutor, boolean alta) throws LibroException, AutorException {
+
+        try {
+
+            //VALIDACIONES
+            if (nombreAutor == null || nombreAutor.trim().isEmpty()) {
+                throw new LibroException("El autor no puede estar vacio.");
+            }
+            Autor autor = autorService.buscarAutorPorNombre(nombreAutor);
+            if (autor == null) {
+                throw new LibroException("No hay ningún autor guardado con ese nombre.");
+            }
+
+            return dao.cambiarAltaPorAutor(autor.getId(), alta);
+
+        } catch (LibroException e) {
+            throw e;
+        } catch (Exception e) {
+            System.out.println("Error cambiando el alta de los Libros por Autor en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Da de alta o de baja, en un único UPDATE, todos los Libros de la Editorial indicada
+     *
+     * @param nombreEditorial Nombre de la Editorial
+     * @param alta true para darlos de alta, false para darlos de baja
+     * @return Cantidad de Libros que cambiaron de estado
+     * @throws LibroException Si el nombre está vacío o no hay una Editorial con ese nombre
+     * @throws EditorialException
+     */
+    public int cambiarAltaLibrosPorEditorial(String nombreEditorial, boolean alta) throws LibroException, EditorialException {
+
+        try {
+
+            //VALIDACIONES
+            if (nombreEditorial == null || nombreEditorial.trim().isEmpty()) {
+                throw new LibroException("La editorial no puede estar vacia.");
+            }
+            Editorial editorial = editorialService.buscarEditorialPorNombre(nombreEditorial);
+            if (editorial == null) {
+                throw new LibroException("No hay ninguna editorial guardada con ese nombre.");
+            }
+
+            return dao.cambiarAltaPorEditorial(editorial.getId(), alta);
+
+        } catch (LibroException e) {
+            throw e;
+        } catch (Exception e) {
+            System.out.println("Error cambiando el alta de los Libros por Editorial en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Da de alta o de baja, en un único UPDATE, todos los Libros publicados entre dos años (ambos incluidos)
+     *
+     * @param desde Primer año del rango
+     * @param hasta Último año del rango
+     * @param alta true para darlos de alta, false para darlos de baja
+     * @return Cantidad de Libros que cambiaron de estado
+     * @throws LibroException Si el rango de años no es válido
+     */
+    public int cambiarAltaLibrosPorAnios(Integer desde, Integer hasta, boolean alta) throws LibroException {
+
+        try {
+
+            //VALIDACIONES
+            if (desde == null || hasta == null || desde < 0 || hasta < 0) {
+                throw new LibroException("Debe ingresar años válidos.");
+            }
+            if (desde > hasta) {
+                throw new LibroException("El año inicial no puede ser mayor al año final.");
+            }
+
+            return dao.cambiarAltaPorAnios(desde, hasta, alta);
+
+        } catch (LibroException e) {
+            throw e;
+        } catch (Exception e) {
+            System.out.println("Error cambiando el alta de los Libros por año en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Presta ejemplares del Libro con el ISBN recibido. El préstamo se registra con un único UPDATE condicional, sin leer el Libro antes: solo si no se pudo aplicar se lee para informar el motivo
+     *
+     * @param isbn ISBN del Libro a prestar
+     * @param cantidad Cantidad de ejemplares a prestar
+     * @throws LibroException Si la cantidad no es válida, el Libro no existe, está dado de baja o no le quedan suficientes ejemplares
+     */
+    public void prestarLibro(Long isbn, Integer cantidad) throws LibroException {
+
+        try {
+
+            //VALIDACIONES
+            if (isbn == null || isbn < 0) {
+                throw new LibroException("El código ISBN no es válido.");
+            }
+            if (cantidad == null || cantidad < 1) {
+                throw new LibroException("Debe prestar al menos un ejemplar.");
+            }
+
+            //PRÉSTAMO. SI NO SE PUDO REGISTRAR, SE BUSCA EL MOTIVO
+            if (!dao.prestarLibro(isbn, cantidad)) {
+                Libro libro = dao.buscarLibroPorIsbn(isbn);
+                if (libro == null) {
+                    throw new LibroException("El código ISBN no pertenece a ningún libro guardado.");
+                }
+                if (!Boolean.TRUE.equals(libro.getAlta())) {
+                    throw new LibroException("El libro está dado de baja y no se puede prestar.");
+                }
+                throw new LibroException("No hay suficientes ejemplares disponibles."
+                        + "\nEjemplares restantes: " + libro.getEjemplaresRestantes());
+            }
+        } catch (LibroException e) {
+            throw e;
+        } catch (Exception e) {
+            System.out.println("Error prestando Libro en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve ejemplares prestados del Libro con el ISBN recibido, con un único UPDATE condicional igual que el préstamo
+     *
+     * @param isbn ISBN del Libro a devolver
+     * @param cantidad Cantidad de ejemplares a devolver
+     * @throws LibroException Si la cantidad no es válida, el Libro no existe o tiene menos ejemplares prestados que los que se quieren devolver
+     */
+    public void devolverLibro(Long isbn, Integer cantidad) throws LibroException {
+
+        try {
+
+            //VALIDACIONES
+            if (isbn == null || isbn < 0) {
+                throw new LibroException("El código ISBN no es válido.");
+            }
+            if (cantidad == null || cantidad < 1) {
+                throw new LibroException("Debe devolver al menos un ejemplar.");
+            }
+
+            //DEVOLUCIÓN. SI NO SE PUDO REGISTRAR, SE BUSCA EL MOTIVO
+            if (!dao.devolverLibro(isbn, cantidad)) {
+                Libro libro = dao.buscarLibroPorIsbn(isbn);
+                if (libro == null) {
+                    throw new LibroException("El código ISBN no pertenece a ningún libro guardado.");
+                }
+                throw new LibroException("No se pueden devolver más ejemplares de los prestados."
+                        + "\nEjemplares prestados: " + libro.getEjemplaresPrestados());
+            }
+        } catch (LibroException e) {
+            throw e;
+        } catch (Exception e) {
+            System.out.println("Error devolviendo Libro en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
     /**
      * Busca un Objeto Libro con el mismo código ISBN pasado como parámetro y lo devuelve de la BD
      *
@@ -295,6 +494,86 @@ public final class LibroService {
         }
     }
 
+    /**
+     * Busca los Libros dados de alta cuyo título contiene el texto recibido (al principio o en cualquier parte, sin distinguir mayúsculas ni acentos) y los devuelve por páginas, ordenados por relevancia: primero el título exacto, después los que empiezan con el texto y por último los que lo contienen.
+     *
+     * @param texto Texto a buscar en los títulos
+     * @param pagina Número de página, empezando en 0
+     * @param tamanio Cantidad de Libros por página
+     * @return Página de Libros encontrados, en orden de relevancia
+     * @throws LibroException Si el texto tiene menos de 2 caracteres o si no hay ningún Libro que lo contenga
+     */
+    public Pagina<Libro> buscarLibrosPorTitulo(String texto, int pagina, int tamanio) throws LibroException {
+        try {
+
+            //VERIFICACION DEL ARGUMENTO
+            if (texto == null || texto.trim().length() < 2) {
+                throw new LibroException("Debe ingresar al menos 2 caracteres del título.");
+            }
+
+            //SE BUSCAN LOS ISBN EN EL ÍNDICE Y DESPUÉS LOS LIBROS, RESPETANDO EL ORDEN DEL ÍNDICE
+            Pagina<Long> isbns = dao.buscarIsbnsPorTitulo(texto, pagina, tamanio);
+            Map<Long, Libro> porIsbn = new HashMap<>();
+            for (Libro libro : dao.buscarLibrosPorIsbns(isbns.getElementos())) {
+                porIsbn.put(libro.getIsbn(), libro);
+            }
+            List<Libro> libros = new ArrayList<>();
+            for (Long isbn : isbns.getElementos()) {
+                Libro libro = porIsbn.get(isbn);
+                if (libro != null) { // Pudo darse de baja o borrarse desde otro puesto después de armado el índice
+                    libros.add(libro);
+                }
+            }
+
+            //VERIFICACIÓN DEL RESULTADO
+            if (libros.isEmpty() && isbns.getNumero() == 0) {
+                throw new LibroException("No hay libros cuyo título contenga \"" + texto.trim() + "\".");
+            }
+            return new Pagina<>(libros, isbns.getNumero(), isbns.isHayMas());
+
+        } catch (LibroException e) {
+            throw e;
+        } catch (Exception e) {
+            System.out.println("Error buscando Libros por parte del título en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve los títulos de Libros dados de alta que empiezan con el texto recibido, para completar lo que el usuario está escribiendo. No consulta la base: las sugerencias se mantienen en memoria
+     *
+     * @param prefijo Comienzo del título
+     * @param cantidad Cantidad máxima de sugerencias
+     * @return Títulos en orden alfabético. Vacía si no hay ninguno
+     */
+    public List<String> sugerirTitulos(String prefijo, int cantidad) {
+        try {
+
+            return dao.sugerirTitulos(prefijo, cantidad);
+
+        } catch (Exception e) {
+            System.out.println("Error sugiriendo títulos en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Arma las sugerencias de títulos recorriendo la tabla, si todavía no están armadas
+     */
+    public void cargarSugerencias() {
+        try {
+
+            dao.cargarSugerencias();
+
+        } catch (Exception e) {
+            System.out.println("Error cargando las sugerencias de títulos en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
     /**
      * Busca y devuelve una Lista con todos los Libros de la BD que tengan el mismo nombre de Autor en sus atributos.
      *
@@ -366,6 +645,54 @@ public final class LibroService {
 
     }
 
+    /**
+     * Busca los Libros que cumplen todos los criterios recibidos (cualquier combinación de Autor, Editorial, rango de años, disponibilidad y alta) y los devuelve por páginas, en el orden pedido y con el total de resultados. El filtrado, el orden y la paginación se hacen en la base con una sola consulta
+     *
+     * @param filtro Criterios de búsqueda; los que están en null no filtran
+     * @param pagina Número de página, empezando en 0
+     * @param tamanio Cantidad de Libros por página
+     * @return Página de Libros encontrados, con el total
+     * @throws LibroException Si algún criterio no es válido o si no hay ningún Libro que los cumpla
+     */
+    public Pagina<Libro> buscarLibros(FiltroLibros filtro, int pagina, int tamanio) throws LibroException {
+
+        try {
+
+            //VALIDACIONES
+            if (filtro == null) {
+                throw new LibroException("No se indicaron criterios de búsqueda.");
+            }
+            if (filtro.getNombreAutor() != null && filtro.getNombreAutor().trim().isEmpty()) {
+                throw new LibroException("El nombre del autor está vacío.");
+            }
+            if (filtro.getNombreEditorial() != null && filtro.getNombreEditorial().trim().isEmpty()) {
+                throw new LibroException("El nombre de la editorial está vacío.");
+            }
+            if ((filtro.getAnioDesde() != null && filtro.getAnioDesde() < 0) || (filtro.getAnioHasta() != null && filtro.getAnioHasta() < 0)) {
+                throw new LibroException("Debe ingresar años válidos.");
+            }
+            if (filtro.getAnioDesde() != null && filtro.getAnioHasta() != null && filtro.getAnioDesde() > filtro.getAnioHasta()) {
+                throw new LibroException("El año inicial no puede ser mayor al año final.");
+            }
+
+            //BÚSQUEDA DE LA PÁGINA PEDIDA
+            Pagina<Libro> libros = dao.buscarLibros(filtro, pagina, tamanio);
+
+            //VERIFICACIÓN DEL RESULTADO
+            if (libros.getTotal() == 0) {
+                throw new LibroException("No se encontraron Libros que cumplan los criterios :(");
+            }
+            return libros;
+
+        } catch (LibroException e) {
+            throw e;
+        } catch (Exception e) {
+            System.out.println("Error buscando Libros por criterios en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
     /**
      * Devuelve una Lista con todos los Objetos Libros que se encuentren guardados en la BD
      *
@@ -383,30 +710,136 @@ public final class LibroService {
             throw e;
         }
     }
+
+    /**
+     * Devuelve una página de Libros ordenados por ISBN
+     *
+     * @param pagina Número de página, empezando en 0
+     * @param tamanio Cantidad de Libros por página
+     * @return Página pedida
+     */
+    public Pagina<Libro> listarLibros(int pagina, int tamanio) {
+
+        try {
+
+            return dao.listarLibros(pagina, tamanio);
+
+        } catch (Exception e) {
+            System.out.println("Error listando una página de Libros en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve la página de Libros con ISBN mayor al recibido, ordenados por ISBN (paginación por clave)
+     *
+     * @param ultimoIsbn ISBN del último Libro de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de Libros por página
+     * @return Página siguiente
+     */
+    public Pagina<Libro> listarLibrosDesde(Long ultimoIsbn, int tamanio) {
+
+        try {
+
+            return dao.listarLibrosDesde(ultimoIsbn, tamanio);
+
+        } catch (Exception e) {
+            System.out.println("Error listando Libros por clave en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve la página de resúmenes (ISBN, título, autor, editorial y restantes) de los Libros con ISBN mayor al recibido. Es la consulta a usar cuando los Libros solo se van a mostrar
+     *
+     * @param ultimoIsbn ISBN del último Libro de la página anterior, o null para la primera página
+     * @param tamanio Cantidad de Libros por página
+     * @return Página de resúmenes
+     */
+    public Pagina<LibroResumenDTO> listarResumenesLibrosDesde(Long ultimoIsbn, int tamanio) {
+
+        try {
+
+            return dao.listarResumenesLibrosDesde(ultimoIsbn, tamanio);
+
+        } catch (Exception e) {
+            System.out.println("Error listando resúmenes de Libros en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
     
     /**
-     * Método que muestra por consola todos los Libros dentro de la BD. Si no hay elementos, se avisa con un mensaje
+     * Recorre todos los Libros de la BD de a uno, con un cursor de base de datos y sin cargarlos todos juntos en memoria. Es la forma de procesar el catálogo completo en reportes, exportaciones o chequeos de consistencia
+     *
+     * @param accion Acción a ejecutar con cada Libro
+     * @return Cantidad de Libros recorridos
+     */
+    public long recorrerLibros(Consumer<? super Libro> accion) {
+
+        try {
+
+            return dao.recorrerLibros(accion);
+
+        } catch (Exception e) {
+            System.out.println("Error recorriendo Libros en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /**
+     * Método que muestra por consola un resumen de todos los Libros dentro de la BD, recorriéndolos de a una página por vez para no cargar la tabla entera en memoria. Si no hay elementos, se avisa con un mensaje
      */
     public void imprimirLibros() {
 
         try {
 
-            //MÉTODO SERVICE QUE DEVUELVE UNA LISTA CON TODOS LOS LIBROS
-            List<Libro> libros = listarLibros();
-            
+            Pagina<LibroResumenDTO> pagina = imprimirLibros(null, Pagina.TAMANIO_MAXIMO);
+            while (pagina.isHayMas()) {
+                pagina = imprimirLibros(pagina.getUltimo().getIsbn(), Pagina.TAMANIO_MAXIMO);
+            }
+
+        } catch (Exception e) {
+            System.out.println("Error imprimiendo Libros en LibroService");
+            e.printStackTrace();
+            throw e;
+        }
+
+    }
+
+    /**
+     * Método que muestra por consola una página de resúmenes de Libros, la siguiente al ISBN recibido. Si es la primera página y no hay elementos, se avisa con un mensaje
+     *
+     * @param ultimoIsbn ISBN del último Libro ya mostrado, o null para empezar desde el principio
+     * @param tamanio Cantidad de Libros a mostrar
+     * @return La página mostrada, para saber si hay más y desde dónde seguir
+     */
+    public Pagina<LibroResumenDTO> imprimirLibros(Long ultimoIsbn, int tamanio) {
+
+        try {
+
+            //MÉTODO SERVICE QUE DEVUELVE UNA PÁGINA DE RESÚMENES DE LIBROS
+            Pagina<LibroResumenDTO> pagina = listarResumenesLibrosDesde(ultimoIsbn, tamanio);
+
             //SI NO HAY LIBROS, SE MUESTRA UN MENSAJE. SINO, SE INICIA EL MÉTODO
-            if (libros.isEmpty()) {
+            if (pagina.isEmpty() && ultimoIsbn == null) {
                 System.out.println("No hay libros guardados para mostrar."
                         + "\n¡Empieza agregando uno!");
             } else {
 
                 //OUTPUT
-                System.out.println("\nLIBROS EN BASE DE DATOS:");
-                for (Libro libro : libros) {
+                if (ultimoIsbn == null) {
+                    System.out.println("\nLIBROS EN BASE DE DATOS:");
+                }
+                for (LibroResumenDTO libro : pagina.getElementos()) {
                     System.out.println(libro.toString());
                 }
 
             }
+            return pagina;
 
         } catch (Exception e) {
             System.out.println("Error imprimiendo Libros en LibroService");
@@ -416,4 +849,99 @@ public final class LibroService {
 
     }
 
+    /**
+     * @return Tamaño, aciertos y fallos de las cachés de búsqueda de Libros por ISBN y por título
+     */
+    public static String estadisticasCache() {
+        return LibroDAO.estadisticasCache();
+    }
+
+    /**
+     * Relee el Libro después de un conflicto de versión y le aplica los cambios de esta modificación (los campos de {@code deseado} que difieren de {@code original}), conservando los que hizo el otro usuario. Si los dos cambiaron el mismo campo a valores distintos, o ya no quedan reintentos, se informa el conflicto.
+     * <p>
+     * Los contadores de ejemplares no se comparan por valor sino que se suman como diferencias: si este usuario pasó los prestados de 5 a 6 y otro registró un préstamo (también 5 a 6), el resultado es 7, no 6. Si los tres estados cumplen que los ejemplares son la suma de prestados y restantes, el resultado también la cumple; no se exige, igual que en la modificación sin conflicto
+     *
+     * @param original Libro tal como estaba cuando se empezó a editar
+     * @param deseado Libro con los valores nuevos
+     * @param intento Número de intento fallido, empezando en 0
+     * @return El estado actual con esta modificación aplicada, listo para reintentar
+     * @throws LibroException Si no se puede reintentar
+     */
+    private Libro combinarConActual(Libro original, Libro deseado, int intento) throws LibroException {
+        if (intento >= UnidadDeTrabajo.REINTENTOS_CONFLICTO || UnidadDeTrabajo.hayTransaccion()) {
+            throw new LibroException(CONFLICTO_VERSION);
+        }
+        Libro actual = dao.buscarLibroActualizado(deseado.getId());
+        if (actual == null) {
+            throw new LibroException("El libro fue eliminado por otro usuario mientras lo editaba.");
+        }
+        actual.setIsbn(combinar(original.getIsbn(), deseado.getIsbn(), actual.getIsbn()));
+        actual.setTitulo(combinar(original.getTitulo(), deseado.getTitulo(), actual.getTitulo()));
+        actual.setAnio(combinar(original.getAnio(), deseado.getAnio(), actual.getAnio()));
+        actual.setEjemplares(sumarDiferencia(original.getEjemplares(), deseado.getEjemplares(), actual.getEjemplares()));
+        actual.setEjemplaresPrestados(sumarDiferencia(original.getEjemplaresPrestados(), deseado.getEjemplaresPrestados(), actual.getEjemplaresPrestados()));
+        actual.setEjemplaresRestantes(sumarDiferencia(original.getEjemplaresRestantes(), deseado.getEjemplaresRestantes(), actual.getEjemplaresRestantes()));
+        actual.setAlta(combinar(original.getAlta(), deseado.getAlta(), actual.getAlta()));
+        if (!combinar(original.getAutor().getId(), deseado.getAutor().getId(), actual.getAutor().getId()).equals(actual.getAutor().getId())) {
+            actual.setAutor(deseado.getAutor());
+        }
+        if (!combinar(original.getEditorial().getId(), deseado.getEditorial().getId(), actual.getEditorial().getId()).equals(actual.getEditorial().getId())) {
+            actual.setEditorial(deseado.getEditorial());
+        }
+        return actual;
+    }
+
+    /**
+     * Combinación de un campo entre el valor leído al empezar a editar, el que quiere guardar este usuario y el que hay ahora en la base
+     *
+     * @return El valor actual si este usuario no cambió el campo; el suyo si solo lo cambió él (o los dos al mismo valor)
+     * @throws LibroException Si los dos usuarios cambiaron el campo a valores distintos
+     */
+    private static <T> T combinar(T original, T deseado, T actual) throws LibroException {
+        if (Objects.equals(deseado, original)) {
+            return actual;
+        }
+        if (Objects.equals(actual, original) || Objects.equals(actual, deseado)) {
+            return deseado;
+        }
+        throw new LibroException(CONFLICTO_VERSION);
+    }
+
+    /**
+     * Combinación de un contador: al valor actual se le suma lo que este usuario le sumó o restó al leído, así no se pierde el cambio del otro
+     *
+     * @return El valor actual más la diferencia de este usuario
+     * @throws LibroException Si el resultado queda negativo
+     */
+    private static Integer sumarDiferencia(Integer original, Integer deseado, Integer actual) throws LibroException {
+        int resultado = actual + (deseado - original);
+        if (resultado < 0) {
+            throw new LibroException(CONFLICTO_VERSION);
+        }
+        return resultado;
+    }
+
+    /**
+     * Traduce la violación de las restricciones únicas del Libro en la LibroException con el mensaje de siempre. Solo en este caso, que es el poco frecuente, se lee cuál es el Libro que ya tiene el ISBN para mostrarlo
+     *
+     * @param e Error recibido al guardar el Libro
+     * @param isbn ISBN que se intentó guardar
+     * @return La excepción a lanzar, o null si el error no es un ISBN o título duplicado
+     */
+    private LibroException traducirDuplicado(PersistenceException e, Long isbn) {
+        String restriccion = ErroresPersistencia.restriccionViolada(e, Libro.UK_ISBN, Libro.UK_TITULO);
+        if (Libro.UK_ISBN.equals(restriccion)) {
+            Libro existente = dao.buscarLibroPorIsbn(isbn);
+            if (existente == null) {
+                return new LibroException("El ISBN ingresado ya existe.");
+            }
+            return new LibroException("El ISBN ingresado ya pertenece al siguiente libro:"
+                    + "\nISBN: " + existente.getIsbn() + " / Titulo: " + existente.getTitulo());
+        }
+        if (Libro.UK_TITULO.equals(restriccion)) {
+            return new LibroException("El titulo ingresado ya existe.");
+        }
+        return null;
+    }
+
 }
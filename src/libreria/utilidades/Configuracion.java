@@ -0,0 +1,109 @@
+package libreria.utilidades;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Configuración de la aplicación. Los valores se leen, en este orden de prioridad, de:
+ * <ol>
+ * <li>Las propiedades de sistema (-Dclave=valor)</li>
+ * <li>El archivo externo indicado con -Dlibreria.config=ruta, o "libreria.properties" en el directorio de trabajo si existe</li>
+ * <li>El valor por defecto que indique quien consulta</li>
+ * </ol>
+ *
+ * @author Matias Luca Soto
+ */
+public final class Configuracion {
+
+    //ATRIBUTOS
+    private static final String ARCHIVO_POR_DEFECTO = "libreria.properties";
+    private static final Properties ARCHIVO = cargarArchivo();
+
+    //CONSTRUCTOR
+    private Configuracion() {
+    }
+
+    //MÉTODOS
+    /**
+     * Devuelve el valor configurado para una clave
+     *
+     * @param clave Nombre de la propiedad
+     * @param porDefecto Valor a devolver si la propiedad no está configurada
+     * @return Valor configurado o el valor por defecto
+     */
+    public static String get(String clave, String porDefecto) {
+        String valor = System.getProperty(clave);
+        if (valor == null) {
+            valor = ARCHIVO.getProperty(clave);
+        }
+        return valor == null || valor.trim().isEmpty() ? porDefecto : valor.trim();
+    }
+
+    /**
+     * @param clave Nombre de la propiedad
+     * @param porDefecto Valor a devolver si la propiedad no está configurada o no es un número
+     * @return Valor entero configurado o el valor por defecto
+     */
+    public static int getInt(String clave, int porDefecto) {
+        try {
+            return Integer.parseInt(get(clave, String.valueOf(porDefecto)));
+        } catch (NumberFormatException e) {
+            System.out.println("Valor inválido para '" + clave + "', se usa " + porDefecto);
+            return porDefecto;
+        }
+    }
+
+    /**
+     * @param clave Nombre de la propiedad
+     * @param porDefecto Valor a devolver si la propiedad no está configurada
+     * @return Valor booleano configurado o el valor por defecto
+     */
+    public static boolean getBoolean(String clave, boolean porDefecto) {
+        return Boolean.parseBoolean(get(clave, String.valueOf(porDefecto)));
+    }
+
+    /**
+     * Devuelve todas las propiedades (del archivo y de sistema) cuya clave empiece con el prefijo indicado. Las propiedades de sistema pisan a las del archivo.
+     *
+     * @param prefijo Prefijo de las claves a devolver
+     * @return Mapa clave-valor con las propiedades encontradas
+     */
+    public static Map<String, String> conPrefijo(String prefijo) {
+        Map<String, String> resultado = new HashMap<>();
+        for (String clave : ARCHIVO.stringPropertyNames()) {
+            if (clave.startsWith(prefijo)) {
+                resultado.put(clave, ARCHIVO.getProperty(clave).trim());
+            }
+        }
+        for (String clave : System.getProperties().stringPropertyNames()) {
+            if (clave.startsWith(prefijo)) {
+                resultado.put(clave, System.getProperty(clave).trim());
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Carga el archivo externo de configuración, si existe
+     */
+    private static Properties cargarArchivo() {
+        Properties propiedades = new Properties();
+        Path ruta = Paths.get(System.getProperty("libreria.config", ARCHIVO_POR_DEFECTO));
+        if (Files.isReadable(ruta)) {
+            try (InputStream in = Files.newInputStream(ruta)) {
+                propiedades.load(in);
+            } catch (IOException e) {
+                System.out.println("No se pudo leer el archivo de configuración " + ruta);
+                e.printStackTrace();
+            }
+        }
+        return propiedades;
+    }
+
+}
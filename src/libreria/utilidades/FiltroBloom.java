@@ -0,0 +1,131 @@
+package libreria.utilidades;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Filtro de Bloom: conjunto aproximado de claves en muy poca memoria (unos 10 bits por clave para un 1% de falsos positivos). Si responde que una clave no está, seguro no está; si responde que puede estar, hay que confirmarlo en la fuente real. No permite quitar claves. No es seguro para usar desde varios hilos.
+ *
+ * @author Matias Luca Soto
+ */
+public class FiltroBloom {
+
+    //ATRIBUTOS
+    private static final long FNV_BASE = 0xcbf29ce484222325L;
+    private static final long FNV_PRIMO = 0x100000001b3L;
+
+    private final long[] bits;
+    private final long cantidadBits;
+    private final int funciones;
+    private long cantidad;
+
+    //CONSTRUCTOR
+    /**
+     * Dimensiona el filtro para la cantidad de claves y la probabilidad de falsos positivos indicadas
+     *
+     * @param clavesEsperadas Cantidad de claves que se van a agregar. Si se agregan más, crecen los falsos positivos
+     * @param probabilidadFalsos Probabilidad de falso positivo buscada, entre 0 y 1 (por ejemplo 0.01)
+     */
+    public FiltroBloom(long clavesEsperadas, double probabilidadFalsos) {
+        if (probabilidadFalsos <= 0 || probabilidadFalsos >= 1) {
+            throw new IllegalArgumentException("La probabilidad de falsos positivos debe estar entre 0 y 1");
+        }
+        long n = Math.max(1, clavesEsperadas);
+        long m = (long) Math.ceil(-n * Math.log(probabilidadFalsos) / (Math.log(2) * Math.log(2)));
+        this.cantidadBits = Math.max(64, m);
+        this.bits = new long[(int) ((cantidadBits + 63) / 64)];
+        this.funciones = Math.max(1, (int) Math.round((double) cantidadBits / n * Math.log(2)));
+    }
+
+    //MÉTODOS
+    /**
+     * @param clave Clave a agregar
+     */
+    public void agregar(long clave) {
+        marcar(mezclar(clave));
+    }
+
+    /**
+     * @param clave Clave a agregar (no puede ser null)
+     */
+    public void agregar(String clave) {
+        marcar(dispersar(clave));
+    }
+
+    /**
+     * @param clave Clave a buscar
+     * @return false si la clave seguro no fue agregada; true si puede haber sido agregada
+     */
+    public boolean puedeContener(long clave) {
+        return estanMarcados(mezclar(clave));
+    }
+
+    /**
+     * @param clave Clave a buscar (no puede ser null)
+     * @return false si la clave seguro no fue agregada; true si puede haber sido agregada
+     */
+    public boolean puedeContener(String clave) {
+        return estanMarcados(dispersar(clave));
+    }
+
+    /**
+     * @return Cantidad de claves agregadas
+     */
+    public long getCantidad() {
+        return cantidad;
+    }
+
+    /**
+     * @return Memoria usada por el arreglo de bits, en bytes
+     */
+    public long getBytes() {
+        return bits.length * 8L;
+    }
+
+    /**
+     * Prende los bits de las posiciones de la clave. Las posiciones salen de dos dispersiones combinadas (h1 + i * h2), que para un filtro de Bloom dan el mismo resultado que usar k funciones independientes
+     */
+    private void marcar(long dispersion) {
+        long h1 = dispersion;
+        long h2 = mezclar(dispersion) | 1;
+        for (int i = 0; i < funciones; i++) {
+            long posicion = Math.floorMod(h1 + i * h2, cantidadBits);
+            bits[(int) (posicion >>> 6)] |= 1L << posicion;
+        }
+        cantidad++;
+    }
+
+    private boolean estanMarcados(long dispersion) {
+        long h1 = dispersion;
+        long h2 = mezclar(dispersion) | 1;
+        for (int i = 0; i < funciones; i++) {
+            long posicion = Math.floorMod(h1 + i * h2, cantidadBits);
+            if ((bits[(int) (posicion >>> 6)] & (1L << posicion)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Dispersión FNV-1a de 64 bits sobre los bytes UTF-8 del texto, terminada con una mezcla para repartir mejor los bits
+     */
+    private static long dispersar(String clave) {
+        long hash = FNV_BASE;
+        for (byte b : clave.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIMO;
+        }
+        return mezclar(hash);
+    }
+
+    /**
+     * Mezcla final de SplitMix64: cada bit de la entrada afecta a todos los de la salida
+     */
+    private static long mezclar(long valor) {
+        long z = valor + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+}
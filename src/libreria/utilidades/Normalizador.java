@@ -0,0 +1,35 @@
+package libreria.utilidades;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalización de textos para usarlos como claves de búsqueda: minúsculas, sin acentos ni diacríticos y con los espacios internos reducidos a uno solo. Así "  García   Márquez" y "garcia marquez" dan la misma clave.
+ *
+ * @author Matias Luca Soto
+ */
+public final class Normalizador {
+
+    //ATRIBUTOS
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    //CONSTRUCTOR
+    private Normalizador() {
+    }
+
+    //MÉTODOS
+    /**
+     * @param texto Texto a normalizar
+     * @return La clave normalizada, o null si el texto es null
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        String sinDiacriticos = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACIOS.matcher(sinDiacriticos.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+}